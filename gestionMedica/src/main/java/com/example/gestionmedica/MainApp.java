@@ -1,17 +1,126 @@
 package com.example.gestionmedica;
 
+import com.example.gestionmedica.dao.CitaDAO;
+import com.example.gestionmedica.dao.IndiceDni;
+import com.example.gestionmedica.dao.IndiceNombresPacientes;
+import com.example.gestionmedica.dao.IndiceOcupacion;
+import com.example.gestionmedica.dao.RefrescoCitas;
+import com.example.gestionmedica.dao.RefrescoPacientes;
+import com.example.gestionmedica.utils.GestorParticiones;
+import com.example.gestionmedica.utils.MetricasDAO;
+import com.example.gestionmedica.utils.MigradorEsquema;
+import com.example.gestionmedica.utils.RegistroConsultasLentas;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import javafx.stage.StageStyle;
 
+import java.io.IOException;
 import java.net.URL;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.Objects;
 
 public class MainApp extends Application {
 
+    // Segundos entre volcados de las métricas de los DAO (0 = sin volcado)
+    private static final long VOLCADO_METRICAS_SEG = Long.getLong("gestionmedica.metricas.volcado", 300);
+
+    // Meses con partición propia al particionar citas (lo anterior va a una sola partición)
+    private static final int MESES_PARTICIONADOS = 24;
+
+    // Segundos entre refrescos de los índices en memoria con lo que cambian otros puestos
+    private static final long REFRESCO_INDICES_SEG = Long.getLong("gestionmedica.indices.refresco", 15);
+
+    @Override
+    public void init() {
+        MetricasDAO.publicarJmx();
+        RegistroConsultasLentas.getInstancia().publicarJmx();
+        if (VOLCADO_METRICAS_SEG > 0) {
+            MetricasDAO.iniciarVolcado(VOLCADO_METRICAS_SEG);
+        }
+    }
+
     @Override
-    public void start(Stage stage) throws Exception {
+    public void start(Stage stage) {
+        // El esquema se prepara fuera del hilo de JavaFX: puede esperar al cerrojo de
+        // migraciones (gestionmedica.esquema.esperaCerrojoSeg) y al DDL de las particiones
+        Stage progreso = ventanaProgreso();
+        progreso.show();
+
+        Thread.ofVirtual().name("preparar-esquema").start(() -> {
+            boolean esquemaAlDia = prepararEsquema();
+            Platform.runLater(() -> {
+                progreso.close();
+                if (!esquemaAlDia) {
+                    Alert alerta = new Alert(Alert.AlertType.ERROR,
+                            "No se pudo poner al día el esquema de la base de datos. " +
+                            "Revise la conexión o si otro puesto está actualizándolo y reinicie la aplicación.");
+                    alerta.setHeaderText("Error al preparar la base de datos");
+                    alerta.showAndWait();
+                }
+                try {
+                    mostrarPrincipal(stage);
+                } catch (IOException e) {
+                    System.err.println("✗ Error al cargar la ventana principal: " + e.getMessage());
+                    Platform.exit();
+                }
+            });
+        });
+    }
+
+    /**
+     * Migraciones, particiones, índices en memoria y purgas (en segundo plano)
+     * @return true si el esquema quedó al día
+     */
+    private static boolean prepararEsquema() {
+        // Esquema: antes que nada que lea de la BD
+        boolean esquemaAlDia = new MigradorEsquema().migrar();
+        if (esquemaAlDia) {
+            GestorParticiones particiones = new GestorParticiones();
+            if (GestorParticiones.PARTICIONAR) {
+                particiones.particionar(LocalDate.now().minusMonths(MESES_PARTICIONADOS));
+            }
+            particiones.mantener();
+        }
+
+        // Índices en memoria: se cargan en segundo plano mientras se muestra el login.
+        // El refresco toma su marca antes, para no perder lo que cambie durante la carga
+        if (esquemaAlDia) {
+            RefrescoCitas.getInstancia().iniciar(Duration.ofSeconds(REFRESCO_INDICES_SEG));
+            RefrescoPacientes.getInstancia().iniciar(Duration.ofSeconds(REFRESCO_INDICES_SEG));
+        }
+        IndiceOcupacion.getInstancia().cargarEnSegundoPlano(LocalDate.now());
+        IndiceNombresPacientes.getInstancia().cargarEnSegundoPlano();
+        IndiceDni.getInstancia().cargarEnSegundoPlano();
+
+        // Bajas de citas que ya no necesita la sincronización de agendas
+        Thread.ofVirtual().name("purga-citas-eliminadas").start(() -> new CitaDAO().purgarEliminadas());
+        return esquemaAlDia;
+    }
+
+    private static Stage ventanaProgreso() {
+        ProgressIndicator indicador = new ProgressIndicator();
+        VBox contenido = new VBox(12, indicador, new Label("Preparando la base de datos..."));
+        contenido.setAlignment(Pos.CENTER);
+        contenido.setPadding(new Insets(20));
+
+        Stage progreso = new Stage(StageStyle.UTILITY);
+        progreso.setTitle("Gestión Médica");
+        progreso.setScene(new Scene(contenido, 280, 140));
+        progreso.setResizable(false);
+        return progreso;
+    }
+
+    private void mostrarPrincipal(Stage stage) throws IOException {
 
         // OJO: esta ruta es desde resources
         String fxmlPath = "/com/example/gestionmedica/hello-view.fxml";
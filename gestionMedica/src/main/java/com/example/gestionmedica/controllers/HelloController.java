@@ -9,8 +9,9 @@ import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
-import com.example.gestionmedica.dao.LoginDAO;
 import com.example.gestionmedica.models.Usuario;
+import com.example.gestionmedica.services.AccesoDatosAsync;
+import com.example.gestionmedica.services.ServicioLogin;
 
 public class HelloController {
 
@@ -23,7 +24,8 @@ public class HelloController {
     @FXML
     private Label lblMensaje;
 
-    private LoginDAO loginDAO = new LoginDAO();
+    // El login se hace en segundo plano para no congelar la ventana
+    private AccesoDatosAsync accesoDatos = new AccesoDatosAsync();
 
     @FXML
     private void onHelloButtonClick(ActionEvent event) {
@@ -37,19 +39,35 @@ public class HelloController {
             return;
         }
 
-        // Intentar login
-        Usuario usuario = loginDAO.login(username, password);
+        // Intentar login (la respuesta llega en el hilo de JavaFX)
+        lblMensaje.setText("⏳ Comprobando credenciales...");
+        lblMensaje.setStyle("-fx-text-fill: gray;");
+        txtUsuario.setDisable(true);
+        txtPassword.setDisable(true);
 
-        if (usuario != null && usuario.isActivo()) {
-            lblMensaje.setText("✅ Login correcto!");
-            lblMensaje.setStyle("-fx-text-fill: green;");
+        accesoDatos.login(username, password).whenComplete((usuario, error) -> {
+            txtUsuario.setDisable(false);
+            txtPassword.setDisable(false);
 
-            abrirDashboard(usuario);
-        } else {
-            lblMensaje.setText("❌ Usuario o contraseña incorrectos");
-            lblMensaje.setStyle("-fx-text-fill: red;");
-            txtPassword.clear();
-        }
+            if (error != null) {
+                lblMensaje.setText("⚠️ No se pudo conectar. Inténtalo de nuevo");
+                lblMensaje.setStyle("-fx-text-fill: orange;");
+            } else if (usuario != null && usuario.isActivo()) {
+                lblMensaje.setText("✅ Login correcto!");
+                lblMensaje.setStyle("-fx-text-fill: green;");
+
+                abrirDashboard(usuario);
+            } else if (ServicioLogin.getInstancia().segundosDeEspera(username) > 0) {
+                lblMensaje.setText("⚠️ Demasiados intentos. Espera " +
+                        ServicioLogin.getInstancia().segundosDeEspera(username) + " s");
+                lblMensaje.setStyle("-fx-text-fill: orange;");
+                txtPassword.clear();
+            } else {
+                lblMensaje.setText("❌ Usuario o contraseña incorrectos");
+                lblMensaje.setStyle("-fx-text-fill: red;");
+                txtPassword.clear();
+            }
+        });
     }
 
     private void abrirDashboard(Usuario usuario) {
@@ -0,0 +1,300 @@
+package com.example.gestionmedica.dao;
+
+import com.example.gestionmedica.dao.EventoCambio.Entidad;
+import com.example.gestionmedica.dao.EventoCambio.Tipo;
+import com.example.gestionmedica.models.Cita;
+import com.example.gestionmedica.models.Cita.EstadoCita;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Bus en memoria de los cambios que hacen los DAO
+ *
+ * CitaDAO, PacienteDAO y MedicoDAO publican un EventoCambio tras cada escritura
+ * correcta. Publicar es encolar en una cola sin bloqueos y, como mucho, despertar
+ * al hilo despachador; sin suscriptores no cuesta nada
+ *
+ * El despachador espera una ventana corta (50 ms) para juntar eventos, los fusiona
+ * por entidad e ID (alta + modificación = alta, alta + baja = nada...) y entrega
+ * el lote a cada suscriptor en su ejecutor, p. ej. Platform::runLater. Si el
+ * suscriptor aún no ha procesado el lote anterior, los nuevos se fusionan con él
+ * en lugar de encolar otra tarea, así el hilo de JavaFX nunca acumula trabajo
+ *
+ * Los índices en memoria (IndiceOcupacion, IndiceDni...) siguen actualizándose
+ * directamente desde los DAO: necesitan el cambio al instante, no 50 ms después
+ */
+public final class BusCambios {
+
+    private static final long VENTANA_NANOS = Long.getLong("gestionmedica.eventos.ventanaMs", 50) * 1_000_000;
+
+    private static final BusCambios INSTANCIA = new BusCambios();
+
+    private final ConcurrentLinkedQueue<EventoCambio> cola = new ConcurrentLinkedQueue<>();
+    private final CopyOnWriteArrayList<Suscripcion> suscripciones = new CopyOnWriteArrayList<>();
+    // true desde que se encola un evento hasta que el despachador empieza a vaciar la cola
+    private final AtomicBoolean pendiente = new AtomicBoolean();
+    private final LongAdder publicados = new LongAdder();
+    private final LongAdder entregados = new LongAdder();
+    private volatile Thread despachador;
+
+    private BusCambios() {
+    }
+
+    public static BusCambios getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Se suscribe a los cambios de algunas entidades
+     * @param entrega Ejecutor en el que se llama al receptor (Platform::runLater para la UI,
+     *                Runnable::run para hacerlo en el propio hilo despachador)
+     * @param receptor Recibe lotes de eventos ya fusionados, en orden de llegada
+     * @param entidades Entidades que interesan (ninguna = todas)
+     * @return Suscripción, para cancelarla
+     */
+    public Suscripcion suscribir(Executor entrega, Consumer<List<EventoCambio>> receptor, Entidad... entidades) {
+        Set<Entidad> filtro = entidades.length == 0 ? EnumSet.allOf(Entidad.class) : EnumSet.noneOf(Entidad.class);
+        Collections.addAll(filtro, entidades);
+        Suscripcion suscripcion = new Suscripcion(filtro, entrega, receptor);
+        suscripciones.add(suscripcion);
+        arrancarDespachador();
+        return suscripcion;
+    }
+
+    public long getPublicados() {
+        return publicados.sum();
+    }
+
+    /**
+     * Eventos entregados a los suscriptores tras fusionarlos
+     */
+    public long getEntregados() {
+        return entregados.sum();
+    }
+
+    // ==================== Publicación (desde los DAO) ====================
+
+    void alta(Entidad entidad, int id, Object valor) {
+        publicar(entidad, Tipo.ALTA, id, valor);
+    }
+
+    void modificacion(Entidad entidad, int id, Object valor) {
+        publicar(entidad, Tipo.MODIFICACION, id, valor);
+    }
+
+    void baja(Entidad entidad, int id) {
+        publicar(entidad, Tipo.BAJA, id, null);
+    }
+
+    void recarga(Entidad entidad) {
+        publicar(entidad, Tipo.RECARGA, 0, null);
+    }
+
+    private void publicar(Entidad entidad, Tipo tipo, int id, Object valor) {
+        if (suscripciones.isEmpty()) {
+            return;
+        }
+        // Las citas se copian: el DAO las recibió del llamador, que puede seguir modificándolas
+        if (valor instanceof Cita cita) {
+            valor = copiar(cita, cita.getEstado());
+        }
+        cola.offer(new EventoCambio(entidad, tipo, id, valor));
+        publicados.increment();
+        if (!pendiente.get() && pendiente.compareAndSet(false, true)) {
+            LockSupport.unpark(despachador);
+        }
+    }
+
+    // ==================== Despacho ====================
+
+    private synchronized void arrancarDespachador() {
+        if (despachador == null) {
+            despachador = Thread.ofPlatform().daemon().name("bus-cambios").start(this::despachar);
+        }
+    }
+
+    private void despachar() {
+        while (true) {
+            while (!pendiente.get()) {
+                LockSupport.park(this);
+            }
+            // Ventana para juntar las escrituras de una misma operación (p. ej. guardar un formulario)
+            long fin = System.nanoTime() + VENTANA_NANOS;
+            for (long resto = VENTANA_NANOS; resto > 0; resto = fin - System.nanoTime()) {
+                LockSupport.parkNanos(this, resto);
+            }
+            // Se baja la marca antes de vaciar: lo que llegue después despierta otra vuelta
+            pendiente.set(false);
+
+            Map<Long, EventoCambio> lote = new LinkedHashMap<>();
+            EventoCambio evento;
+            while ((evento = cola.poll()) != null) {
+                acumular(lote, evento);
+            }
+            if (lote.isEmpty()) {
+                continue;
+            }
+            List<EventoCambio> eventos = new ArrayList<>(lote.values());
+            completarNombres(eventos);
+            for (Suscripcion suscripcion : suscripciones) {
+                suscripcion.recibir(eventos);
+            }
+        }
+    }
+
+    /**
+     * Rellena los nombres de paciente y médico de las citas (las copias del evento)
+     * fuera del hilo de la UI
+     */
+    private static void completarNombres(List<EventoCambio> eventos) {
+        List<Cita> sinNombre = new ArrayList<>();
+        for (EventoCambio evento : eventos) {
+            Cita cita = evento.getValor(Cita.class);
+            if (cita != null && (cita.getNombrePaciente() == null || cita.getNombreMedico() == null)) {
+                sinNombre.add(cita);
+            }
+        }
+        if (!sinNombre.isEmpty()) {
+            try {
+                DirectorioNombres.getInstancia().resolver(sinNombre);
+            } catch (RuntimeException e) {
+                System.err.println("✗ Error al resolver nombres de citas del bus: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Añade un evento a un lote fusionándolo con el pendiente de la misma entidad e ID
+     */
+    static void acumular(Map<Long, EventoCambio> lote, EventoCambio evento) {
+        if (evento.getTipo() == Tipo.RECARGA) {
+            // Una recarga deja obsoletos los eventos anteriores de la entidad
+            lote.values().removeIf(e -> e.getEntidad() == evento.getEntidad());
+            lote.put(evento.clave(), evento);
+            return;
+        }
+        if (lote.containsKey(EventoCambio.claveRecarga(evento.getEntidad()))) {
+            return;
+        }
+        long clave = evento.clave();
+        EventoCambio anterior = lote.get(clave);
+        EventoCambio fusionado = anterior == null ? evento : fusionar(anterior, evento);
+        if (fusionado == null) {
+            lote.remove(clave);
+        } else {
+            lote.put(clave, fusionado);
+        }
+    }
+
+    /**
+     * Fusiona dos eventos de la misma entidad e ID
+     * @return Evento equivalente o null si se anulan (alta seguida de baja)
+     */
+    private static EventoCambio fusionar(EventoCambio anterior, EventoCambio nuevo) {
+        switch (nuevo.getTipo()) {
+            case BAJA:
+                return anterior.getTipo() == Tipo.ALTA ? null : nuevo;
+            case ALTA:
+                return anterior.getTipo() == Tipo.BAJA
+                        ? new EventoCambio(nuevo.getEntidad(), Tipo.MODIFICACION, nuevo.getId(), nuevo.getValor())
+                        : nuevo;
+            default:
+                Object valor = nuevo.getValor();
+                // Cambio de estado sobre una cita que ya venía completa: se aplica a una copia
+                if (valor instanceof EstadoCita estado && anterior.getValor() instanceof Cita cita) {
+                    valor = copiar(cita, estado);
+                }
+                Tipo tipo = anterior.getTipo() == Tipo.ALTA ? Tipo.ALTA : Tipo.MODIFICACION;
+                return new EventoCambio(nuevo.getEntidad(), tipo, nuevo.getId(), valor);
+        }
+    }
+
+    private static Cita copiar(Cita cita, EstadoCita estado) {
+        Cita copia = new Cita(cita.getIdCita(), cita.getIdPaciente(), cita.getIdMedico(), cita.getFechaCita(),
+                              cita.getHoraCita(), cita.getMotivo(), estado);
+        copia.setNombrePaciente(cita.getNombrePaciente());
+        copia.setNombreMedico(cita.getNombreMedico());
+        return copia;
+    }
+
+    /**
+     * Suscripción al bus: guarda los eventos aún no entregados y tiene como mucho
+     * una entrega en curso en su ejecutor
+     */
+    public final class Suscripcion {
+
+        private final Set<Entidad> entidades;
+        private final Executor entrega;
+        private final Consumer<List<EventoCambio>> receptor;
+        private final AtomicBoolean programada = new AtomicBoolean();
+        private final Map<Long, EventoCambio> pendientes = new LinkedHashMap<>();
+        private volatile boolean activa = true;
+
+        private Suscripcion(Set<Entidad> entidades, Executor entrega, Consumer<List<EventoCambio>> receptor) {
+            this.entidades = entidades;
+            this.entrega = entrega;
+            this.receptor = receptor;
+        }
+
+        /**
+         * Deja de recibir eventos (los pendientes se descartan)
+         */
+        public void cancelar() {
+            activa = false;
+            suscripciones.remove(this);
+        }
+
+        private void recibir(List<EventoCambio> eventos) {
+            boolean hayEventos = false;
+            synchronized (pendientes) {
+                for (EventoCambio evento : eventos) {
+                    if (entidades.contains(evento.getEntidad())) {
+                        acumular(pendientes, evento);
+                        hayEventos = true;
+                    }
+                }
+            }
+            if (hayEventos && programada.compareAndSet(false, true)) {
+                try {
+                    entrega.execute(this::entregar);
+                } catch (RejectedExecutionException e) {
+                    programada.set(false);
+                    System.err.println("✗ Error al entregar eventos de cambio: " + e.getMessage());
+                }
+            }
+        }
+
+        private void entregar() {
+            // Se baja la marca antes de tomar los pendientes: lo que llegue después programa otra entrega
+            programada.set(false);
+            List<EventoCambio> lote;
+            synchronized (pendientes) {
+                lote = new ArrayList<>(pendientes.values());
+                pendientes.clear();
+            }
+            if (!activa || lote.isEmpty()) {
+                return;
+            }
+            entregados.add(lote.size());
+            try {
+                receptor.accept(lote);
+            } catch (RuntimeException e) {
+                System.err.println("✗ Error en un suscriptor del bus de cambios: " + e.getMessage());
+            }
+        }
+    }
+}
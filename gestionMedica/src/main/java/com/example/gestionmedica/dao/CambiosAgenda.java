@@ -0,0 +1,61 @@
+package com.example.gestionmedica.dao;
+
+import com.example.gestionmedica.models.Cita;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cambios de la agenda de un médico desde una marca de tiempo
+ * Para la siguiente sincronización se pasa getMarca() tal cual
+ */
+public class CambiosAgenda {
+
+    private final List<Cita> cambiadas;
+    private final List<Integer> eliminadas;
+    private final LocalDateTime marca;
+    private final boolean completa;
+
+    public CambiosAgenda(List<Cita> cambiadas, List<Integer> eliminadas, LocalDateTime marca, boolean completa) {
+        this.cambiadas = Collections.unmodifiableList(cambiadas);
+        this.eliminadas = Collections.unmodifiableList(eliminadas);
+        this.marca = marca;
+        this.completa = completa;
+    }
+
+    /**
+     * Citas creadas o modificadas (o todas, si es completa)
+     */
+    public List<Cita> getCambiadas() {
+        return cambiadas;
+    }
+
+    /**
+     * IDs de citas eliminadas o pasadas a otro médico
+     */
+    public List<Integer> getEliminadas() {
+        return eliminadas;
+    }
+
+    /**
+     * Marca para pedir los cambios siguientes
+     */
+    public LocalDateTime getMarca() {
+        return marca;
+    }
+
+    /**
+     * true si es la agenda entera (primera vez o marca demasiado antigua):
+     * hay que descartar la copia local en lugar de aplicarle los cambios
+     */
+    public boolean isCompleta() {
+        return completa;
+    }
+
+    @Override
+    public String toString() {
+        return "CambiosAgenda{cambiadas=" + cambiadas.size() + ", eliminadas=" + eliminadas.size() +
+               ", marca=" + marca + ", completa=" + completa + '}';
+    }
+}
@@ -1,40 +1,146 @@
 package com.example.gestionmedica.dao;
 
+import com.example.gestionmedica.dao.EventoCambio.Entidad;
 import com.example.gestionmedica.models.Cita;
 import com.example.gestionmedica.models.Cita.EstadoCita;
 import com.example.gestionmedica.utils.DatabaseConnection;
+import com.example.gestionmedica.utils.MetricasDAO;
 
 import java.sql.*;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * DAO para la gestión de operaciones CRUD sobre la tabla 'citas'
  */
 public class CitaDAO {
 
+    // Filas por lote (y por transacción) en insertarLote
+    public static final int TAMANO_LOTE_DEFECTO = 500;
+
+    private static final String SQL_INSERTAR =
+            "INSERT INTO citas (id_paciente, id_medico, fecha_cita, hora_cita, motivo, estado) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    // Columnas de la cita más los nombres de paciente y médico
+    private static final String SELECT_CITA_COMPLETA =
+            "SELECT c.*, " +
+            "CONCAT(p.nombre, ' ', p.apellidos) as nombre_paciente, " +
+            "CONCAT(m.nombre, ' ', m.apellidos) as nombre_medico " +
+            "FROM citas c " +
+            "INNER JOIN pacientes p ON c.id_paciente = p.id_paciente " +
+            "INNER JOIN medicos m ON c.id_medico = m.id_medico ";
+
+    // Solo las columnas de la cita; los nombres se resuelven con DirectorioNombres
+    static final String SELECT_CITA =
+            "SELECT c.id_cita, c.id_paciente, c.id_medico, c.fecha_cita, c.hora_cita, c.motivo, c.estado " +
+            "FROM citas c ";
+
+    // Posición estrictamente posterior a la última fila en el orden (fecha DESC, hora DESC, id DESC)
+    private static final String CONDICION_SIGUIENTE_PAGINA =
+            "(c.fecha_cita < ? OR (c.fecha_cita = ? AND " +
+            "(c.hora_cita < ? OR (c.hora_cita = ? AND c.id_cita < ?)))) ";
+
+    // Agenda de un día del médico para corregir el índice de ocupación (clave uq_medico_fecha_hora)
+    private static final String SQL_OCUPACION_DIA =
+            "SELECT id_cita, hora_cita, estado FROM citas WHERE id_medico = ? AND fecha_cita = ?";
+
+    // Sincronización por marca de tiempo (obtenerCambiosPorMedico). Las bajas se guardan
+    // RETENCION_BAJAS_DIAS; con una marca más antigua hay que devolver la agenda entera
+    public static final int RETENCION_BAJAS_DIAS = 30;
+    // Solape entre sincronizaciones: cubre transacciones que escribieron updated_at y confirmaron después
+    private static final Duration MARGEN_SINCRONIZACION = Duration.ofSeconds(5);
+
+    static final String CONDICION_CAMBIOS_MEDICO = "WHERE c.id_medico = ? AND c.updated_at > ?";
+    static final String SQL_BAJAS_MEDICO =
+            "SELECT id_cita FROM citas_eliminadas WHERE id_medico = ? AND eliminada_en > ?";
+
+    private static final String ORDEN_PAGINA = "ORDER BY c.fecha_cita DESC, c.hora_cita DESC, c.id_cita DESC ";
+
+    // Filas de citas (con o sin nombres de paciente y médico), leídas por posición
+    private static final MapeadorColumnas<Cita> MAPEO_CITA = new MapeadorColumnas<>(CitaDAO::construirCita,
+            "id_cita", "id_paciente", "id_medico", "fecha_cita", "hora_cita", "motivo", "estado",
+            "nombre_paciente", "nombre_medico");
+
+    // Columnas que entrega recorrerParaExportar, en este orden
+    public static final String[] COLUMNAS_EXPORTACION = {
+            "id_cita", "fecha_cita", "hora_cita", "id_paciente", "dni_paciente", "nombre_paciente",
+            "id_medico", "nombre_medico", "especialidad", "estado", "motivo"};
+
+    private static final String SELECT_EXPORTACION =
+            "SELECT c.id_cita, c.fecha_cita, c.hora_cita, c.id_paciente, p.dni, " +
+            "CONCAT(p.nombre, ' ', p.apellidos), c.id_medico, CONCAT(m.nombre, ' ', m.apellidos), " +
+            "m.especialidad, c.estado, c.motivo " +
+            "FROM citas c " +
+            "INNER JOIN pacientes p ON c.id_paciente = p.id_paciente " +
+            "INNER JOIN medicos m ON c.id_medico = m.id_medico ";
+
+    // Métricas de cada método (ver MetricasDAO)
+    private static final MetricasDAO.Operacion M_INSERTAR = metrica("insertar");
+    private static final MetricasDAO.Operacion M_INSERTAR_LOTE = metrica("insertarLote");
+    private static final MetricasDAO.Operacion M_OBTENER_TODAS = metrica("obtenerTodas");
+    private static final MetricasDAO.Operacion M_OBTENER_TODAS_SIN_JOIN = metrica("obtenerTodasSinJoin");
+    private static final MetricasDAO.Operacion M_FLUJO_TODAS = metrica("flujoTodas");
+    private static final MetricasDAO.Operacion M_RECORRER_TODAS = metrica("recorrerTodas");
+    private static final MetricasDAO.Operacion M_RECORRER_PARA_EXPORTAR = metrica("recorrerParaExportar");
+    private static final MetricasDAO.Operacion M_RECORRER_COLUMNAS = metrica("recorrerColumnas");
+    private static final MetricasDAO.Operacion M_OBTENER_RANGO_FECHAS = metrica("obtenerRangoFechas");
+    private static final MetricasDAO.Operacion M_OBTENER_POR_ID = metrica("obtenerPorId");
+    private static final MetricasDAO.Operacion M_OBTENER_POR_PACIENTE = metrica("obtenerPorPaciente");
+    private static final MetricasDAO.Operacion M_OBTENER_POR_MEDICO = metrica("obtenerPorMedico");
+    private static final MetricasDAO.Operacion M_OBTENER_POR_MEDICO_SIN_JOIN = metrica("obtenerPorMedicoSinJoin");
+    private static final MetricasDAO.Operacion M_OBTENER_CAMBIOS_POR_MEDICO = metrica("obtenerCambiosPorMedico");
+    private static final MetricasDAO.Operacion M_OBTENER_POR_PACIENTE_SIN_JOIN = metrica("obtenerPorPacienteSinJoin");
+    private static final MetricasDAO.Operacion M_OBTENER_POR_FECHA = metrica("obtenerPorFecha");
+    private static final MetricasDAO.Operacion M_OBTENER_POR_FECHA_SIN_JOIN = metrica("obtenerPorFechaSinJoin");
+    private static final MetricasDAO.Operacion M_OBTENER_CITAS_FUTURAS = metrica("obtenerCitasFuturas");
+    private static final MetricasDAO.Operacion M_OBTENER_POR_ESTADO = metrica("obtenerPorEstado");
+    private static final MetricasDAO.Operacion M_OBTENER_POR_PACIENTE_ENTRE = metrica("obtenerPorPacienteEntre");
+    private static final MetricasDAO.Operacion M_OBTENER_POR_MEDICO_ENTRE = metrica("obtenerPorMedicoEntre");
+    private static final MetricasDAO.Operacion M_OBTENER_POR_ESTADO_ENTRE = metrica("obtenerPorEstadoEntre");
+    private static final MetricasDAO.Operacion M_OBTENER_PAGINA_TODAS = metrica("obtenerPaginaTodas");
+    private static final MetricasDAO.Operacion M_OBTENER_PAGINA_POR_ESTADO = metrica("obtenerPaginaPorEstado");
+    private static final MetricasDAO.Operacion M_OBTENER_PAGINA_POR_MEDICO = metrica("obtenerPaginaPorMedico");
+    private static final MetricasDAO.Operacion M_ACTUALIZAR = metrica("actualizar");
+    private static final MetricasDAO.Operacion M_ACTUALIZAR_ESTADO = metrica("actualizarEstado");
+    private static final MetricasDAO.Operacion M_ELIMINAR = metrica("eliminar");
+    private static final MetricasDAO.Operacion M_PURGAR_ELIMINADAS = metrica("purgarEliminadas");
+    private static final MetricasDAO.Operacion M_CONTAR_CITAS = metrica("contarCitas");
+    private static final MetricasDAO.Operacion M_CONTAR_CITAS_DE_HOY = metrica("contarCitasDeHoy");
+
     /**
      * Inserta una nueva cita en la base de datos
      * @param cita La cita a insertar
      * @return true si se insertó correctamente
      */
     public boolean insertar(Cita cita) {
-        String sql = "INSERT INTO citas (id_paciente, id_medico, fecha_cita, hora_cita, motivo, estado) " +
-                     "VALUES (?, ?, ?, ?, ?, ?)";
+        // Comprobación en memoria antes de ir a la BD
+        if (hayConflicto(cita, 0)) {
+            System.err.println("✗ Error al insertar cita: el médico ya tiene una cita a esa hora");
+            return false;
+        }
         
+        MetricasDAO.Medicion medicion = M_INSERTAR.iniciar();
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+             PreparedStatement stmt = conn.prepareStatement(SQL_INSERTAR, Statement.RETURN_GENERATED_KEYS)) {
             
-            stmt.setInt(1, cita.getIdPaciente());
-            stmt.setInt(2, cita.getIdMedico());
-            stmt.setDate(3, Date.valueOf(cita.getFechaCita()));
-            stmt.setTime(4, Time.valueOf(cita.getHoraCita()));
-            stmt.setString(5, cita.getMotivo());
-            stmt.setString(6, cita.getEstado().getValor());
+            // Sin claves foráneas (citas particionada) el paciente y el médico se comprueban aquí
+            boolean integridad = IntegridadCitas.necesaria(conn);
+            if (integridad) {
+                conn.setAutoCommit(false);
+                IntegridadCitas.bloquearReferencias(conn, cita.getIdPaciente(), cita.getIdMedico());
+            }
+            
+            asignarParametrosInsercion(stmt, cita);
             
             int filasAfectadas = stmt.executeUpdate();
+            medicion.filas(filasAfectadas);
             
             if (filasAfectadas > 0) {
                 // Obtener el ID generado
@@ -43,19 +149,176 @@ public class CitaDAO {
                         cita.setIdCita(rs.getInt(1));
                     }
                 }
+                if (integridad) {
+                    conn.commit();
+                }
+                IndiceOcupacion.getInstancia().registrar(cita);
+                BusCambios.getInstancia().alta(Entidad.CITA, cita.getIdCita(), cita);
                 System.out.println("✓ Cita insertada con ID: " + cita.getIdCita());
                 return true;
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al insertar cita: " + e.getMessage());
             if (e.getMessage().contains("uq_medico_fecha_hora")) {
                 System.err.println("  El médico ya tiene una cita a esa hora");
             }
+        } finally {
+            medicion.terminar();
         }
         return false;
     }
 
+    /**
+     * Indica si la hora de la cita choca con otra del médico según el índice de ocupación
+     * Un choque en el índice es solo un indicio: la otra cita pudo cancelarse o borrarse
+     * desde otro puesto. Antes de rechazar se recarga ese día del médico desde la BD
+     * y se vuelve a preguntar al índice
+     * @param idCitaExcluida Cita que se está modificando (no choca consigo misma) o 0
+     * @return true si hay conflicto (si la BD no responde, se hace caso al índice)
+     */
+    private boolean hayConflicto(Cita cita, int idCitaExcluida) {
+        IndiceOcupacion indice = IndiceOcupacion.getInstancia();
+        if (cita.getEstado() == EstadoCita.CANCELADA
+                || !indice.hayConflicto(cita.getIdMedico(), cita.getFechaCita(), cita.getHoraCita(), idCitaExcluida)) {
+            return false;
+        }
+        
+        List<Cita> delDia = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SQL_OCUPACION_DIA)) {
+            stmt.setInt(1, cita.getIdMedico());
+            stmt.setDate(2, Date.valueOf(cita.getFechaCita()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    delDia.add(new Cita(rs.getInt(1), 0, cita.getIdMedico(), cita.getFechaCita(),
+                                        rs.getObject(2, LocalTime.class), null, EstadoCita.fromString(rs.getString(3))));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Error al comprobar la agenda del médico: " + e.getMessage());
+            return true;
+        }
+        indice.refrescarDia(cita.getIdMedico(), cita.getFechaCita(), delDia);
+        return indice.hayConflicto(cita.getIdMedico(), cita.getFechaCita(), cita.getHoraCita(), idCitaExcluida);
+    }
+
+    /**
+     * Inserta varias citas por lotes usando el tamaño de lote por defecto
+     * @param citas Citas a insertar (se les asigna el ID generado)
+     * @return Resultado con el número de insertadas y las filas fallidas
+     */
+    public ResultadoLote<Cita> insertarLote(List<Cita> citas) {
+        return insertarLote(citas, TAMANO_LOTE_DEFECTO);
+    }
+
+    /**
+     * Inserta varias citas por lotes JDBC, con una transacción por lote
+     * Si un lote falla (p. ej. por uq_medico_fecha_hora) se repite fila a fila
+     * para insertar las válidas y registrar solo las que fallan
+     * @param citas Citas a insertar (se les asigna el ID generado)
+     * @param tamanoLote Filas por lote
+     * @return Resultado con el número de insertadas y las filas fallidas
+     */
+    public ResultadoLote<Cita> insertarLote(List<Cita> citas, int tamanoLote) {
+        ResultadoLote<Cita> resultado = new ResultadoLote<>(citas.size());
+        int tamano = Math.max(1, tamanoLote);
+        
+        MetricasDAO.Medicion medicion = M_INSERTAR_LOTE.iniciar();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SQL_INSERTAR, Statement.RETURN_GENERATED_KEYS)) {
+            
+            conn.setAutoCommit(false);
+            boolean integridad = IntegridadCitas.necesaria(conn);
+            
+            for (int inicio = 0; inicio < citas.size(); inicio += tamano) {
+                List<Cita> tramo = citas.subList(inicio, Math.min(inicio + tamano, citas.size()));
+                try {
+                    if (integridad) {
+                        IntegridadCitas.bloquearReferencias(conn, tramo);
+                    }
+                    for (Cita cita : tramo) {
+                        asignarParametrosInsercion(stmt, cita);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    
+                    // Las claves generadas llegan en el mismo orden que las filas del lote
+                    try (ResultSet rs = stmt.getGeneratedKeys()) {
+                        int i = 0;
+                        while (rs.next() && i < tramo.size()) {
+                            tramo.get(i++).setIdCita(rs.getInt(1));
+                        }
+                    }
+                    conn.commit();
+                    resultado.registrarInsertados(tramo.size());
+                    for (Cita cita : tramo) {
+                        IndiceOcupacion.getInstancia().registrar(cita);
+                    }
+                    
+                } catch (SQLException e) {
+                    conn.rollback();
+                    stmt.clearBatch();
+                    insertarFilaAFila(conn, stmt, tramo, inicio, integridad, resultado);
+                }
+            }
+            
+            // Un lote puede ser una importación entera: se avisa una vez en lugar de por cita
+            if (resultado.getInsertados() > 0) {
+                BusCambios.getInstancia().recarga(Entidad.CITA);
+            }
+            System.out.println("✓ Lote de citas: " + resultado.getInsertados() + " insertadas, " +
+                               resultado.getFallos().size() + " fallidas");
+            
+        } catch (SQLException e) {
+            medicion.error();
+            System.err.println("✗ Error al insertar lote de citas: " + e.getMessage());
+            // Las filas que no llegaron a procesarse cuentan como fallidas
+            for (int i = resultado.getInsertados() + resultado.getFallos().size(); i < citas.size(); i++) {
+                resultado.registrarFallo(i, citas.get(i), e.getMessage());
+            }
+        } finally {
+            medicion.filas(resultado.getInsertados());
+            medicion.terminar();
+        }
+        return resultado;
+    }
+
+    /**
+     * Inserta las citas de un lote fallido una a una, cada una en su propia transacción
+     * @param integridad Si hay que comprobar el paciente y el médico de cada cita (IntegridadCitas)
+     */
+    private void insertarFilaAFila(Connection conn, PreparedStatement stmt, List<Cita> tramo,
+                                   int desplazamiento, boolean integridad,
+                                   ResultadoLote<Cita> resultado) throws SQLException {
+        for (int i = 0; i < tramo.size(); i++) {
+            Cita cita = tramo.get(i);
+            cita.setIdCita(0);
+            try {
+                if (integridad) {
+                    IntegridadCitas.bloquearReferencias(conn, cita.getIdPaciente(), cita.getIdMedico());
+                }
+                asignarParametrosInsercion(stmt, cita);
+                stmt.executeUpdate();
+                try (ResultSet rs = stmt.getGeneratedKeys()) {
+                    if (rs.next()) {
+                        cita.setIdCita(rs.getInt(1));
+                    }
+                }
+                conn.commit();
+                resultado.registrarInsertados(1);
+                IndiceOcupacion.getInstancia().registrar(cita);
+            } catch (SQLException e) {
+                conn.rollback();
+                String mensaje = e.getMessage() != null && e.getMessage().contains("uq_medico_fecha_hora")
+                        ? "El médico ya tiene una cita a esa hora"
+                        : e.getMessage();
+                resultado.registrarFallo(desplazamiento + i, cita, mensaje);
+            }
+        }
+    }
+
     /**
      * Obtiene todas las citas con información del paciente y médico
      * @return Lista de todas las citas
@@ -70,22 +333,153 @@ public class CitaDAO {
                      "INNER JOIN medicos m ON c.id_medico = m.id_medico " +
                      "ORDER BY c.fecha_cita DESC, c.hora_cita DESC";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        MetricasDAO.Medicion medicion = M_OBTENER_TODAS.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
+            MapeadorFila<Cita> mapeador = MAPEO_CITA.compilar(rs);
             while (rs.next()) {
-                citas.add(mapearCitaCompleta(rs));
+                citas.add(mapeador.mapear(rs));
             }
             
             System.out.println("✓ Se obtuvieron " + citas.size() + " citas");
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al obtener citas: " + e.getMessage());
+        } finally {
+            medicion.filas(citas.size());
+            medicion.terminar();
         }
         return citas;
     }
 
+    /**
+     * Obtiene todas las citas sin JOIN: los nombres de paciente y médico
+     * se resuelven desde el directorio en memoria
+     * @return Lista de todas las citas
+     */
+    public List<Cita> obtenerTodasSinJoin() {
+        return consultarSinJoin("ORDER BY c.fecha_cita DESC, c.hora_cita DESC", null, "citas",
+                M_OBTENER_TODAS_SIN_JOIN);
+    }
+
+    /**
+     * Recorre todas las citas en streaming, sin cargarlas en memoria
+     * Hay que cerrar el Stream (try-with-resources) para liberar la conexión
+     * @return Stream perezoso de citas, de la más reciente a la más antigua
+     */
+    public Stream<Cita> flujoTodas() {
+        return FlujoResultados.abrir(
+                SELECT_CITA_COMPLETA + "ORDER BY c.fecha_cita DESC, c.hora_cita DESC",
+                stmt -> { },
+                MAPEO_CITA,
+                "citas",
+                M_FLUJO_TODAS,
+                true);
+    }
+
+    /**
+     * Recorre todas las citas en streaming entregando cada una al visitante
+     * @param visitante Acción a aplicar a cada cita
+     * @return Número de citas recorridas o -1 si hubo un error
+     */
+    public long recorrerTodas(Consumer<Cita> visitante) {
+        return FlujoResultados.recorrer(
+                SELECT_CITA_COMPLETA + "ORDER BY c.fecha_cita DESC, c.hora_cita DESC",
+                stmt -> { },
+                MAPEO_CITA,
+                "citas",
+                visitante,
+                M_RECORRER_TODAS,
+                true);
+    }
+
+    /**
+     * Recorre en streaming las citas del filtro sin crear objetos Cita, para exportarlas
+     * El escritor recibe el ResultSet en cada fila, con las columnas de COLUMNAS_EXPORTACION
+     * (fecha y hora se pueden leer con getString, ya formateadas)
+     * Las excepciones no comprobadas del escritor interrumpen el recorrido y se propagan
+     * @param filtro Filtro de las citas
+     * @param escritor Acción sobre cada fila (su resultado se ignora)
+     * @return Número de filas recorridas o -1 si hubo un error de BD
+     */
+    public long recorrerParaExportar(FiltroCitas filtro, MapeadorFila<?> escritor) {
+        return recorrerFiltradas(SELECT_EXPORTACION, filtro, escritor, "citas para exportar",
+                M_RECORRER_PARA_EXPORTAR);
+    }
+
+    /**
+     * Recorre en streaming las columnas de las citas del filtro, sin JOIN ni objetos Cita
+     * El lector recibe el ResultSet en cada fila con las columnas id_cita, id_paciente,
+     * id_medico, fecha_cita, hora_cita, motivo y estado (en ese orden)
+     * @param filtro Filtro de las citas
+     * @param lector Acción sobre cada fila (su resultado se ignora)
+     * @return Número de filas recorridas o -1 si hubo un error de BD
+     */
+    public long recorrerColumnas(FiltroCitas filtro, MapeadorFila<?> lector) {
+        return recorrerFiltradas(SELECT_CITA, filtro, lector, "columnas de citas", M_RECORRER_COLUMNAS);
+    }
+
+    private long recorrerFiltradas(String select, FiltroCitas filtro, MapeadorFila<?> lector, String descripcion,
+                                   MetricasDAO.Operacion operacion) {
+        StringBuilder sql = new StringBuilder(select);
+        List<Object> parametros = new ArrayList<>();
+        filtro.aplicar(sql, parametros);
+        sql.append("ORDER BY c.fecha_cita, c.hora_cita, c.id_cita");
+        
+        return FlujoResultados.recorrer(
+                sql.toString(),
+                stmt -> {
+                    for (int i = 0; i < parametros.size(); i++) {
+                        stmt.setObject(i + 1, parametros.get(i));
+                    }
+                },
+                rs -> {
+                    lector.mapear(rs);
+                    return Boolean.TRUE;
+                },
+                descripcion,
+                fila -> { },
+                operacion,
+                true);
+    }
+
+    /**
+     * Primera y última fecha de las citas del filtro
+     * @param filtro Filtro de las citas
+     * @return {primera, última} o null si no hay citas o hubo un error
+     */
+    public LocalDate[] obtenerRangoFechas(FiltroCitas filtro) {
+        StringBuilder sql = new StringBuilder("SELECT MIN(c.fecha_cita), MAX(c.fecha_cita) FROM citas c ");
+        List<Object> parametros = new ArrayList<>();
+        filtro.aplicar(sql, parametros);
+        
+        MetricasDAO.Medicion medicion = M_OBTENER_RANGO_FECHAS.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            
+            for (int i = 0; i < parametros.size(); i++) {
+                stmt.setObject(i + 1, parametros.get(i));
+            }
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next() && rs.getDate(1) != null) {
+                    medicion.filas(1);
+                    return new LocalDate[]{rs.getDate(1).toLocalDate(), rs.getDate(2).toLocalDate()};
+                }
+            }
+            
+        } catch (SQLException e) {
+            medicion.error();
+            System.err.println("✗ Error al obtener el rango de fechas de citas: " + e.getMessage());
+        } finally {
+            medicion.terminar();
+        }
+        return null;
+    }
+
     /**
      * Obtiene una cita por su ID
      * @param idCita ID de la cita
@@ -100,6 +494,7 @@ public class CitaDAO {
                      "INNER JOIN medicos m ON c.id_medico = m.id_medico " +
                      "WHERE c.id_cita = ?";
         
+        MetricasDAO.Medicion medicion = M_OBTENER_POR_ID.iniciar();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
@@ -107,12 +502,16 @@ public class CitaDAO {
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return mapearCitaCompleta(rs);
+                    medicion.filas(1);
+                    return MAPEO_CITA.mapear(rs);
                 }
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al obtener cita por ID: " + e.getMessage());
+        } finally {
+            medicion.terminar();
         }
         return null;
     }
@@ -133,19 +532,25 @@ public class CitaDAO {
                      "WHERE c.id_paciente = ? " +
                      "ORDER BY c.fecha_cita DESC, c.hora_cita DESC";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        MetricasDAO.Medicion medicion = M_OBTENER_POR_PACIENTE.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, idPaciente);
             
             try (ResultSet rs = stmt.executeQuery()) {
+                MapeadorFila<Cita> mapeador = MAPEO_CITA.compilar(rs);
                 while (rs.next()) {
-                    citas.add(mapearCitaCompleta(rs));
+                    citas.add(mapeador.mapear(rs));
                 }
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al obtener citas del paciente: " + e.getMessage());
+        } finally {
+            medicion.filas(citas.size());
+            medicion.terminar();
         }
         return citas;
     }
@@ -166,23 +571,115 @@ public class CitaDAO {
                      "WHERE c.id_medico = ? " +
                      "ORDER BY c.fecha_cita DESC, c.hora_cita DESC";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        MetricasDAO.Medicion medicion = M_OBTENER_POR_MEDICO.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, idMedico);
             
             try (ResultSet rs = stmt.executeQuery()) {
+                MapeadorFila<Cita> mapeador = MAPEO_CITA.compilar(rs);
                 while (rs.next()) {
-                    citas.add(mapearCitaCompleta(rs));
+                    citas.add(mapeador.mapear(rs));
                 }
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al obtener citas del médico: " + e.getMessage());
+        } finally {
+            medicion.filas(citas.size());
+            medicion.terminar();
         }
         return citas;
     }
 
+    /**
+     * Obtiene las citas de un médico sin JOIN (nombres desde el directorio en memoria)
+     * @param idMedico ID del médico
+     * @return Lista de citas del médico
+     */
+    public List<Cita> obtenerPorMedicoSinJoin(int idMedico) {
+        return consultarSinJoin("WHERE c.id_medico = ? ORDER BY c.fecha_cita DESC, c.hora_cita DESC",
+                stmt -> stmt.setInt(1, idMedico), "citas del médico", M_OBTENER_POR_MEDICO_SIN_JOIN);
+    }
+
+    /**
+     * Citas de un médico creadas, modificadas o eliminadas después de una marca
+     * Usa la columna updated_at (índice idx_citas_medico_actualizada, migración V1) y la tabla
+     * citas_eliminadas, que rellenan los triggers de la BD. Las sincronizaciones
+     * se solapan unos segundos, así que una cita puede llegar dos veces
+     * @param idMedico ID del médico
+     * @param desde Marca de la sincronización anterior o null para la agenda entera
+     * @return Cambios y nueva marca, o null si hubo un error
+     */
+    public CambiosAgenda obtenerCambiosPorMedico(int idMedico, LocalDateTime desde) {
+        List<Cita> cambiadas = new ArrayList<>();
+        List<Integer> eliminadas = new ArrayList<>();
+        LocalDateTime ahora;
+        boolean completa;
+        
+        MetricasDAO.Medicion medicion = M_OBTENER_CAMBIOS_POR_MEDICO.iniciar();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            
+            // La marca sale del reloj de la BD, el mismo que rellena updated_at
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT NOW(3)");
+                 ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                ahora = rs.getObject(1, LocalDateTime.class);
+            }
+            completa = desde == null || desde.isBefore(ahora.minusDays(RETENCION_BAJAS_DIAS));
+            
+            String condicion = completa ? "WHERE c.id_medico = ?" : CONDICION_CAMBIOS_MEDICO;
+            try (PreparedStatement stmt = conn.prepareStatement(SELECT_CITA + condicion)) {
+                stmt.setInt(1, idMedico);
+                if (!completa) {
+                    // LocalDateTime tal cual, sin pasar por la zona de la JVM (igual que se leyó NOW(3))
+                    stmt.setObject(2, desde);
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    MapeadorFila<Cita> mapeador = MAPEO_CITA.compilar(rs);
+                    while (rs.next()) {
+                        cambiadas.add(mapeador.mapear(rs));
+                    }
+                }
+            }
+            
+            if (!completa) {
+                try (PreparedStatement stmt = conn.prepareStatement(SQL_BAJAS_MEDICO)) {
+                    stmt.setInt(1, idMedico);
+                    stmt.setObject(2, desde);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            eliminadas.add(rs.getInt(1));
+                        }
+                    }
+                }
+            }
+            
+        } catch (SQLException e) {
+            medicion.error();
+            System.err.println("✗ Error al obtener cambios de la agenda del médico: " + e.getMessage());
+            return null;
+        } finally {
+            medicion.filas(cambiadas.size() + eliminadas.size());
+            medicion.terminar();
+        }
+        
+        DirectorioNombres.getInstancia().resolver(cambiadas);
+        return new CambiosAgenda(cambiadas, eliminadas, ahora.minus(MARGEN_SINCRONIZACION), completa);
+    }
+
+    /**
+     * Obtiene las citas de un paciente sin JOIN (nombres desde el directorio en memoria)
+     * @param idPaciente ID del paciente
+     * @return Lista de citas del paciente
+     */
+    public List<Cita> obtenerPorPacienteSinJoin(int idPaciente) {
+        return consultarSinJoin("WHERE c.id_paciente = ? ORDER BY c.fecha_cita DESC, c.hora_cita DESC",
+                stmt -> stmt.setInt(1, idPaciente), "citas del paciente", M_OBTENER_POR_PACIENTE_SIN_JOIN);
+    }
+
     /**
      * Obtiene las citas de una fecha específica
      * @param fecha Fecha a buscar
@@ -199,20 +696,75 @@ public class CitaDAO {
                      "WHERE c.fecha_cita = ? " +
                      "ORDER BY c.hora_cita";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        MetricasDAO.Medicion medicion = M_OBTENER_POR_FECHA.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setDate(1, Date.valueOf(fecha));
             
             try (ResultSet rs = stmt.executeQuery()) {
+                MapeadorFila<Cita> mapeador = MAPEO_CITA.compilar(rs);
                 while (rs.next()) {
-                    citas.add(mapearCitaCompleta(rs));
+                    citas.add(mapeador.mapear(rs));
                 }
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al obtener citas por fecha: " + e.getMessage());
+        } finally {
+            medicion.filas(citas.size());
+            medicion.terminar();
+        }
+        return citas;
+    }
+
+    /**
+     * Obtiene las citas de una fecha sin JOIN (nombres desde el directorio en memoria)
+     * @param fecha Fecha a buscar
+     * @return Lista de citas de esa fecha
+     */
+    public List<Cita> obtenerPorFechaSinJoin(LocalDate fecha) {
+        return consultarSinJoin("WHERE c.fecha_cita = ? ORDER BY c.hora_cita",
+                stmt -> stmt.setDate(1, Date.valueOf(fecha)), "citas por fecha", M_OBTENER_POR_FECHA_SIN_JOIN);
+    }
+
+    /**
+     * Ejecuta una consulta sobre 'citas' sin JOIN y resuelve los nombres en memoria
+     * @param condicion WHERE/ORDER BY a añadir tras SELECT_CITA
+     * @param parametros Asignación de parámetros o null
+     * @param descripcion Texto para los mensajes de error
+     * @param operacion Métrica del método público
+     */
+    private List<Cita> consultarSinJoin(String condicion, FlujoResultados.AsignadorParametros parametros,
+                                        String descripcion, MetricasDAO.Operacion operacion) {
+        List<Cita> citas = new ArrayList<>();
+        
+        MetricasDAO.Medicion medicion = operacion.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
+             PreparedStatement stmt = conn.prepareStatement(SELECT_CITA + condicion)) {
+            
+            if (parametros != null) {
+                parametros.asignar(stmt);
+            }
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                MapeadorFila<Cita> mapeador = MAPEO_CITA.compilar(rs);
+                while (rs.next()) {
+                    citas.add(mapeador.mapear(rs));
+                }
+            }
+            
+        } catch (SQLException e) {
+            medicion.error();
+            System.err.println("✗ Error al obtener " + descripcion + ": " + e.getMessage());
+            return citas;
+        } finally {
+            medicion.filas(citas.size());
+            medicion.terminar();
         }
+        
+        DirectorioNombres.getInstancia().resolver(citas);
         return citas;
     }
 
@@ -239,16 +791,22 @@ public class CitaDAO {
                      "WHERE c.fecha_cita >= CURDATE() " +
                      "ORDER BY c.fecha_cita, c.hora_cita";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        MetricasDAO.Medicion medicion = M_OBTENER_CITAS_FUTURAS.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
+            MapeadorFila<Cita> mapeador = MAPEO_CITA.compilar(rs);
             while (rs.next()) {
-                citas.add(mapearCitaCompleta(rs));
+                citas.add(mapeador.mapear(rs));
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al obtener citas futuras: " + e.getMessage());
+        } finally {
+            medicion.filas(citas.size());
+            medicion.terminar();
         }
         return citas;
     }
@@ -269,36 +827,271 @@ public class CitaDAO {
                      "WHERE c.estado = ? " +
                      "ORDER BY c.fecha_cita DESC, c.hora_cita DESC";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        MetricasDAO.Medicion medicion = M_OBTENER_POR_ESTADO.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, estado.getValor());
             
             try (ResultSet rs = stmt.executeQuery()) {
+                MapeadorFila<Cita> mapeador = MAPEO_CITA.compilar(rs);
                 while (rs.next()) {
-                    citas.add(mapearCitaCompleta(rs));
+                    citas.add(mapeador.mapear(rs));
                 }
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al obtener citas por estado: " + e.getMessage());
+        } finally {
+            medicion.filas(citas.size());
+            medicion.terminar();
         }
         return citas;
     }
 
+    /**
+     * Citas de un paciente en un rango de fechas, de la más reciente a la más antigua
+     * Recorre el índice idx_citas_paciente_fecha (migración V2) solo en el rango
+     * @param idPaciente ID del paciente
+     * @param desde Primer día (incluido) o null para no limitar
+     * @param hasta Último día (incluido) o null para no limitar
+     * @param limite Máximo de citas o 0 para todas
+     * @return Lista de citas
+     */
+    public List<Cita> obtenerPorPacienteEntre(int idPaciente, LocalDate desde, LocalDate hasta, int limite) {
+        return consultarEntre("c.id_paciente = ?", stmt -> stmt.setInt(1, idPaciente), desde, hasta, limite,
+                "citas del paciente", M_OBTENER_POR_PACIENTE_ENTRE);
+    }
+
+    public List<Cita> obtenerPorPacienteEntre(int idPaciente, LocalDate desde, LocalDate hasta) {
+        return obtenerPorPacienteEntre(idPaciente, desde, hasta, 0);
+    }
+
+    /**
+     * Citas de un médico en un rango de fechas, de la más reciente a la más antigua
+     * Recorre idx_citas_medico_fecha solo en el rango
+     * @param idMedico ID del médico
+     * @param desde Primer día (incluido) o null para no limitar
+     * @param hasta Último día (incluido) o null para no limitar
+     * @param limite Máximo de citas o 0 para todas
+     * @return Lista de citas
+     */
+    public List<Cita> obtenerPorMedicoEntre(int idMedico, LocalDate desde, LocalDate hasta, int limite) {
+        return consultarEntre("c.id_medico = ?", stmt -> stmt.setInt(1, idMedico), desde, hasta, limite,
+                "citas del médico", M_OBTENER_POR_MEDICO_ENTRE);
+    }
+
+    public List<Cita> obtenerPorMedicoEntre(int idMedico, LocalDate desde, LocalDate hasta) {
+        return obtenerPorMedicoEntre(idMedico, desde, hasta, 0);
+    }
+
+    /**
+     * Citas en un estado y un rango de fechas, de la más reciente a la más antigua
+     * Recorre el índice idx_citas_estado_fecha (migración V2) solo en el rango
+     * @param estado Estado de las citas
+     * @param desde Primer día (incluido) o null para no limitar
+     * @param hasta Último día (incluido) o null para no limitar
+     * @param limite Máximo de citas o 0 para todas
+     * @return Lista de citas
+     */
+    public List<Cita> obtenerPorEstadoEntre(EstadoCita estado, LocalDate desde, LocalDate hasta, int limite) {
+        return consultarEntre("c.estado = ?", stmt -> stmt.setString(1, estado.getValor()), desde, hasta, limite,
+                "citas por estado", M_OBTENER_POR_ESTADO_ENTRE);
+    }
+
+    public List<Cita> obtenerPorEstadoEntre(EstadoCita estado, LocalDate desde, LocalDate hasta) {
+        return obtenerPorEstadoEntre(estado, desde, hasta, 0);
+    }
+
+    /**
+     * Consulta por igualdad en la primera columna de un índice (columna, fecha_cita, hora_cita)
+     * con un rango de fechas: el orden del resultado es el del índice, así que no hay filesort
+     * y con límite la lectura para en cuanto tiene las filas pedidas
+     * @param condicion Igualdad con un único parámetro (el 1)
+     */
+    private List<Cita> consultarEntre(String condicion, FlujoResultados.AsignadorParametros parametro,
+                                      LocalDate desde, LocalDate hasta, int limite,
+                                      String descripcion, MetricasDAO.Operacion operacion) {
+        String sql = condicionEntre(condicion, desde != null, hasta != null, limite > 0);
+        return consultarSinJoin(sql, stmt -> {
+            parametro.asignar(stmt);
+            int i = 2;
+            if (desde != null) {
+                stmt.setDate(i++, Date.valueOf(desde));
+            }
+            if (hasta != null) {
+                stmt.setDate(i++, Date.valueOf(hasta));
+            }
+            if (limite > 0) {
+                stmt.setInt(i, limite);
+            }
+        }, descripcion, operacion);
+    }
+
+    /**
+     * WHERE/ORDER BY de las consultas por rango (también lo usa VerificadorPlanes)
+     */
+    static String condicionEntre(String condicion, boolean desde, boolean hasta, boolean limite) {
+        StringBuilder sql = new StringBuilder("WHERE ").append(condicion).append(' ');
+        if (desde) {
+            sql.append("AND c.fecha_cita >= ? ");
+        }
+        if (hasta) {
+            sql.append("AND c.fecha_cita <= ? ");
+        }
+        sql.append(ORDEN_PAGINA);
+        if (limite) {
+            sql.append("LIMIT ?");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Obtiene una página de todas las citas, de la más reciente a la más antigua
+     * Usa paginación por clave: el coste es el mismo en la primera página y en la última
+     * @param token Token de la página anterior o null para la primera
+     * @param tamano Número máximo de citas de la página
+     * @return Página de citas con el token de la siguiente
+     * @throws IllegalArgumentException si el token no es válido para este listado
+     */
+    public Pagina<Cita> obtenerPaginaTodas(String token, int tamano) {
+        return consultarPagina("todas", null, null, token, tamano, M_OBTENER_PAGINA_TODAS);
+    }
+
+    /**
+     * Obtiene una página de las citas con un estado
+     * @param estado Estado de las citas
+     * @param token Token de la página anterior o null para la primera
+     * @param tamano Número máximo de citas de la página
+     * @return Página de citas con el token de la siguiente
+     * @throws IllegalArgumentException si el token no es válido para este listado
+     */
+    public Pagina<Cita> obtenerPaginaPorEstado(EstadoCita estado, String token, int tamano) {
+        return consultarPagina("estado:" + estado.getValor(), "c.estado = ?", estado.getValor(), token, tamano,
+                M_OBTENER_PAGINA_POR_ESTADO);
+    }
+
+    /**
+     * Obtiene una página de las citas de un médico
+     * @param idMedico ID del médico
+     * @param token Token de la página anterior o null para la primera
+     * @param tamano Número máximo de citas de la página
+     * @return Página de citas con el token de la siguiente
+     * @throws IllegalArgumentException si el token no es válido para este listado
+     */
+    public Pagina<Cita> obtenerPaginaPorMedico(int idMedico, String token, int tamano) {
+        return consultarPagina("medico:" + idMedico, "c.id_medico = ?", idMedico, token, tamano,
+                M_OBTENER_PAGINA_POR_MEDICO);
+    }
+
+    /**
+     * SQL de una página ordenada por (fecha, hora, id) descendente
+     * Sin filtro el orden sale de idx_citas_fecha_hora (migración V4); por estado, de
+     * idx_citas_estado_fecha, y por médico, de idx_citas_medico_fecha (V5)
+     * @param filtro Condición adicional con un parámetro o null
+     * @param conToken true si la página sigue a la última fila de otra
+     */
+    static String sqlPagina(String filtro, boolean conToken) {
+        StringBuilder sql = new StringBuilder(SELECT_CITA_COMPLETA);
+        if (filtro != null || conToken) {
+            sql.append("WHERE ");
+            if (filtro != null) {
+                sql.append(filtro).append(' ');
+            }
+            if (conToken) {
+                sql.append(filtro != null ? "AND " : "").append(CONDICION_SIGUIENTE_PAGINA);
+            }
+        }
+        return sql.append(ORDEN_PAGINA).append("LIMIT ?").toString();
+    }
+
+    /**
+     * Consulta una página ordenada por (fecha, hora, id) descendente
+     * @param tipo Identificador del listado, se guarda en el token
+     * @param filtro Condición adicional con un parámetro o null
+     * @param valorFiltro Valor del parámetro del filtro
+     * @param operacion Métrica del método público
+     */
+    private Pagina<Cita> consultarPagina(String tipo, String filtro, Object valorFiltro,
+                                         String token, int tamano, MetricasDAO.Operacion operacion) {
+        int limite = Math.max(1, tamano);
+        List<Cita> citas = new ArrayList<>();
+        Object[] ultima = token != null
+                ? TokenPagina.decodificar(tipo, token, LocalDate.class, LocalTime.class, Integer.class)
+                : null;
+        
+        MetricasDAO.Medicion medicion = operacion.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
+             PreparedStatement stmt = conn.prepareStatement(sqlPagina(filtro, ultima != null))) {
+            
+            int i = 1;
+            if (filtro != null) {
+                stmt.setObject(i++, valorFiltro);
+            }
+            if (ultima != null) {
+                Date fecha = Date.valueOf((LocalDate) ultima[0]);
+                Time hora = Time.valueOf((LocalTime) ultima[1]);
+                stmt.setDate(i++, fecha);
+                stmt.setDate(i++, fecha);
+                stmt.setTime(i++, hora);
+                stmt.setTime(i++, hora);
+                stmt.setInt(i++, (Integer) ultima[2]);
+            }
+            // Una fila de más para saber si hay página siguiente
+            stmt.setInt(i, limite + 1);
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                MapeadorFila<Cita> mapeador = MAPEO_CITA.compilar(rs);
+                while (rs.next()) {
+                    citas.add(mapeador.mapear(rs));
+                }
+            }
+            
+        } catch (SQLException e) {
+            medicion.error();
+            System.err.println("✗ Error al obtener página de citas: " + e.getMessage());
+            return new Pagina<>(citas, null);
+        } finally {
+            medicion.filas(citas.size());
+            medicion.terminar();
+        }
+        
+        String siguiente = null;
+        if (citas.size() > limite) {
+            citas.remove(citas.size() - 1);
+            Cita ultimaCita = citas.get(citas.size() - 1);
+            siguiente = TokenPagina.codificar(tipo, ultimaCita.getFechaCita(),
+                    ultimaCita.getHoraCita(), ultimaCita.getIdCita());
+        }
+        return new Pagina<>(citas, siguiente);
+    }
+
     /**
      * Actualiza los datos de una cita
      * @param cita Cita con los datos actualizados
      * @return true si se actualizó correctamente
      */
     public boolean actualizar(Cita cita) {
+        if (hayConflicto(cita, cita.getIdCita())) {
+            System.err.println("✗ Error al actualizar cita: el médico ya tiene una cita a esa hora");
+            return false;
+        }
+        
         String sql = "UPDATE citas SET id_paciente = ?, id_medico = ?, fecha_cita = ?, " +
                      "hora_cita = ?, motivo = ?, estado = ? " +
                      "WHERE id_cita = ?";
         
+        MetricasDAO.Medicion medicion = M_ACTUALIZAR.iniciar();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
+            boolean integridad = IntegridadCitas.necesaria(conn);
+            if (integridad) {
+                conn.setAutoCommit(false);
+                IntegridadCitas.bloquearReferencias(conn, cita.getIdPaciente(), cita.getIdMedico());
+            }
+            
             stmt.setInt(1, cita.getIdPaciente());
             stmt.setInt(2, cita.getIdMedico());
             stmt.setDate(3, Date.valueOf(cita.getFechaCita()));
@@ -308,14 +1101,23 @@ public class CitaDAO {
             stmt.setInt(7, cita.getIdCita());
             
             int filasAfectadas = stmt.executeUpdate();
+            medicion.filas(filasAfectadas);
             
             if (filasAfectadas > 0) {
+                if (integridad) {
+                    conn.commit();
+                }
+                IndiceOcupacion.getInstancia().registrar(cita);
+                BusCambios.getInstancia().modificacion(Entidad.CITA, cita.getIdCita(), cita);
                 System.out.println("✓ Cita actualizada con ID: " + cita.getIdCita());
                 return true;
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al actualizar cita: " + e.getMessage());
+        } finally {
+            medicion.terminar();
         }
         return false;
     }
@@ -329,6 +1131,7 @@ public class CitaDAO {
     public boolean actualizarEstado(int idCita, EstadoCita estado) {
         String sql = "UPDATE citas SET estado = ? WHERE id_cita = ?";
         
+        MetricasDAO.Medicion medicion = M_ACTUALIZAR_ESTADO.iniciar();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
@@ -336,18 +1139,47 @@ public class CitaDAO {
             stmt.setInt(2, idCita);
             
             int filasAfectadas = stmt.executeUpdate();
+            medicion.filas(filasAfectadas);
             
             if (filasAfectadas > 0) {
+                IndiceOcupacion.getInstancia().cambiarEstado(idCita, estado);
+                // La cita completa, para que las listas con filtro por estado la añadan si no la tenían
+                Cita actualizada = leerCita(conn, idCita);
+                BusCambios.getInstancia().modificacion(Entidad.CITA, idCita,
+                                                       actualizada != null ? actualizada : estado);
                 System.out.println("✓ Estado de cita actualizado a: " + estado);
                 return true;
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al actualizar estado de cita: " + e.getMessage());
+            if (e.getMessage().contains("uq_medico_fecha_hora")) {
+                // Reactivar una cita cancelada cuya hora ya se ha dado a otra
+                System.err.println("  El médico ya tiene otra cita a esa hora");
+            }
+        } finally {
+            medicion.terminar();
         }
         return false;
     }
 
+    /**
+     * Lee las columnas de una cita (sin nombres) con la conexión de la escritura
+     * @return La cita o null si no existe o no se pudo leer
+     */
+    private Cita leerCita(Connection conn, int idCita) {
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_CITA + "WHERE c.id_cita = ?")) {
+            stmt.setInt(1, idCita);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? MAPEO_CITA.mapear(rs) : null;
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Error al leer la cita " + idCita + " tras cambiar su estado: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Elimina una cita de la base de datos
      * @param idCita ID de la cita a eliminar
@@ -356,23 +1188,59 @@ public class CitaDAO {
     public boolean eliminar(int idCita) {
         String sql = "DELETE FROM citas WHERE id_cita = ?";
         
+        MetricasDAO.Medicion medicion = M_ELIMINAR.iniciar();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, idCita);
             int filasAfectadas = stmt.executeUpdate();
+            medicion.filas(filasAfectadas);
             
             if (filasAfectadas > 0) {
+                IndiceOcupacion.getInstancia().eliminar(idCita);
+                BusCambios.getInstancia().baja(Entidad.CITA, idCita);
                 System.out.println("✓ Cita eliminada con ID: " + idCita);
                 return true;
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al eliminar cita: " + e.getMessage());
+        } finally {
+            medicion.terminar();
         }
         return false;
     }
 
+    /**
+     * Borra las bajas de citas_eliminadas más antiguas que RETENCION_BAJAS_DIAS
+     * @return Filas borradas o -1 si hubo un error
+     */
+    public int purgarEliminadas() {
+        String sql = "DELETE FROM citas_eliminadas WHERE eliminada_en < NOW(3) - INTERVAL ? DAY";
+        
+        MetricasDAO.Medicion medicion = M_PURGAR_ELIMINADAS.iniciar();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setInt(1, RETENCION_BAJAS_DIAS);
+            int filasAfectadas = stmt.executeUpdate();
+            medicion.filas(filasAfectadas);
+            
+            if (filasAfectadas > 0) {
+                System.out.println("✓ Bajas de citas purgadas: " + filasAfectadas);
+            }
+            return filasAfectadas;
+            
+        } catch (SQLException e) {
+            medicion.error();
+            System.err.println("✗ Error al purgar bajas de citas: " + e.getMessage());
+        } finally {
+            medicion.terminar();
+        }
+        return -1;
+    }
+
     /**
      * Cuenta el número total de citas
      * @return Número de citas
@@ -380,16 +1248,21 @@ public class CitaDAO {
     public int contarCitas() {
         String sql = "SELECT COUNT(*) as total FROM citas";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        MetricasDAO.Medicion medicion = M_CONTAR_CITAS.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
             if (rs.next()) {
+                medicion.filas(1);
                 return rs.getInt("total");
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al contar citas: " + e.getMessage());
+        } finally {
+            medicion.terminar();
         }
         return 0;
     }
@@ -401,46 +1274,56 @@ public class CitaDAO {
     public int contarCitasDeHoy() {
         String sql = "SELECT COUNT(*) as total FROM citas WHERE fecha_cita = CURDATE()";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        MetricasDAO.Medicion medicion = M_CONTAR_CITAS_DE_HOY.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
             if (rs.next()) {
+                medicion.filas(1);
                 return rs.getInt("total");
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al contar citas de hoy: " + e.getMessage());
+        } finally {
+            medicion.terminar();
         }
         return 0;
     }
 
     /**
-     * Mapea un ResultSet a un objeto Cita (sin nombres)
-     * @param rs ResultSet con los datos de la cita
-     * @return Objeto Cita
+     * Asigna los parámetros de SQL_INSERTAR
      */
-    private Cita mapearCita(ResultSet rs) throws SQLException {
-        Cita cita = new Cita();
-        cita.setIdCita(rs.getInt("id_cita"));
-        cita.setIdPaciente(rs.getInt("id_paciente"));
-        cita.setIdMedico(rs.getInt("id_medico"));
-        cita.setFechaCita(rs.getDate("fecha_cita").toLocalDate());
-        cita.setHoraCita(rs.getTime("hora_cita").toLocalTime());
-        cita.setMotivo(rs.getString("motivo"));
-        cita.setEstado(EstadoCita.fromString(rs.getString("estado")));
-        return cita;
+    private void asignarParametrosInsercion(PreparedStatement stmt, Cita cita) throws SQLException {
+        stmt.setInt(1, cita.getIdPaciente());
+        stmt.setInt(2, cita.getIdMedico());
+        stmt.setDate(3, Date.valueOf(cita.getFechaCita()));
+        stmt.setTime(4, Time.valueOf(cita.getHoraCita()));
+        stmt.setString(5, cita.getMotivo());
+        stmt.setString(6, cita.getEstado().getValor());
+    }
+
+    private static MetricasDAO.Operacion metrica(String metodo) {
+        return MetricasDAO.operacion("CitaDAO", metodo);
     }
 
     /**
-     * Mapea un ResultSet a un objeto Cita con nombres de paciente y médico
-     * @param rs ResultSet con los datos de la cita y nombres
-     * @return Objeto Cita completo
+     * Construye una cita por posición de columna (ver MAPEO_CITA)
+     * Los nombres de paciente y médico quedan a null si la consulta no los trae
      */
-    private Cita mapearCitaCompleta(ResultSet rs) throws SQLException {
-        Cita cita = mapearCita(rs);
-        cita.setNombrePaciente(rs.getString("nombre_paciente"));
-        cita.setNombreMedico(rs.getString("nombre_medico"));
+    private static Cita construirCita(ResultSet rs, int[] c) throws SQLException {
+        Cita cita = new Cita(
+                MapeadorColumnas.entero(rs, c[0]),
+                MapeadorColumnas.entero(rs, c[1]),
+                MapeadorColumnas.entero(rs, c[2]),
+                MapeadorColumnas.fecha(rs, c[3]),
+                MapeadorColumnas.hora(rs, c[4]),
+                MapeadorColumnas.texto(rs, c[5]),
+                EstadoCita.fromString(MapeadorColumnas.texto(rs, c[6])));
+        cita.setNombrePaciente(MapeadorColumnas.texto(rs, c[7]));
+        cita.setNombreMedico(MapeadorColumnas.texto(rs, c[8]));
         return cita;
     }
 }
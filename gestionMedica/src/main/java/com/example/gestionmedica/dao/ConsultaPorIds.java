@@ -0,0 +1,62 @@
+package com.example.gestionmedica.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Consultas "... IN (?, ?, ...)" sobre una lista de IDs, en bloques de TAMANO_BLOQUE
+ *
+ * La lista IN de cada bloque se rellena hasta una potencia de 2 repitiendo el último
+ * ID: así solo hay unas pocas formas de SQL y la caché de sentencias las reutiliza
+ */
+final class ConsultaPorIds {
+
+    // IDs por consulta IN (potencia de 2)
+    static final int TAMANO_BLOQUE = 1024;
+
+    /**
+     * Lee las filas de un bloque
+     */
+    @FunctionalInterface
+    interface LectorBloque {
+        void leer(ResultSet rs) throws SQLException;
+    }
+
+    private ConsultaPorIds() {
+    }
+
+    /**
+     * Lanza la consulta por bloques y pasa el resultado de cada uno al lector
+     * @param conn Conexión (no se cierra)
+     * @param sqlBase SQL hasta el IN incluido, p. ej. "SELECT * FROM pacientes WHERE id_paciente IN "
+     * @param ids IDs a buscar (un ID repetido puede llegar dos veces)
+     * @param lector Lectura de las filas de cada bloque
+     */
+    static void recorrer(Connection conn, String sqlBase, List<Integer> ids, LectorBloque lector)
+            throws SQLException {
+        for (int inicio = 0; inicio < ids.size(); inicio += TAMANO_BLOQUE) {
+            List<Integer> bloque = ids.subList(inicio, Math.min(inicio + TAMANO_BLOQUE, ids.size()));
+            int huecos = Integer.highestOneBit(bloque.size());
+            if (huecos < bloque.size()) {
+                huecos <<= 1;
+            }
+            StringBuilder sql = new StringBuilder(sqlBase).append('(');
+            for (int i = 0; i < huecos; i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(')');
+
+            try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                for (int i = 0; i < huecos; i++) {
+                    stmt.setInt(i + 1, bloque.get(Math.min(i, bloque.size() - 1)));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    lector.leer(rs);
+                }
+            }
+        }
+    }
+}
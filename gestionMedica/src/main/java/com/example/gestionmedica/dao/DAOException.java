@@ -0,0 +1,14 @@
+package com.example.gestionmedica.dao;
+
+/**
+ * Error de acceso a datos que no puede devolverse como valor vacío,
+ * por ejemplo un fallo a mitad de la lectura de un Stream de resultados
+ */
+public class DAOException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DAOException(String mensaje, Throwable causa) {
+        super(mensaje, causa);
+    }
+}
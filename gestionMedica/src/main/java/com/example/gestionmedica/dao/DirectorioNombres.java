@@ -0,0 +1,131 @@
+package com.example.gestionmedica.dao;
+
+import com.example.gestionmedica.models.Cita;
+import com.example.gestionmedica.utils.CacheTTL;
+import com.example.gestionmedica.utils.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Directorio en memoria de nombres completos de médicos y pacientes por ID
+ * Permite cargar citas sin JOIN: los nombres se resuelven aquí y los que faltan
+ * se piden en una sola consulta IN por tabla. Todas las citas de un mismo médico
+ * comparten la misma instancia de String
+ */
+public class DirectorioNombres {
+
+    private static final DirectorioNombres INSTANCIA = new DirectorioNombres();
+
+    private final CacheTTL<Integer, String> medicos = new CacheTTL<>(5_000, 30 * 60_000);
+    private final CacheTTL<Integer, String> pacientes = new CacheTTL<>(100_000, 10 * 60_000);
+
+    private DirectorioNombres() {
+    }
+
+    public static DirectorioNombres getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Rellena nombrePaciente y nombreMedico de las citas
+     * @param citas Citas leídas sin nombres
+     */
+    public void resolver(List<Cita> citas) {
+        Map<Integer, String> nombresMedicos = new HashMap<>();
+        Map<Integer, String> nombresPacientes = new HashMap<>();
+        Set<Integer> faltanMedicos = new LinkedHashSet<>();
+        Set<Integer> faltanPacientes = new LinkedHashSet<>();
+
+        for (Cita cita : citas) {
+            buscar(medicos, cita.getIdMedico(), nombresMedicos, faltanMedicos);
+            buscar(pacientes, cita.getIdPaciente(), nombresPacientes, faltanPacientes);
+        }
+
+        if (!faltanMedicos.isEmpty()) {
+            cargar("SELECT id_medico, CONCAT(nombre, ' ', apellidos) FROM medicos WHERE id_medico IN ",
+                   faltanMedicos, medicos, nombresMedicos);
+        }
+        if (!faltanPacientes.isEmpty()) {
+            cargar("SELECT id_paciente, CONCAT(nombre, ' ', apellidos) FROM pacientes WHERE id_paciente IN ",
+                   faltanPacientes, pacientes, nombresPacientes);
+        }
+
+        for (Cita cita : citas) {
+            cita.setNombreMedico(nombresMedicos.get(cita.getIdMedico()));
+            cita.setNombrePaciente(nombresPacientes.get(cita.getIdPaciente()));
+        }
+    }
+
+    /**
+     * Olvida el nombre de un médico (tras actualizarlo o eliminarlo)
+     * @param idMedico ID del médico
+     */
+    public void invalidarMedico(int idMedico) {
+        medicos.invalidar(idMedico);
+    }
+
+    /**
+     * Olvida todos los nombres de médicos
+     */
+    public void invalidarMedicos() {
+        medicos.invalidarTodo();
+    }
+
+    /**
+     * Olvida el nombre de un paciente (tras actualizarlo o eliminarlo)
+     * @param idPaciente ID del paciente
+     */
+    public void invalidarPaciente(int idPaciente) {
+        pacientes.invalidar(idPaciente);
+    }
+
+    public CacheTTL.Estadisticas getEstadisticasMedicos() {
+        return medicos.obtenerEstadisticas();
+    }
+
+    public CacheTTL.Estadisticas getEstadisticasPacientes() {
+        return pacientes.obtenerEstadisticas();
+    }
+
+    private void buscar(CacheTTL<Integer, String> cache, int id,
+                        Map<Integer, String> resueltos, Set<Integer> faltan) {
+        if (resueltos.containsKey(id) || faltan.contains(id)) {
+            return;
+        }
+        String nombre = cache.obtener(id);
+        if (nombre != null) {
+            resueltos.put(id, nombre);
+        } else {
+            faltan.add(id);
+        }
+    }
+
+    /**
+     * Carga de la BD los nombres que faltan (ver ConsultaPorIds)
+     */
+    private void cargar(String sqlBase, Set<Integer> ids, CacheTTL<Integer, String> cache,
+                        Map<Integer, String> resueltos) {
+        long generacion = cache.getGeneracion();
+        List<Integer> pendientes = new ArrayList<>(ids);
+
+        try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+            ConsultaPorIds.recorrer(conn, sqlBase, pendientes, rs -> {
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    String nombre = rs.getString(2);
+                    resueltos.put(id, nombre);
+                    cache.guardar(id, nombre, generacion);
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("✗ Error al resolver nombres: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.gestionmedica.dao;
+
+/**
+ * Cambio hecho por un DAO sobre una cita, un paciente o un médico
+ *
+ * El valor es el objeto tal como quedó (una Cita, Paciente o Medico), salvo en las
+ * bajas (null) y en los cambios de solo estado de una cita (el EstadoCita nuevo).
+ * Los suscriptores no deben modificarlo: el mismo evento llega a todos
+ */
+public final class EventoCambio {
+
+    public enum Entidad { CITA, PACIENTE, MEDICO }
+
+    /**
+     * RECARGA indica que cambiaron muchas filas de golpe (p. ej. una importación):
+     * en lugar de un evento por fila hay que volver a leer
+     */
+    public enum Tipo { ALTA, MODIFICACION, BAJA, RECARGA }
+
+    private final Entidad entidad;
+    private final Tipo tipo;
+    private final int id;
+    private final Object valor;
+
+    EventoCambio(Entidad entidad, Tipo tipo, int id, Object valor) {
+        this.entidad = entidad;
+        this.tipo = tipo;
+        this.id = id;
+        this.valor = valor;
+    }
+
+    public Entidad getEntidad() {
+        return entidad;
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Object getValor() {
+        return valor;
+    }
+
+    /**
+     * Valor del evento si es del tipo pedido
+     * @param clase Clase esperada (p. ej. Cita.class)
+     * @return Valor o null si no hay o es de otro tipo
+     */
+    public <T> T getValor(Class<T> clase) {
+        return clase.isInstance(valor) ? clase.cast(valor) : null;
+    }
+
+    /**
+     * Clave para fusionar eventos: entidad en los 32 bits altos e ID en los bajos
+     */
+    long clave() {
+        return tipo == Tipo.RECARGA ? claveRecarga(entidad) : (long) entidad.ordinal() << 32 | (id & 0xFFFF_FFFFL);
+    }
+
+    static long claveRecarga(Entidad entidad) {
+        return (long) entidad.ordinal() << 32 | 0xFFFF_FFFFL;
+    }
+
+    @Override
+    public String toString() {
+        return tipo + " " + entidad + (tipo == Tipo.RECARGA ? "" : " " + id);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.gestionmedica.dao;
+
+import com.example.gestionmedica.models.Cita.EstadoCita;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Filtro de citas para recorridos grandes (exportaciones): rango de fechas, médico y estados
+ * Los criterios que no se asignan no filtran
+ */
+public class FiltroCitas {
+
+    private LocalDate desde;
+    private LocalDate hasta;
+    private Integer idMedico;
+    private final Set<EstadoCita> estados = EnumSet.noneOf(EstadoCita.class);
+
+    public LocalDate getDesde() {
+        return desde;
+    }
+
+    /**
+     * Primer día incluido (null = sin límite)
+     */
+    public FiltroCitas setDesde(LocalDate desde) {
+        this.desde = desde;
+        return this;
+    }
+
+    public LocalDate getHasta() {
+        return hasta;
+    }
+
+    /**
+     * Último día incluido (null = sin límite)
+     */
+    public FiltroCitas setHasta(LocalDate hasta) {
+        this.hasta = hasta;
+        return this;
+    }
+
+    public Integer getIdMedico() {
+        return idMedico;
+    }
+
+    public FiltroCitas setIdMedico(Integer idMedico) {
+        this.idMedico = idMedico;
+        return this;
+    }
+
+    public Set<EstadoCita> getEstados() {
+        return estados;
+    }
+
+    /**
+     * Añade un estado admitido (sin ninguno se admiten todos)
+     */
+    public FiltroCitas conEstado(EstadoCita estado) {
+        estados.add(estado);
+        return this;
+    }
+
+    /**
+     * Copia del filtro con otro rango de fechas (para repartir un recorrido por meses)
+     */
+    public FiltroCitas conFechas(LocalDate desde, LocalDate hasta) {
+        FiltroCitas copia = new FiltroCitas().setDesde(desde).setHasta(hasta).setIdMedico(idMedico);
+        copia.estados.addAll(estados);
+        return copia;
+    }
+
+    /**
+     * Añade la condición WHERE (o nada) y sus parámetros, sobre la tabla con alias c
+     */
+    void aplicar(StringBuilder sql, List<Object> parametros) {
+        String union = "WHERE ";
+        if (desde != null) {
+            sql.append(union).append("c.fecha_cita >= ? ");
+            parametros.add(Date.valueOf(desde));
+            union = "AND ";
+        }
+        if (hasta != null) {
+            sql.append(union).append("c.fecha_cita <= ? ");
+            parametros.add(Date.valueOf(hasta));
+            union = "AND ";
+        }
+        if (idMedico != null) {
+            sql.append(union).append("c.id_medico = ? ");
+            parametros.add(idMedico);
+            union = "AND ";
+        }
+        if (!estados.isEmpty() && estados.size() < EstadoCita.values().length) {
+            sql.append(union).append("c.estado IN (");
+            boolean primero = true;
+            for (EstadoCita estado : estados) {
+                sql.append(primero ? "?" : ", ?");
+                parametros.add(estado.getValor());
+                primero = false;
+            }
+            sql.append(") ");
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.gestionmedica.dao;
+
+import com.example.gestionmedica.utils.DatabaseConnection;
+import com.example.gestionmedica.utils.MetricasDAO;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lectura en streaming de consultas grandes
+ * El ResultSet se recorre fila a fila con un cursor de MySQL, sin cargar la tabla
+ * en memoria; la conexión queda ocupada hasta que se cierra el Stream
+ */
+final class FlujoResultados {
+
+    private FlujoResultados() {
+    }
+
+    /**
+     * Asigna los parámetros de la consulta
+     */
+    @FunctionalInterface
+    interface AsignadorParametros {
+        void asignar(PreparedStatement stmt) throws SQLException;
+    }
+
+    /**
+     * Ejecuta la consulta y devuelve un Stream perezoso de sus filas
+     * Hay que cerrar el Stream (try-with-resources) para devolver la conexión
+     * @param sql Consulta a ejecutar
+     * @param parametros Asignación de parámetros (puede no hacer nada)
+     * @param mapeador Conversión de cada fila
+     * @param descripcion Texto para los mensajes de error
+     * @return Stream de resultados; si la consulta no puede abrirse, Stream vacío
+     */
+    static <T> Stream<T> abrir(String sql, AsignadorParametros parametros,
+                               MapeadorFila<T> mapeador, String descripcion) {
+        return abrir(sql, parametros, mapeador, descripcion, null, false);
+    }
+
+    /**
+     * Como abrir, midiendo la lectura completa (de la consulta al cierre) en la operación
+     * @param operacion Métrica del método que abre el Stream o null
+     * @param deReplica true para leer de una réplica si hay (ver DatabaseConnection.getConnectionLectura)
+     */
+    static <T> Stream<T> abrir(String sql, AsignadorParametros parametros, MapeadorFila<T> mapeador,
+                               String descripcion, MetricasDAO.Operacion operacion, boolean deReplica) {
+        try {
+            return abrirFlujo(sql, parametros, mapeador, descripcion, operacion, deReplica);
+        } catch (ErrorLectura e) {
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Como abrir, pero si la consulta no puede abrirse lanza ErrorLectura
+     */
+    private static <T> Stream<T> abrirFlujo(String sql, AsignadorParametros parametros, MapeadorFila<T> mapeador,
+                                            String descripcion, MetricasDAO.Operacion operacion,
+                                            boolean deReplica) {
+        Recursos<T> recursos = new Recursos<>();
+        recursos.medicion = operacion != null ? operacion.iniciar() : null;
+        try {
+            recursos.conn = deReplica ? DatabaseConnection.getConnectionLectura() : DatabaseConnection.getConnection();
+            recursos.stmt = recursos.conn.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // Con MySQL, Integer.MIN_VALUE activa la lectura fila a fila
+            recursos.stmt.setFetchSize(Integer.MIN_VALUE);
+            parametros.asignar(recursos.stmt);
+            recursos.rs = recursos.stmt.executeQuery();
+            recursos.mapeador = mapeador.compilar(recursos.rs);
+        } catch (SQLException e) {
+            recursos.fallar();
+            System.err.println("✗ Error al abrir lectura de " + descripcion + ": " + e.getMessage());
+            throw new ErrorLectura("Error al abrir lectura de " + descripcion, e);
+        }
+
+        Spliterator<T> filas = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> accion) {
+                try {
+                    if (recursos.rs == null || !recursos.rs.next()) {
+                        recursos.cerrar();
+                        return false;
+                    }
+                    accion.accept(recursos.mapeador.mapear(recursos.rs));
+                    if (recursos.medicion != null) {
+                        recursos.medicion.filas(1);
+                    }
+                    return true;
+                } catch (SQLException e) {
+                    recursos.fallar();
+                    System.err.println("✗ Error al leer " + descripcion + ": " + e.getMessage());
+                    throw new ErrorLectura("Error al leer " + descripcion, e);
+                }
+            }
+        };
+        return StreamSupport.stream(filas, false).onClose(recursos::cerrar);
+    }
+
+    /**
+     * Recorre la consulta entregando cada fila al visitante
+     * Las excepciones del visitante se propagan tal cual (aunque sean DAOException)
+     * @return Número de filas visitadas o -1 si la consulta no pudo abrirse o leerse
+     */
+    static <T> long recorrer(String sql, AsignadorParametros parametros, MapeadorFila<T> mapeador,
+                             String descripcion, Consumer<? super T> visitante) {
+        return recorrer(sql, parametros, mapeador, descripcion, visitante, null, false);
+    }
+
+    /**
+     * Como recorrer, midiendo el recorrido en la operación
+     * @param operacion Métrica del método que recorre o null
+     * @param deReplica true para leer de una réplica si hay
+     */
+    static <T> long recorrer(String sql, AsignadorParametros parametros, MapeadorFila<T> mapeador,
+                             String descripcion, Consumer<? super T> visitante,
+                             MetricasDAO.Operacion operacion, boolean deReplica) {
+        long[] filas = {0};
+        try (Stream<T> flujo = abrirFlujo(sql, parametros, mapeador, descripcion, operacion, deReplica)) {
+            flujo.forEach(elemento -> {
+                visitante.accept(elemento);
+                filas[0]++;
+            });
+        } catch (ErrorLectura e) {
+            return -1;
+        }
+        return filas[0];
+    }
+
+    /**
+     * Fallo de la propia consulta (al abrirla o al leer una fila), para distinguirlo
+     * de las excepciones del código que consume el Stream
+     */
+    private static final class ErrorLectura extends DAOException {
+
+        private static final long serialVersionUID = 1L;
+
+        ErrorLectura(String mensaje, Throwable causa) {
+            super(mensaje, causa);
+        }
+    }
+
+    /**
+     * Recursos JDBC abiertos por un Stream (y el mapeador compilado y la medición);
+     * se cierran una sola vez
+     */
+    private static class Recursos<T> {
+        Connection conn;
+        PreparedStatement stmt;
+        ResultSet rs;
+        MapeadorFila<T> mapeador;
+        MetricasDAO.Medicion medicion;
+        private boolean cerrados;
+
+        void fallar() {
+            if (medicion != null) {
+                medicion.error();
+            }
+            cerrar();
+        }
+
+        void cerrar() {
+            if (cerrados) {
+                return;
+            }
+            cerrados = true;
+            if (medicion != null) {
+                medicion.terminar();
+            }
+            try {
+                if (rs != null) rs.close();
+            } catch (SQLException e) {
+                // Ignorado al cerrar
+            }
+            try {
+                if (stmt != null) stmt.close();
+            } catch (SQLException e) {
+                // Ignorado al cerrar
+            }
+            try {
+                if (conn != null) conn.close();
+            } catch (SQLException e) {
+                // Ignorado al cerrar
+            }
+        }
+    }
+}
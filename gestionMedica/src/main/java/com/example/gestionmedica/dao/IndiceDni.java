@@ -0,0 +1,289 @@
+package com.example.gestionmedica.dao;
+
+import com.example.gestionmedica.models.Paciente;
+import com.example.gestionmedica.utils.FiltroBloom;
+import com.example.gestionmedica.utils.MapaLongLong;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice en memoria de DNI a id_paciente
+ *
+ * Cada DNI (hasta 10 caracteres alfanuméricos) se codifica en un long y se guarda
+ * en un mapa de direccionamiento abierto, con un filtro de Bloom delante para
+ * responder "no existe" sin tocar el mapa. Así la recepción y las importaciones
+ * comprueban DNIs sin una consulta por DNI
+ *
+ * PacienteDAO lo mantiene al insertar, actualizar y eliminar, y RefrescoPacientes
+ * con lo que cambian otros puestos. Si no está cargado o el DNI no se puede
+ * codificar, responde DESCONOCIDO y el DAO consulta la BD
+ *
+ * Las estructuras empiezan pequeñas y crecen con la carga; al recargar se
+ * dimensionan con el número de DNI de la carga anterior
+ */
+public class IndiceDni {
+
+    // Respuestas de obtenerId
+    public static final int NO_EXISTE = 0;
+    public static final int DESCONOCIDO = -1;
+
+    private static final int FILAS_POR_BLOQUE_CARGA = 1_000;
+    private static final int CAPACIDAD_MINIMA = 1 << 10;
+    private static final double FALSOS_POSITIVOS = 0.01;
+    private static final long NO_CODIFICABLE = -1;
+
+    private static final IndiceDni INSTANCIA = new IndiceDni();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Solo una carga a la vez
+    private final Object cargando = new Object();
+    private Datos datos = new Datos(CAPACIDAD_MINIMA);
+    // Mientras se carga, las escrituras del DAO se aplican también aquí
+    private Datos enConstruccion;
+    private volatile boolean cargado;
+
+    private IndiceDni() {
+    }
+
+    public static IndiceDni getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Carga (o recarga) el índice leyendo los DNI en streaming
+     * @return true si se cargó correctamente
+     */
+    public boolean cargar() {
+        // Una carga a la vez: la primera en terminar quitaría enConstruccion a la otra
+        synchronized (cargando) {
+            Datos nuevos;
+            lock.readLock().lock();
+            try {
+                nuevos = new Datos(Math.max(CAPACIDAD_MINIMA, datos.porDni.tamano()));
+            } finally {
+                lock.readLock().unlock();
+            }
+            lock.writeLock().lock();
+            try {
+                enConstruccion = nuevos;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            List<Paciente> bloque = new ArrayList<>(FILAS_POR_BLOQUE_CARGA);
+            long filas = FlujoResultados.recorrer(
+                    "SELECT id_paciente, dni FROM pacientes",
+                    stmt -> { },
+                    rs -> new Paciente(rs.getInt(1), rs.getString(2), null, null, null, null, null, null),
+                    "DNI de pacientes",
+                    paciente -> {
+                        bloque.add(paciente);
+                        if (bloque.size() == FILAS_POR_BLOQUE_CARGA) {
+                            volcar(nuevos, bloque);
+                        }
+                    });
+            volcar(nuevos, bloque);
+
+            lock.writeLock().lock();
+            try {
+                enConstruccion = null;
+                if (filas < 0) {
+                    return false;
+                }
+                nuevos.modificados = null;
+                datos = nuevos;
+                cargado = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            System.out.println("✓ Índice de DNI cargado: " + filas + " pacientes");
+            return true;
+        }
+    }
+
+    /**
+     * Carga el índice si no lo está, esperando a la carga en curso si la hay
+     * @return true si el índice está cargado
+     */
+    public boolean asegurarCargado() {
+        synchronized (cargando) {
+            return cargado || cargar();
+        }
+    }
+
+    /**
+     * Carga el índice en un hilo virtual sin bloquear al llamador
+     */
+    public void cargarEnSegundoPlano() {
+        Thread.ofVirtual().name("carga-indice-dni").start(this::cargar);
+    }
+
+    public boolean estaCargado() {
+        return cargado;
+    }
+
+    /**
+     * ID del paciente con ese DNI
+     * @param dni DNI (sin distinguir mayúsculas)
+     * @return ID, NO_EXISTE si no había ningún paciente con ese DNI en el último refresco
+     *         o DESCONOCIDO si el índice no puede responder
+     */
+    public int obtenerId(String dni) {
+        long clave = codificar(dni);
+        if (!cargado || clave == NO_CODIFICABLE) {
+            return DESCONOCIDO;
+        }
+        lock.readLock().lock();
+        try {
+            if (!datos.filtro.puedeContener(clave)) {
+                return NO_EXISTE;
+            }
+            return (int) datos.porDni.obtener(clave, NO_EXISTE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Codifica un DNI en un long: 6 bits por carácter (0-9, A-Z), hasta 10 caracteres
+     * @param dni DNI
+     * @return Código o NO_CODIFICABLE si es null, vacío, largo o con otros caracteres
+     */
+    static long codificar(String dni) {
+        if (dni == null) {
+            return NO_CODIFICABLE;
+        }
+        String limpio = dni.trim().toUpperCase(Locale.ROOT);
+        if (limpio.isEmpty() || limpio.length() > 10) {
+            return NO_CODIFICABLE;
+        }
+        long codigo = 0;
+        for (int i = 0; i < limpio.length(); i++) {
+            char c = limpio.charAt(i);
+            int valor;
+            if (c >= '0' && c <= '9') {
+                valor = c - '0' + 1;
+            } else if (c >= 'A' && c <= 'Z') {
+                valor = c - 'A' + 11;
+            } else {
+                return NO_CODIFICABLE;
+            }
+            codigo = (codigo << 6) | valor;
+        }
+        return codigo;
+    }
+
+    // ==================== Mantenimiento desde PacienteDAO ====================
+
+    /**
+     * Registra el DNI de un paciente nuevo o modificado
+     * @param paciente Paciente con su ID asignado
+     */
+    void registrar(Paciente paciente) {
+        if (paciente.getIdPaciente() <= 0) {
+            return;
+        }
+        long clave = codificar(paciente.getDni());
+        lock.writeLock().lock();
+        try {
+            datos.registrar(paciente.getIdPaciente(), clave);
+            if (enConstruccion != null) {
+                enConstruccion.registrar(paciente.getIdPaciente(), clave);
+                enConstruccion.modificados.poner(paciente.getIdPaciente(), 1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quita el DNI de un paciente eliminado
+     */
+    void eliminar(int idPaciente) {
+        lock.writeLock().lock();
+        try {
+            datos.eliminar(idPaciente);
+            if (enConstruccion != null) {
+                enConstruccion.eliminar(idPaciente);
+                enConstruccion.modificados.poner(idPaciente, 1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void volcar(Datos destino, List<Paciente> bloque) {
+        if (bloque.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Paciente paciente : bloque) {
+                // La lectura en streaming puede traer una versión anterior a la que ya escribió el DAO
+                if (!destino.modificados.contiene(paciente.getIdPaciente())) {
+                    destino.registrar(paciente.getIdPaciente(), codificar(paciente.getDni()));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        bloque.clear();
+    }
+
+    /**
+     * Estructuras del índice: DNI -> ID, ID -> DNI (para actualizar y eliminar) y el filtro
+     */
+    private static final class Datos {
+        final MapaLongLong porDni;
+        final MapaLongLong porId;
+        FiltroBloom filtro;
+        // IDs escritos por el DAO durante la carga (solo mientras se construye)
+        MapaLongLong modificados = new MapaLongLong(64);
+
+        Datos(int capacidad) {
+            porDni = new MapaLongLong(capacidad);
+            porId = new MapaLongLong(capacidad);
+            filtro = new FiltroBloom(capacidad, FALSOS_POSITIVOS);
+        }
+
+        void registrar(int id, long clave) {
+            long anterior = porId.obtener(id, NO_CODIFICABLE);
+            if (anterior == clave) {
+                return;
+            }
+            if (anterior != NO_CODIFICABLE) {
+                porDni.quitar(anterior);
+                porId.quitar(id);
+            }
+            if (clave == NO_CODIFICABLE) {
+                return;
+            }
+            porDni.poner(clave, id);
+            porId.poner(id, clave);
+            filtro.agregar(clave);
+            if (porDni.tamano() > filtro.getCapacidad()) {
+                reconstruirFiltro();
+            }
+        }
+
+        void eliminar(int id) {
+            long anterior = porId.obtener(id, NO_CODIFICABLE);
+            if (anterior != NO_CODIFICABLE) {
+                porDni.quitar(anterior);
+                porId.quitar(id);
+            }
+        }
+
+        /**
+         * Con más claves que capacidad los falsos positivos se disparan: se duplica el filtro
+         */
+        private void reconstruirFiltro() {
+            FiltroBloom nuevo = new FiltroBloom(filtro.getCapacidad() * 2, FALSOS_POSITIVOS);
+            porDni.paraCada((clave, id) -> nuevo.agregar(clave));
+            filtro = nuevo;
+        }
+    }
+}
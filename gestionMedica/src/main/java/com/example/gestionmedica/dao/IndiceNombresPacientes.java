@@ -0,0 +1,426 @@
+package com.example.gestionmedica.dao;
+
+import com.example.gestionmedica.models.Paciente;
+import com.example.gestionmedica.utils.MapaLongLong;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice en memoria de trigramas sobre nombre y apellidos de los pacientes
+ *
+ * Sustituye al LIKE '%texto%' (que recorre la tabla entera) en la búsqueda por nombre.
+ * Los textos se normalizan sin tildes ni mayúsculas, así "jose" encuentra a "José".
+ * Por cada trigrama se guarda la lista ordenada de IDs que lo contienen; una búsqueda
+ * parte de la lista del trigrama más raro de la consulta y verifica cada candidato
+ *
+ * PacienteDAO lo mantiene al insertar, actualizar y eliminar, y RefrescoPacientes
+ * trae cada pocos segundos las altas y cambios de nombre hechos desde otros puestos.
+ * Mientras no está cargado, buscar devuelve null y el DAO usa la consulta SQL de siempre
+ */
+public class IndiceNombresPacientes {
+
+    // Longitud mínima de la consulta para usar el índice
+    public static final int LONGITUD_MINIMA = 3;
+
+    private static final int FILAS_POR_BLOQUE_CARGA = 1_000;
+    private static final int[] SIN_IDS = new int[0];
+
+    private static final IndiceNombresPacientes INSTANCIA = new IndiceNombresPacientes();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Solo una carga a la vez
+    private final Object cargando = new Object();
+    private Datos datos = new Datos();
+    // Mientras se carga, las escrituras del DAO se aplican también aquí
+    private Datos enConstruccion;
+    private volatile boolean cargado;
+
+    private IndiceNombresPacientes() {
+    }
+
+    public static IndiceNombresPacientes getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Carga (o recarga) el índice leyendo todos los pacientes en streaming
+     * @return true si se cargó correctamente
+     */
+    public boolean cargar() {
+        // Una carga a la vez: la primera en terminar quitaría enConstruccion a la otra
+        synchronized (cargando) {
+            Datos nuevos = new Datos();
+            lock.writeLock().lock();
+            try {
+                enConstruccion = nuevos;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            List<Paciente> bloque = new ArrayList<>(FILAS_POR_BLOQUE_CARGA);
+            long filas = FlujoResultados.recorrer(
+                    "SELECT id_paciente, nombre, apellidos FROM pacientes ORDER BY id_paciente",
+                    stmt -> { },
+                    rs -> new Paciente(rs.getInt(1), null, rs.getString(2), rs.getString(3),
+                                       null, null, null, null),
+                    "nombres de pacientes",
+                    paciente -> {
+                        bloque.add(paciente);
+                        if (bloque.size() == FILAS_POR_BLOQUE_CARGA) {
+                            volcar(nuevos, bloque);
+                        }
+                    });
+            volcar(nuevos, bloque);
+
+            lock.writeLock().lock();
+            try {
+                enConstruccion = null;
+                if (filas < 0) {
+                    return false;
+                }
+                nuevos.modificados = null;
+                datos = nuevos;
+                cargado = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            System.out.println("✓ Índice de nombres cargado: " + filas + " pacientes");
+            return true;
+        }
+    }
+
+    /**
+     * Carga el índice en un hilo virtual sin bloquear al llamador
+     */
+    public void cargarEnSegundoPlano() {
+        Thread.ofVirtual().name("carga-indice-nombres").start(this::cargar);
+    }
+
+    public boolean estaCargado() {
+        return cargado;
+    }
+
+    /**
+     * Busca pacientes cuyo nombre o apellidos contienen el texto
+     * El orden es: apellidos que empiezan por el texto, nombre que empieza por el texto,
+     * alguna palabra que empieza por el texto y el resto; a igualdad, por apellidos y nombre
+     * @param texto Texto a buscar (sin distinguir tildes ni mayúsculas)
+     * @param maximo Número máximo de IDs a devolver
+     * @return IDs ordenados por relevancia o null si el índice no puede responder
+     *         (no está cargado o el texto es demasiado corto)
+     */
+    public List<Integer> buscar(String texto, int maximo) {
+        String consulta = normalizar(texto);
+        if (!cargado || consulta.length() < LONGITUD_MINIMA) {
+            return null;
+        }
+
+        PriorityQueue<Candidato> mejores = new PriorityQueue<>(Comparator.reverseOrder());
+        lock.readLock().lock();
+        try {
+            int[] candidatos = SIN_IDS;
+            int total = Integer.MAX_VALUE;
+            // La lista más corta de entre los trigramas de la consulta
+            for (int i = 0; i + 3 <= consulta.length(); i++) {
+                long lista = datos.listaPorTrigrama.obtener(trigrama(consulta, i), -1);
+                if (lista < 0) {
+                    return new ArrayList<>();
+                }
+                if (datos.tamanos[(int) lista] < total) {
+                    total = datos.tamanos[(int) lista];
+                    candidatos = datos.listas[(int) lista];
+                }
+            }
+
+            for (int i = 0; i < total; i++) {
+                int id = candidatos[i];
+                String indexado = datos.textos[id];
+                int posicion = indexado.indexOf(consulta);
+                if (posicion < 0) {
+                    continue;
+                }
+                int relevancia = relevancia(indexado, posicion);
+                if (mejores.size() < maximo) {
+                    mejores.add(new Candidato(id, relevancia, indexado));
+                } else if (maximo > 0 && mejores.peek().peorQue(relevancia, indexado)) {
+                    // Solo se crea el candidato si entra entre los mejores
+                    mejores.poll();
+                    mejores.add(new Candidato(id, relevancia, indexado));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Candidato[] ordenados = mejores.toArray(new Candidato[0]);
+        Arrays.sort(ordenados);
+        List<Integer> ids = new ArrayList<>(ordenados.length);
+        for (Candidato candidato : ordenados) {
+            ids.add(candidato.id);
+        }
+        return ids;
+    }
+
+    /**
+     * Quita tildes, pasa a minúsculas y colapsa los espacios
+     * @param texto Texto original
+     * @return Texto normalizado ("" si es null)
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String descompuesto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(descompuesto.length());
+        boolean espacio = true;
+        for (int i = 0; i < descompuesto.length(); i++) {
+            char c = descompuesto.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isWhitespace(c) || Character.isISOControl(c)) {
+                if (!espacio) {
+                    sb.append(' ');
+                    espacio = true;
+                }
+                continue;
+            }
+            sb.append(c);
+            espacio = false;
+        }
+        int longitud = sb.length();
+        if (longitud > 0 && sb.charAt(longitud - 1) == ' ') {
+            sb.setLength(longitud - 1);
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    // ==================== Mantenimiento desde PacienteDAO ====================
+
+    /**
+     * Indexa un paciente nuevo o reindexa uno modificado
+     * @param paciente Paciente con su ID asignado
+     */
+    void registrar(Paciente paciente) {
+        if (paciente.getIdPaciente() <= 0) {
+            return;
+        }
+        String texto = textoIndexado(paciente.getNombre(), paciente.getApellidos());
+        lock.writeLock().lock();
+        try {
+            datos.registrar(paciente.getIdPaciente(), texto);
+            if (enConstruccion != null) {
+                enConstruccion.registrar(paciente.getIdPaciente(), texto);
+                enConstruccion.modificados.set(paciente.getIdPaciente());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quita un paciente eliminado
+     */
+    void eliminar(int idPaciente) {
+        lock.writeLock().lock();
+        try {
+            datos.eliminar(idPaciente);
+            if (enConstruccion != null) {
+                enConstruccion.eliminar(idPaciente);
+                enConstruccion.modificados.set(idPaciente);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void volcar(Datos destino, List<Paciente> bloque) {
+        if (bloque.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Paciente paciente : bloque) {
+                // La lectura en streaming puede traer una versión anterior a la que ya escribió el DAO
+                if (!destino.modificados.get(paciente.getIdPaciente())) {
+                    destino.registrar(paciente.getIdPaciente(),
+                            textoIndexado(paciente.getNombre(), paciente.getApellidos()));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        bloque.clear();
+    }
+
+    /**
+     * Texto que se indexa: apellidos y nombre normalizados, separados por un salto de línea
+     * para que ningún trigrama de la consulta cruce de un campo a otro
+     */
+    private static String textoIndexado(String nombre, String apellidos) {
+        return normalizar(apellidos) + '\n' + normalizar(nombre);
+    }
+
+    /**
+     * 0: los apellidos empiezan por la consulta; 1: el nombre; 2: alguna palabra; 3: resto
+     */
+    private static int relevancia(String indexado, int posicion) {
+        if (posicion == 0) {
+            return 0;
+        }
+        char anterior = indexado.charAt(posicion - 1);
+        if (anterior == '\n') {
+            return 1;
+        }
+        return anterior == ' ' || anterior == '-' ? 2 : 3;
+    }
+
+    private static long trigrama(String texto, int i) {
+        return ((long) texto.charAt(i) << 32) | ((long) texto.charAt(i + 1) << 16) | texto.charAt(i + 2);
+    }
+
+    private static final class Candidato implements Comparable<Candidato> {
+        final int id;
+        final int relevancia;
+        final String texto;
+
+        Candidato(int id, int relevancia, String texto) {
+            this.id = id;
+            this.relevancia = relevancia;
+            this.texto = texto;
+        }
+
+        /**
+         * Indica si un candidato con esa relevancia y texto iría delante de este
+         * (a igualdad de texto gana el ID menor, que es el que ya está)
+         */
+        boolean peorQue(int otraRelevancia, String otroTexto) {
+            if (relevancia != otraRelevancia) {
+                return otraRelevancia < relevancia;
+            }
+            return otroTexto.compareTo(texto) < 0;
+        }
+
+        @Override
+        public int compareTo(Candidato otro) {
+            if (relevancia != otro.relevancia) {
+                return Integer.compare(relevancia, otro.relevancia);
+            }
+            int porTexto = texto.compareTo(otro.texto);
+            return porTexto != 0 ? porTexto : Integer.compare(id, otro.id);
+        }
+    }
+
+    /**
+     * Estructuras del índice: texto por ID y listas ordenadas de IDs por trigrama
+     */
+    private static final class Datos {
+        // trigrama -> posición en listas/tamanos
+        final MapaLongLong listaPorTrigrama = new MapaLongLong(16_384);
+        int[][] listas = new int[1_024][];
+        int[] tamanos = new int[1_024];
+        int numeroListas;
+        // id_paciente -> texto indexado (null si no existe)
+        String[] textos = new String[1_024];
+        // IDs escritos por el DAO durante la carga (solo mientras se construye)
+        BitSet modificados = new BitSet();
+
+        void registrar(int id, String texto) {
+            if (id >= textos.length) {
+                textos = Arrays.copyOf(textos, Math.max(id + 1, textos.length * 2));
+            }
+            String anterior = textos[id];
+            if (texto.equals(anterior)) {
+                return;
+            }
+            if (anterior != null) {
+                quitarTrigramas(id, anterior);
+            }
+            textos[id] = texto;
+            for (int i = 0; i + 3 <= texto.length(); i++) {
+                if (!repetido(texto, i)) {
+                    anadir(trigrama(texto, i), id);
+                }
+            }
+        }
+
+        void eliminar(int id) {
+            if (id < textos.length && textos[id] != null) {
+                quitarTrigramas(id, textos[id]);
+                textos[id] = null;
+            }
+        }
+
+        private void quitarTrigramas(int id, String texto) {
+            for (int i = 0; i + 3 <= texto.length(); i++) {
+                if (repetido(texto, i)) {
+                    continue;
+                }
+                long lista = listaPorTrigrama.obtener(trigrama(texto, i), -1);
+                if (lista < 0) {
+                    continue;
+                }
+                int l = (int) lista;
+                int posicion = Arrays.binarySearch(listas[l], 0, tamanos[l], id);
+                if (posicion >= 0) {
+                    System.arraycopy(listas[l], posicion + 1, listas[l], posicion, tamanos[l] - posicion - 1);
+                    tamanos[l]--;
+                }
+            }
+        }
+
+        private void anadir(long trigrama, int id) {
+            long lista = listaPorTrigrama.obtener(trigrama, -1);
+            if (lista < 0) {
+                if (numeroListas == listas.length) {
+                    listas = Arrays.copyOf(listas, numeroListas * 2);
+                    tamanos = Arrays.copyOf(tamanos, numeroListas * 2);
+                }
+                lista = numeroListas++;
+                listas[(int) lista] = new int[4];
+                listaPorTrigrama.poner(trigrama, lista);
+            }
+            int l = (int) lista;
+            int[] ids = listas[l];
+            int tamano = tamanos[l];
+            if (tamano == ids.length) {
+                ids = listas[l] = Arrays.copyOf(ids, tamano + (tamano >> 1) + 1);
+            }
+            // Lo normal es que el ID sea el mayor (carga por orden de ID y autoincremento)
+            if (tamano == 0 || ids[tamano - 1] < id) {
+                ids[tamano] = id;
+            } else {
+                int posicion = Arrays.binarySearch(ids, 0, tamano, id);
+                if (posicion >= 0) {
+                    return;
+                }
+                posicion = -posicion - 1;
+                System.arraycopy(ids, posicion, ids, posicion + 1, tamano - posicion);
+                ids[posicion] = id;
+            }
+            tamanos[l] = tamano + 1;
+        }
+
+        /**
+         * Indica si el trigrama en i ya aparece antes en el texto (se indexa una sola vez)
+         */
+        private static boolean repetido(String texto, int i) {
+            for (int j = 0; j < i; j++) {
+                if (texto.charAt(j) == texto.charAt(i)
+                        && texto.charAt(j + 1) == texto.charAt(i + 1)
+                        && texto.charAt(j + 2) == texto.charAt(i + 2)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
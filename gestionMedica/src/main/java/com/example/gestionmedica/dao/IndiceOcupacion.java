@@ -0,0 +1,511 @@
+package com.example.gestionmedica.dao;
+
+import com.example.gestionmedica.models.Cita;
+import com.example.gestionmedica.models.Cita.EstadoCita;
+import com.example.gestionmedica.utils.MapaLongLong;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice en memoria de ocupación de la agenda de cada médico
+ *
+ * Por cada médico y día guarda un mapa de bits de 1440 posiciones (una por minuto)
+ * con las citas no canceladas. Permite saber si una hora está libre sin consultar
+ * la base de datos; CitaDAO lo mantiene al insertar, actualizar, cambiar de estado
+ * y eliminar, y RefrescoCitas le trae lo que cambian otros puestos. La resolución
+ * es de un minuto (se ignoran los segundos de hora_cita)
+ *
+ * Fuera del horizonte cargado el índice no sabe nada: estaLibre devuelve true
+ * y la última palabra la tiene la clave uq_medico_fecha_hora de la BD. Desde la
+ * migración V5 esa clave tampoco cuenta las citas canceladas: lo que el índice da
+ * por libre también lo está para la BD
+ */
+public class IndiceOcupacion {
+
+    public static final int MINUTOS_DIA = 24 * 60;
+    public static final int PALABRAS_DIA = (MINUTOS_DIA + 63) / 64;
+    private static final int FILAS_POR_BLOQUE_CARGA = 1_000;
+
+    // Escrituras de los DAO durante la carga (valor en Datos.modificados)
+    private static final long MODIFICADA = 0;
+    private static final long SOLO_ESTADO_ACTIVA = 1;
+    private static final long SOLO_ESTADO_CANCELADA = 2;
+
+    private static final IndiceOcupacion INSTANCIA = new IndiceOcupacion();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Solo una carga a la vez
+    private final Object cargando = new Object();
+    private Datos datos = new Datos();
+    // Mientras se carga, las escrituras de los DAO se aplican también aquí
+    private Datos enConstruccion;
+    private volatile LocalDate cargadoDesde;
+
+    private IndiceOcupacion() {
+    }
+
+    public static IndiceOcupacion getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Carga (o recarga) el índice con las citas desde una fecha, leyéndolas en streaming
+     * @param desde Primer día del horizonte
+     * @return true si se cargó correctamente
+     */
+    public boolean cargar(LocalDate desde) {
+        // Una carga a la vez: la primera en terminar quitaría enConstruccion a la otra
+        synchronized (cargando) {
+            Datos nuevos = new Datos();
+            lock.writeLock().lock();
+            try {
+                enConstruccion = nuevos;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            List<Cita> bloque = new ArrayList<>(FILAS_POR_BLOQUE_CARGA);
+            long filas = FlujoResultados.recorrer(
+                    "SELECT id_cita, id_medico, fecha_cita, hora_cita, estado FROM citas WHERE fecha_cita >= ?",
+                    stmt -> stmt.setDate(1, Date.valueOf(desde)),
+                    rs -> new Cita(rs.getInt(1), 0, rs.getInt(2), rs.getObject(3, LocalDate.class),
+                                   rs.getObject(4, LocalTime.class), null, EstadoCita.fromString(rs.getString(5))),
+                    "ocupación de citas",
+                    cita -> {
+                        bloque.add(cita);
+                        if (bloque.size() == FILAS_POR_BLOQUE_CARGA) {
+                            volcar(nuevos, bloque);
+                        }
+                    });
+            volcar(nuevos, bloque);
+
+            lock.writeLock().lock();
+            try {
+                enConstruccion = null;
+                if (filas < 0) {
+                    return false;
+                }
+                nuevos.modificados = null;
+                datos = nuevos;
+                cargadoDesde = desde;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            System.out.println("✓ Índice de ocupación cargado: " + filas + " citas desde " + desde);
+            return true;
+        }
+    }
+
+    /**
+     * Carga el índice si no cubre ya esa fecha, esperando a la carga en curso si la hay
+     * @param desde Primer día que debe cubrir
+     * @return true si el índice cubre la fecha
+     */
+    public boolean asegurarCargado(LocalDate desde) {
+        synchronized (cargando) {
+            return cubre(desde) || cargar(desde);
+        }
+    }
+
+    /**
+     * Carga el índice en un hilo virtual sin bloquear al llamador
+     * @param desde Primer día del horizonte
+     */
+    public void cargarEnSegundoPlano(LocalDate desde) {
+        Thread.ofVirtual().name("carga-indice-ocupacion").start(() -> cargar(desde));
+    }
+
+    public boolean estaCargado() {
+        return cargadoDesde != null;
+    }
+
+    /**
+     * Indica si el índice tiene información fiable de esa fecha
+     * @param fecha Fecha a consultar
+     * @return true si la fecha está dentro del horizonte cargado
+     */
+    public boolean cubre(LocalDate fecha) {
+        LocalDate desde = cargadoDesde;
+        return desde != null && !fecha.isBefore(desde);
+    }
+
+    /**
+     * Indica si el médico tiene libre esa hora
+     * @return true si no hay cita no cancelada en ese minuto (o si la fecha no está cargada)
+     */
+    public boolean estaLibre(int idMedico, LocalDate fecha, LocalTime hora) {
+        if (!cubre(fecha)) {
+            return true;
+        }
+        lock.readLock().lock();
+        try {
+            return !datos.ocupado(idMedico, fecha.toEpochDay(), minuto(hora));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indica si dar esa hora al médico chocaría con otra cita
+     * @param idCitaExcluida Cita que se está modificando (no choca consigo misma) o 0
+     * @return true si hay conflicto seguro
+     */
+    public boolean hayConflicto(int idMedico, LocalDate fecha, LocalTime hora, int idCitaExcluida) {
+        if (!cubre(fecha)) {
+            return false;
+        }
+        long dia = fecha.toEpochDay();
+        int minuto = minuto(hora);
+        lock.readLock().lock();
+        try {
+            if (!datos.ocupado(idMedico, dia, minuto)) {
+                return false;
+            }
+            long propia = idCitaExcluida > 0 ? datos.citas.obtener(idCitaExcluida, -1) : -1;
+            return propia == -1 || !activa(propia) || medico(propia) != idMedico
+                    || diaEpoca(propia) != dia || minutoDe(propia) != minuto;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indica si el médico no tiene ninguna cita que empiece en [minutoDesde, minutoHasta)
+     * @param idMedico ID del médico
+     * @param fecha Día
+     * @param minutoDesde Primer minuto del rango (incluido)
+     * @param minutoHasta Último minuto del rango (excluido)
+     * @return true si el rango está libre
+     */
+    public boolean rangoLibre(int idMedico, LocalDate fecha, int minutoDesde, int minutoHasta) {
+        lock.readLock().lock();
+        try {
+            return datos.rangoLibre(idMedico, fecha.toEpochDay(),
+                    Math.max(0, minutoDesde), Math.min(MINUTOS_DIA, minutoHasta));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copia el mapa de bits de un día del médico (bit m = cita no cancelada que empieza en el minuto m)
+     * Sirve para recorrer un día entero sin mantener el bloqueo
+     * @param idMedico ID del médico
+     * @param fecha Día
+     * @param destino Array de al menos PALABRAS_DIA posiciones
+     * @return false si ese día no tiene ninguna cita (destino queda a cero)
+     */
+    public boolean copiarDia(int idMedico, LocalDate fecha, long[] destino) {
+        lock.readLock().lock();
+        try {
+            return datos.copiarDia(idMedico, fecha.toEpochDay(), destino);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== Mantenimiento desde CitaDAO ====================
+
+    /**
+     * Registra una cita nueva o cambia su posición (tras insertar o actualizar)
+     * @param cita Cita con su ID asignado
+     */
+    void registrar(Cita cita) {
+        if (cita.getIdCita() <= 0 || cita.getFechaCita() == null || cita.getHoraCita() == null
+                || cita.getFechaCita().toEpochDay() < 0) {
+            return;
+        }
+        long empaquetada = empaquetar(cita.getIdMedico(), cita.getFechaCita().toEpochDay(),
+                minuto(cita.getHoraCita()), cita.getEstado() != EstadoCita.CANCELADA);
+        lock.writeLock().lock();
+        try {
+            datos.registrar(cita.getIdCita(), empaquetada);
+            if (enConstruccion != null) {
+                enConstruccion.registrar(cita.getIdCita(), empaquetada);
+                enConstruccion.modificados.poner(cita.getIdCita(), MODIFICADA);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Aplica un cambio de estado: CANCELADA libera la hora, los demás la ocupan
+     */
+    void cambiarEstado(int idCita, EstadoCita estado) {
+        boolean activaAhora = estado != EstadoCita.CANCELADA;
+        lock.writeLock().lock();
+        try {
+            datos.cambiarEstado(idCita, activaAhora);
+            if (enConstruccion != null) {
+                if (enConstruccion.citas.contiene(idCita)) {
+                    enConstruccion.cambiarEstado(idCita, activaAhora);
+                    enConstruccion.modificados.poner(idCita, MODIFICADA);
+                } else {
+                    // Aún no ha llegado en la lectura: se le aplicará el estado cuando llegue
+                    enConstruccion.modificados.poner(idCita, activaAhora ? SOLO_ESTADO_ACTIVA : SOLO_ESTADO_CANCELADA);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quita una cita eliminada
+     */
+    void eliminar(int idCita) {
+        lock.writeLock().lock();
+        try {
+            datos.eliminar(idCita);
+            if (enConstruccion != null) {
+                enConstruccion.eliminar(idCita);
+                enConstruccion.modificados.poner(idCita, MODIFICADA);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Aplica una baja de la agenda de un médico leída de citas_eliminadas
+     * Solo quita la cita si sigue en ese médico: un cambio de médico también deja
+     * una baja para el anterior, y la cita ya puede estar registrada en el nuevo
+     */
+    void darDeBaja(int idCita, int idMedico) {
+        lock.writeLock().lock();
+        try {
+            datos.darDeBaja(idCita, idMedico);
+            if (enConstruccion != null) {
+                long cita = enConstruccion.citas.obtener(idCita, -1);
+                if (cita == -1 || medico(cita) == idMedico) {
+                    enConstruccion.eliminar(idCita);
+                    enConstruccion.modificados.poner(idCita, MODIFICADA);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sustituye las citas de un día del médico por las leídas de la BD
+     * Corrige lo que otros puestos hayan cambiado ese día (el índice solo ve este proceso)
+     * @param citas Todas las citas de ese médico y día, según la BD
+     */
+    void refrescarDia(int idMedico, LocalDate fecha, List<Cita> citas) {
+        if (!cubre(fecha)) {
+            return;
+        }
+        long dia = fecha.toEpochDay();
+        lock.writeLock().lock();
+        try {
+            datos.refrescarDia(idMedico, dia, citas);
+            if (enConstruccion != null) {
+                enConstruccion.refrescarDia(idMedico, dia, citas);
+                for (Cita cita : citas) {
+                    enConstruccion.modificados.poner(cita.getIdCita(), MODIFICADA);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void volcar(Datos destino, List<Cita> bloque) {
+        if (bloque.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Cita cita : bloque) {
+                // La lectura en streaming puede traer una versión anterior a la que ya escribió el DAO
+                long modificada = destino.modificados.obtener(cita.getIdCita(), -1);
+                if (modificada == MODIFICADA || cita.getFechaCita().toEpochDay() < 0) {
+                    continue;
+                }
+                boolean activa = modificada == -1
+                        ? cita.getEstado() != EstadoCita.CANCELADA
+                        : modificada == SOLO_ESTADO_ACTIVA;
+                destino.registrar(cita.getIdCita(), empaquetar(cita.getIdMedico(),
+                        cita.getFechaCita().toEpochDay(), minuto(cita.getHoraCita()), activa));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        bloque.clear();
+    }
+
+    // ==================== Empaquetado ====================
+    // Cita: bit 0 activa | bits 1-11 minuto | bits 12-31 día (epoch) | bits 32-62 médico
+
+    private static int minuto(LocalTime hora) {
+        return hora.getHour() * 60 + hora.getMinute();
+    }
+
+    private static long empaquetar(int idMedico, long dia, int minuto, boolean activa) {
+        return ((long) idMedico << 32) | (dia << 12) | ((long) minuto << 1) | (activa ? 1 : 0);
+    }
+
+    private static boolean activa(long cita) {
+        return (cita & 1) != 0;
+    }
+
+    private static int minutoDe(long cita) {
+        return (int) (cita >>> 1) & 0x7FF;
+    }
+
+    private static long diaEpoca(long cita) {
+        return (cita >>> 12) & 0xFFFFF;
+    }
+
+    private static int medico(long cita) {
+        return (int) (cita >>> 32);
+    }
+
+    private static long claveDia(int idMedico, long dia) {
+        return ((long) idMedico << 32) | dia;
+    }
+
+    /**
+     * Estructuras del índice: mapas de bits por (médico, día) y posición de cada cita
+     */
+    private static final class Datos {
+        // (médico, día) -> fila dentro de bits
+        final MapaLongLong filaPorDia = new MapaLongLong(1_024);
+        // id_cita -> cita empaquetada
+        final MapaLongLong citas = new MapaLongLong(1_024);
+        long[] bits = new long[PALABRAS_DIA * 64];
+        int filas;
+        // Citas escritas por los DAO durante la carga (solo mientras se construye)
+        MapaLongLong modificados = new MapaLongLong(64);
+
+        boolean ocupado(int idMedico, long dia, int minuto) {
+            long fila = filaPorDia.obtener(claveDia(idMedico, dia), -1);
+            if (fila < 0) {
+                return false;
+            }
+            int base = (int) fila * PALABRAS_DIA;
+            return (bits[base + (minuto >>> 6)] & (1L << minuto)) != 0;
+        }
+
+        boolean rangoLibre(int idMedico, long dia, int desde, int hasta) {
+            if (desde >= hasta) {
+                return true;
+            }
+            long fila = filaPorDia.obtener(claveDia(idMedico, dia), -1);
+            if (fila < 0) {
+                return true;
+            }
+            int base = (int) fila * PALABRAS_DIA;
+            int primera = desde >>> 6;
+            int ultima = (hasta - 1) >>> 6;
+            for (int p = primera; p <= ultima; p++) {
+                long mascara = -1L;
+                if (p == primera) {
+                    mascara &= -1L << (desde & 63);
+                }
+                if (p == ultima) {
+                    mascara &= -1L >>> (63 - ((hasta - 1) & 63));
+                }
+                if ((bits[base + p] & mascara) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean copiarDia(int idMedico, long dia, long[] destino) {
+            long fila = filaPorDia.obtener(claveDia(idMedico, dia), -1);
+            if (fila < 0) {
+                Arrays.fill(destino, 0, PALABRAS_DIA, 0L);
+                return false;
+            }
+            System.arraycopy(bits, (int) fila * PALABRAS_DIA, destino, 0, PALABRAS_DIA);
+            return true;
+        }
+
+        void registrar(int idCita, long cita) {
+            long anterior = citas.obtener(idCita, -1);
+            if (anterior != -1 && activa(anterior)) {
+                marcar(anterior, false);
+            }
+            citas.poner(idCita, cita);
+            if (activa(cita)) {
+                marcar(cita, true);
+            }
+        }
+
+        void refrescarDia(int idMedico, long dia, List<Cita> nuevas) {
+            List<Long> anteriores = new ArrayList<>();
+            citas.paraCada((idCita, cita) -> {
+                if (medico(cita) == idMedico && diaEpoca(cita) == dia) {
+                    anteriores.add(idCita);
+                }
+            });
+            for (long idCita : anteriores) {
+                eliminar((int) idCita);
+            }
+            for (Cita cita : nuevas) {
+                registrar(cita.getIdCita(), empaquetar(idMedico, dia, minuto(cita.getHoraCita()),
+                        cita.getEstado() != EstadoCita.CANCELADA));
+            }
+        }
+
+        void cambiarEstado(int idCita, boolean activaAhora) {
+            long cita = citas.obtener(idCita, -1);
+            if (cita == -1 || activa(cita) == activaAhora) {
+                return;
+            }
+            long nueva = activaAhora ? cita | 1 : cita & ~1L;
+            citas.poner(idCita, nueva);
+            marcar(nueva, activaAhora);
+        }
+
+        void darDeBaja(int idCita, int idMedico) {
+            long cita = citas.obtener(idCita, -1);
+            if (cita != -1 && medico(cita) == idMedico) {
+                eliminar(idCita);
+            }
+        }
+
+        void eliminar(int idCita) {
+            long cita = citas.obtener(idCita, -1);
+            if (cita == -1) {
+                return;
+            }
+            citas.quitar(idCita);
+            if (activa(cita)) {
+                marcar(cita, false);
+            }
+        }
+
+        private void marcar(long cita, boolean ocupar) {
+            long clave = claveDia(medico(cita), diaEpoca(cita));
+            long fila = filaPorDia.obtener(clave, -1);
+            if (fila < 0) {
+                if (!ocupar) {
+                    return;
+                }
+                fila = filas++;
+                filaPorDia.poner(clave, fila);
+                if ((long) filas * PALABRAS_DIA > bits.length) {
+                    bits = Arrays.copyOf(bits, bits.length * 2);
+                }
+            }
+            int minuto = minutoDe(cita);
+            int posicion = (int) fila * PALABRAS_DIA + (minuto >>> 6);
+            if (ocupar) {
+                bits[posicion] |= 1L << minuto;
+            } else {
+                bits[posicion] &= ~(1L << minuto);
+            }
+        }
+    }
+}
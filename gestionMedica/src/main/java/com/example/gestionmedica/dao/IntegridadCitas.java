@@ -0,0 +1,142 @@
+package com.example.gestionmedica.dao;
+
+import com.example.gestionmedica.models.Cita;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Integridad de citas con pacientes y médicos cuando la BD no la garantiza
+ *
+ * Con citas particionada (GestorParticiones) MySQL no admite claves foráneas y
+ * los DAO hacen sus comprobaciones, dentro de la transacción de la escritura y con
+ * los mismos bloqueos que tomaría MySQL para una clave foránea:
+ *  - al crear o cambiar una cita, FOR SHARE sobre su paciente y su médico, que así
+ *    no pueden borrarse hasta que la transacción termine
+ *  - al borrar un paciente o un médico, FOR UPDATE sobre él y FOR SHARE sobre sus
+ *    citas, así ninguna cita nueva puede apuntarle mientras tanto
+ *
+ * Mientras citas tenga sus dos claves foráneas no hace falta (necesaria() da false)
+ */
+final class IntegridadCitas {
+
+    // Cada cuánto se vuelve a mirar si citas tiene claves foráneas
+    private static final long VIGENCIA_MS = 60_000;
+
+    private static final String SQL_CLAVES_FORANEAS =
+            "SELECT COUNT(*) FROM information_schema.referential_constraints " +
+            "WHERE constraint_schema = DATABASE() AND table_name = 'citas'";
+
+    private static volatile boolean necesaria;
+    private static volatile long comprobadaHasta;
+
+    private IntegridadCitas() {
+    }
+
+    /**
+     * Indica si citas no tiene sus claves foráneas y hay que comprobar en los DAO
+     * @param conn Conexión de la escritura
+     */
+    static boolean necesaria(Connection conn) throws SQLException {
+        long ahora = System.currentTimeMillis();
+        if (ahora < comprobadaHasta) {
+            return necesaria;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_CLAVES_FORANEAS);
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            necesaria = rs.getInt(1) < 2;
+        }
+        comprobadaHasta = ahora + VIGENCIA_MS;
+        return necesaria;
+    }
+
+    /**
+     * Bloquea el paciente y el médico de una cita hasta el final de la transacción
+     * @throws SQLException si alguno de los dos no existe
+     */
+    static void bloquearReferencias(Connection conn, int idPaciente, int idMedico) throws SQLException {
+        bloquear(conn, "pacientes", "id_paciente", List.of(idPaciente), "El paciente");
+        bloquear(conn, "medicos", "id_medico", List.of(idMedico), "El médico");
+    }
+
+    /**
+     * Como bloquearReferencias, para todas las citas de un lote
+     * @throws SQLException si falta algún paciente o médico
+     */
+    static void bloquearReferencias(Connection conn, List<Cita> citas) throws SQLException {
+        TreeSet<Integer> pacientes = new TreeSet<>();
+        TreeSet<Integer> medicos = new TreeSet<>();
+        for (Cita cita : citas) {
+            pacientes.add(cita.getIdPaciente());
+            medicos.add(cita.getIdMedico());
+        }
+        bloquear(conn, "pacientes", "id_paciente", pacientes, "El paciente");
+        bloquear(conn, "medicos", "id_medico", medicos, "El médico");
+    }
+
+    /**
+     * Bloquea un paciente para borrarlo y comprueba que no tiene citas
+     * @throws SQLException si tiene citas
+     */
+    static void comprobarPacienteSinCitas(Connection conn, int idPaciente) throws SQLException {
+        comprobarSinCitas(conn, "pacientes", "id_paciente", idPaciente, "El paciente");
+    }
+
+    /**
+     * Bloquea un médico para borrarlo y comprueba que no tiene citas
+     * @throws SQLException si tiene citas
+     */
+    static void comprobarMedicoSinCitas(Connection conn, int idMedico) throws SQLException {
+        comprobarSinCitas(conn, "medicos", "id_medico", idMedico, "El médico");
+    }
+
+    private static void comprobarSinCitas(Connection conn, String tabla, String columna, int id,
+                                          String descripcion) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT " + columna + " FROM " + tabla + " WHERE " + columna + " = ? FOR UPDATE")) {
+            stmt.setInt(1, id);
+            stmt.executeQuery().close();
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT 1 FROM citas WHERE " + columna + " = ? LIMIT 1 FOR SHARE")) {
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    throw new SQLException(descripcion + " " + id + " tiene citas asociadas");
+                }
+            }
+        }
+    }
+
+    private static void bloquear(Connection conn, String tabla, String columna, Collection<Integer> ids,
+                                 String descripcion) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT " + columna + " FROM " + tabla + " WHERE " + columna + " IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(") FOR SHARE");
+
+        List<Integer> faltan = new ArrayList<>(ids);
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int i = 1;
+            for (Integer id : ids) {
+                stmt.setInt(i++, id);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    faltan.remove(Integer.valueOf(rs.getInt(1)));
+                }
+            }
+        }
+        if (!faltan.isEmpty()) {
+            throw new SQLException(descripcion + " " + faltan.get(0) + " no existe");
+        }
+    }
+}
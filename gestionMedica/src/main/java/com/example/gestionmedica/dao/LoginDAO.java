@@ -2,36 +2,78 @@ package com.example.gestionmedica.dao;
 
 import com.example.gestionmedica.models.Usuario;
 import com.example.gestionmedica.utils.DatabaseConnection;
+import com.example.gestionmedica.utils.MetricasDAO;
 import java.sql.*;
 
 public class LoginDAO {
 
-    public Usuario login(String username, String password) {
-        String sql = "SELECT u.*, m.especialidad " +
-                "FROM usuarios u " +
-                "LEFT JOIN medicos m ON u.id_usuario = m.id_usuario " +
-                "WHERE u.username = ? AND u.password = ? AND u.activo = 1";
+    private static final MetricasDAO.Operacion M_LOGIN = MetricasDAO.operacion("LoginDAO", "login");
+    private static final MetricasDAO.Operacion M_OBTENER_ESPECIALIDAD =
+            MetricasDAO.operacion("LoginDAO", "obtenerEspecialidad");
+
+    // Solo las columnas del principal: ni la contraseña ni el JOIN con medicos
+    private static final String SQL_LOGIN =
+            "SELECT id_usuario, username, rol, nombre, activo " +
+            "FROM usuarios " +
+            "WHERE username = ? AND password = ? AND activo = 1";
 
+    public Usuario login(String username, String password) {
+        MetricasDAO.Medicion medicion = M_LOGIN.iniciar();
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(SQL_LOGIN)) {
 
             pstmt.setString(1, username);
             pstmt.setString(2, password);
 
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                Usuario usuario = new Usuario(
-                        rs.getString("username"),
-                        rs.getString("rol"),
-                        rs.getString("nombre")
-                );
-                usuario.setActivo(rs.getBoolean("activo"));
-                return usuario;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    medicion.filas(1);
+                    Usuario usuario = new Usuario(
+                            rs.getString(2),
+                            rs.getString(3),
+                            rs.getString(4)
+                    );
+                    usuario.setId(rs.getInt(1));
+                    usuario.setActivo(rs.getBoolean(5));
+                    return usuario;
+                }
             }
 
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("Error login: " + e.getMessage());
+        } finally {
+            medicion.terminar();
+        }
+        return null;
+    }
+
+    /**
+     * Especialidad del médico asociado a un usuario (solo tiene sentido con rol medico)
+     * @param idUsuario ID del usuario
+     * @return Especialidad o null si el usuario no es médico
+     */
+    public String obtenerEspecialidad(int idUsuario) {
+        String sql = "SELECT especialidad FROM medicos WHERE id_usuario = ?";
+
+        MetricasDAO.Medicion medicion = M_OBTENER_ESPECIALIDAD.iniciar();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, idUsuario);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    medicion.filas(1);
+                    return rs.getString(1);
+                }
+            }
+
+        } catch (SQLException e) {
+            medicion.error();
+            System.err.println("Error al obtener especialidad: " + e.getMessage());
+        } finally {
+            medicion.terminar();
         }
         return null;
     }
@@ -0,0 +1,114 @@
+package com.example.gestionmedica.dao;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mapeador que lee las columnas por posición en lugar de por nombre
+ *
+ * Al compilarlo para un ResultSet busca una sola vez la posición de cada columna
+ * en sus metadatos; las posiciones se guardan por forma de consulta (la lista de
+ * columnas), así que las consultas repetidas ni siquiera las buscan. Después, cada
+ * fila se lee con getInt(i), getString(i)... sin comparar nombres
+ *
+ * Las columnas que no están en la consulta tienen posición 0 y se leen como null/0
+ * @param <T> Tipo del objeto resultante
+ */
+final class MapeadorColumnas<T> implements MapeadorFila<T> {
+
+    // Formas de consulta distintas que se recuerdan por mapeador
+    private static final int MAXIMO_FORMAS = 64;
+
+    /**
+     * Construye el objeto de la fila actual a partir de las posiciones resueltas
+     */
+    @FunctionalInterface
+    interface Construccion<T> {
+        T construir(ResultSet rs, int[] posiciones) throws SQLException;
+    }
+
+    private final String[] columnas;
+    private final Construccion<T> construccion;
+    private final ConcurrentHashMap<String, int[]> posicionesPorForma = new ConcurrentHashMap<>();
+
+    /**
+     * @param construccion Lectura de una fila; posiciones[k] es la de columnas[k]
+     * @param columnas Nombres (o alias) de las columnas que usa la construcción
+     */
+    MapeadorColumnas(Construccion<T> construccion, String... columnas) {
+        this.construccion = construccion;
+        this.columnas = columnas;
+    }
+
+    @Override
+    public MapeadorFila<T> compilar(ResultSet rs) throws SQLException {
+        int[] posiciones = resolver(rs.getMetaData());
+        return fila -> construccion.construir(fila, posiciones);
+    }
+
+    /**
+     * Lectura suelta de una fila (resuelve las posiciones en el momento)
+     * Para recorrer muchas filas es mejor compilar primero
+     */
+    @Override
+    public T mapear(ResultSet rs) throws SQLException {
+        return construccion.construir(rs, resolver(rs.getMetaData()));
+    }
+
+    private int[] resolver(ResultSetMetaData meta) throws SQLException {
+        int total = meta.getColumnCount();
+        String[] etiquetas = new String[total];
+        StringBuilder forma = new StringBuilder(total * 12);
+        for (int i = 1; i <= total; i++) {
+            etiquetas[i - 1] = meta.getColumnLabel(i);
+            forma.append(etiquetas[i - 1]).append('\u001F');
+        }
+        String clave = forma.toString();
+        int[] posiciones = posicionesPorForma.get(clave);
+        if (posiciones != null) {
+            return posiciones;
+        }
+
+        posiciones = new int[columnas.length];
+        for (int c = 0; c < columnas.length; c++) {
+            for (int i = 0; i < total; i++) {
+                if (columnas[c].equalsIgnoreCase(etiquetas[i])) {
+                    posiciones[c] = i + 1;
+                    break;
+                }
+            }
+        }
+        if (posicionesPorForma.size() < MAXIMO_FORMAS) {
+            posicionesPorForma.put(clave, posiciones);
+        }
+        return posiciones;
+    }
+
+    // ==================== Lectura por posición ====================
+
+    static int entero(ResultSet rs, int posicion) throws SQLException {
+        return posicion > 0 ? rs.getInt(posicion) : 0;
+    }
+
+    static String texto(ResultSet rs, int posicion) throws SQLException {
+        return posicion > 0 ? rs.getString(posicion) : null;
+    }
+
+    /**
+     * Fecha leída directamente como LocalDate (sin pasar por java.sql.Date)
+     */
+    static LocalDate fecha(ResultSet rs, int posicion) throws SQLException {
+        return posicion > 0 ? rs.getObject(posicion, LocalDate.class) : null;
+    }
+
+    /**
+     * Hora leída directamente como LocalTime (sin pasar por java.sql.Time)
+     */
+    static LocalTime hora(ResultSet rs, int posicion) throws SQLException {
+        return posicion > 0 ? rs.getObject(posicion, LocalTime.class) : null;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.gestionmedica.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Convierte la fila actual de un ResultSet en un objeto
+ * @param <T> Tipo del objeto resultante
+ */
+@FunctionalInterface
+public interface MapeadorFila<T> {
+
+    T mapear(ResultSet rs) throws SQLException;
+
+    /**
+     * Prepara el mapeador para las filas de un ResultSet concreto (p. ej. resolviendo
+     * una sola vez la posición de las columnas). Por defecto devuelve el propio mapeador
+     * @param rs ResultSet recién ejecutado
+     * @return Mapeador a usar con todas sus filas
+     */
+    default MapeadorFila<T> compilar(ResultSet rs) throws SQLException {
+        return this;
+    }
+}
@@ -1,17 +1,55 @@
 package com.example.gestionmedica.dao;
 
+import com.example.gestionmedica.dao.EventoCambio.Entidad;
 import com.example.gestionmedica.models.Medico;
+import com.example.gestionmedica.utils.CacheTTL;
 import com.example.gestionmedica.utils.DatabaseConnection;
+import com.example.gestionmedica.utils.MetricasDAO;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * DAO para la gestión de operaciones CRUD sobre la tabla 'medicos'
+ *
+ * obtenerTodos, obtenerPorId y obtenerEspecialidades se sirven desde una caché
+ * en memoria compartida por todas las instancias; insertar, actualizar y
+ * eliminar la invalidan. Los objetos devueltos son copias, se pueden modificar
  */
 public class MedicoDAO {
 
+    // Configuración de la caché (la plantilla de médicos cambia muy poco)
+    private static final long TTL_CACHE_MS = 10 * 60_000;
+    private static final int CAPACIDAD_CACHE_MEDICOS = 2_000;
+
+    private static final String CLAVE_TODOS = "todos";
+    private static final String CLAVE_ESPECIALIDADES = "especialidades";
+
+    private static final CacheTTL<Integer, Medico> CACHE_MEDICOS =
+            new CacheTTL<>(CAPACIDAD_CACHE_MEDICOS, TTL_CACHE_MS);
+    private static final CacheTTL<String, List<Medico>> CACHE_LISTADOS =
+            new CacheTTL<>(4, TTL_CACHE_MS);
+    private static final CacheTTL<String, List<String>> CACHE_ESPECIALIDADES =
+            new CacheTTL<>(4, TTL_CACHE_MS);
+
+    // Filas de médicos leídas por posición
+    private static final MapeadorColumnas<Medico> MAPEO_MEDICO = new MapeadorColumnas<>(
+            MedicoDAO::construirMedico, "id_medico", "nombre", "apellidos", "especialidad");
+
+    // Métricas de cada método (ver MetricasDAO)
+    private static final MetricasDAO.Operacion M_INSERTAR = metrica("insertar");
+    private static final MetricasDAO.Operacion M_OBTENER_TODOS = metrica("obtenerTodos");
+    private static final MetricasDAO.Operacion M_OBTENER_POR_ID = metrica("obtenerPorId");
+    private static final MetricasDAO.Operacion M_BUSCAR_POR_ESPECIALIDAD = metrica("buscarPorEspecialidad");
+    private static final MetricasDAO.Operacion M_BUSCAR_POR_NOMBRE = metrica("buscarPorNombre");
+    private static final MetricasDAO.Operacion M_ACTUALIZAR = metrica("actualizar");
+    private static final MetricasDAO.Operacion M_ELIMINAR = metrica("eliminar");
+    private static final MetricasDAO.Operacion M_OBTENER_ESPECIALIDADES = metrica("obtenerEspecialidades");
+    private static final MetricasDAO.Operacion M_CONTAR_MEDICOS = metrica("contarMedicos");
+
     /**
      * Inserta un nuevo médico en la base de datos
      * @param medico El médico a insertar
@@ -20,6 +58,7 @@ public class MedicoDAO {
     public boolean insertar(Medico medico) {
         String sql = "INSERT INTO medicos (nombre, apellidos, especialidad) VALUES (?, ?, ?)";
         
+        MetricasDAO.Medicion medicion = M_INSERTAR.iniciar();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             
@@ -28,6 +67,7 @@ public class MedicoDAO {
             stmt.setString(3, medico.getEspecialidad());
             
             int filasAfectadas = stmt.executeUpdate();
+            medicion.filas(filasAfectadas);
             
             if (filasAfectadas > 0) {
                 // Obtener el ID generado
@@ -36,12 +76,17 @@ public class MedicoDAO {
                         medico.setIdMedico(rs.getInt(1));
                     }
                 }
+                invalidarCache();
+                BusCambios.getInstancia().alta(Entidad.MEDICO, medico.getIdMedico(), medico);
                 System.out.println("✓ Médico insertado: " + medico.getNombreCompleto());
                 return true;
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al insertar médico: " + e.getMessage());
+        } finally {
+            medicion.terminar();
         }
         return false;
     }
@@ -51,21 +96,34 @@ public class MedicoDAO {
      * @return Lista de todos los médicos
      */
     public List<Medico> obtenerTodos() {
+        long generacion = CACHE_LISTADOS.getGeneracion();
+        List<Medico> cacheados = CACHE_LISTADOS.obtener(CLAVE_TODOS);
+        if (cacheados != null) {
+            return copiar(cacheados);
+        }
+        
         List<Medico> medicos = new ArrayList<>();
         String sql = "SELECT * FROM medicos ORDER BY apellidos, nombre";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        MetricasDAO.Medicion medicion = M_OBTENER_TODOS.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
+            MapeadorFila<Medico> mapeador = MAPEO_MEDICO.compilar(rs);
             while (rs.next()) {
-                medicos.add(mapearMedico(rs));
+                medicos.add(mapeador.mapear(rs));
             }
             
+            CACHE_LISTADOS.guardar(CLAVE_TODOS, copiar(medicos), generacion);
             System.out.println("✓ Se obtuvieron " + medicos.size() + " médicos");
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al obtener médicos: " + e.getMessage());
+        } finally {
+            medicion.filas(medicos.size());
+            medicion.terminar();
         }
         return medicos;
     }
@@ -76,8 +134,15 @@ public class MedicoDAO {
      * @return El médico encontrado o null
      */
     public Medico obtenerPorId(int idMedico) {
+        long generacion = CACHE_MEDICOS.getGeneracion();
+        Medico cacheado = CACHE_MEDICOS.obtener(idMedico);
+        if (cacheado != null) {
+            return copiar(cacheado);
+        }
+        
         String sql = "SELECT * FROM medicos WHERE id_medico = ?";
         
+        MetricasDAO.Medicion medicion = M_OBTENER_POR_ID.iniciar();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
@@ -85,12 +150,18 @@ public class MedicoDAO {
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return mapearMedico(rs);
+                    medicion.filas(1);
+                    Medico medico = MAPEO_MEDICO.mapear(rs);
+                    CACHE_MEDICOS.guardar(idMedico, copiar(medico), generacion);
+                    return medico;
                 }
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al obtener médico por ID: " + e.getMessage());
+        } finally {
+            medicion.terminar();
         }
         return null;
     }
@@ -104,19 +175,25 @@ public class MedicoDAO {
         List<Medico> medicos = new ArrayList<>();
         String sql = "SELECT * FROM medicos WHERE especialidad LIKE ? ORDER BY apellidos, nombre";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        MetricasDAO.Medicion medicion = M_BUSCAR_POR_ESPECIALIDAD.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, "%" + especialidad + "%");
             
             try (ResultSet rs = stmt.executeQuery()) {
+                MapeadorFila<Medico> mapeador = MAPEO_MEDICO.compilar(rs);
                 while (rs.next()) {
-                    medicos.add(mapearMedico(rs));
+                    medicos.add(mapeador.mapear(rs));
                 }
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al buscar médicos por especialidad: " + e.getMessage());
+        } finally {
+            medicion.filas(medicos.size());
+            medicion.terminar();
         }
         return medicos;
     }
@@ -132,7 +209,8 @@ public class MedicoDAO {
                      "WHERE nombre LIKE ? OR apellidos LIKE ? " +
                      "ORDER BY apellidos, nombre";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        MetricasDAO.Medicion medicion = M_BUSCAR_POR_NOMBRE.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             String patron = "%" + texto + "%";
@@ -140,13 +218,18 @@ public class MedicoDAO {
             stmt.setString(2, patron);
             
             try (ResultSet rs = stmt.executeQuery()) {
+                MapeadorFila<Medico> mapeador = MAPEO_MEDICO.compilar(rs);
                 while (rs.next()) {
-                    medicos.add(mapearMedico(rs));
+                    medicos.add(mapeador.mapear(rs));
                 }
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al buscar médicos: " + e.getMessage());
+        } finally {
+            medicion.filas(medicos.size());
+            medicion.terminar();
         }
         return medicos;
     }
@@ -160,6 +243,7 @@ public class MedicoDAO {
         String sql = "UPDATE medicos SET nombre = ?, apellidos = ?, especialidad = ? " +
                      "WHERE id_medico = ?";
         
+        MetricasDAO.Medicion medicion = M_ACTUALIZAR.iniciar();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
@@ -169,14 +253,20 @@ public class MedicoDAO {
             stmt.setInt(4, medico.getIdMedico());
             
             int filasAfectadas = stmt.executeUpdate();
+            medicion.filas(filasAfectadas);
             
             if (filasAfectadas > 0) {
+                invalidarCache();
+                BusCambios.getInstancia().modificacion(Entidad.MEDICO, medico.getIdMedico(), medico);
                 System.out.println("✓ Médico actualizado: " + medico.getNombreCompleto());
                 return true;
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al actualizar médico: " + e.getMessage());
+        } finally {
+            medicion.terminar();
         }
         return false;
     }
@@ -189,20 +279,37 @@ public class MedicoDAO {
     public boolean eliminar(int idMedico) {
         String sql = "DELETE FROM medicos WHERE id_medico = ?";
         
+        MetricasDAO.Medicion medicion = M_ELIMINAR.iniciar();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
+            // Sin claves foráneas (citas particionada) las citas asociadas se comprueban aquí
+            boolean integridad = IntegridadCitas.necesaria(conn);
+            if (integridad) {
+                conn.setAutoCommit(false);
+                IntegridadCitas.comprobarMedicoSinCitas(conn, idMedico);
+            }
+            
             stmt.setInt(1, idMedico);
             int filasAfectadas = stmt.executeUpdate();
+            medicion.filas(filasAfectadas);
             
             if (filasAfectadas > 0) {
+                if (integridad) {
+                    conn.commit();
+                }
+                invalidarCache();
+                BusCambios.getInstancia().baja(Entidad.MEDICO, idMedico);
                 System.out.println("✓ Médico eliminado con ID: " + idMedico);
                 return true;
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al eliminar médico: " + e.getMessage());
             System.err.println("  Puede que tenga citas asociadas");
+        } finally {
+            medicion.terminar();
         }
         return false;
     }
@@ -212,10 +319,17 @@ public class MedicoDAO {
      * @return Lista de especialidades
      */
     public List<String> obtenerEspecialidades() {
+        long generacion = CACHE_ESPECIALIDADES.getGeneracion();
+        List<String> cacheadas = CACHE_ESPECIALIDADES.obtener(CLAVE_ESPECIALIDADES);
+        if (cacheadas != null) {
+            return new ArrayList<>(cacheadas);
+        }
+        
         List<String> especialidades = new ArrayList<>();
         String sql = "SELECT DISTINCT especialidad FROM medicos ORDER BY especialidad";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        MetricasDAO.Medicion medicion = M_OBTENER_ESPECIALIDADES.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
@@ -223,8 +337,14 @@ public class MedicoDAO {
                 especialidades.add(rs.getString("especialidad"));
             }
             
+            CACHE_ESPECIALIDADES.guardar(CLAVE_ESPECIALIDADES, List.copyOf(especialidades), generacion);
+            
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al obtener especialidades: " + e.getMessage());
+        } finally {
+            medicion.filas(especialidades.size());
+            medicion.terminar();
         }
         return especialidades;
     }
@@ -236,31 +356,76 @@ public class MedicoDAO {
     public int contarMedicos() {
         String sql = "SELECT COUNT(*) as total FROM medicos";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        MetricasDAO.Medicion medicion = M_CONTAR_MEDICOS.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
             if (rs.next()) {
+                medicion.filas(1);
                 return rs.getInt("total");
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al contar médicos: " + e.getMessage());
+        } finally {
+            medicion.terminar();
         }
         return 0;
     }
 
     /**
-     * Mapea un ResultSet a un objeto Medico
-     * @param rs ResultSet con los datos del médico
-     * @return Objeto Medico
+     * Vacía la caché de médicos y especialidades
+     * Se llama tras cada escritura; también sirve si la tabla se modifica fuera de la aplicación
+     */
+    public static void invalidarCache() {
+        CACHE_MEDICOS.invalidarTodo();
+        CACHE_LISTADOS.invalidarTodo();
+        CACHE_ESPECIALIDADES.invalidarTodo();
+        DirectorioNombres.getInstancia().invalidarMedicos();
+    }
+
+    /**
+     * Métricas de las cachés de médicos (aciertos, fallos, desalojos...)
+     * @return Estadísticas por nombre de caché
+     */
+    public static Map<String, CacheTTL.Estadisticas> getEstadisticasCache() {
+        Map<String, CacheTTL.Estadisticas> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("medicos", CACHE_MEDICOS.obtenerEstadisticas());
+        estadisticas.put("listados", CACHE_LISTADOS.obtenerEstadisticas());
+        estadisticas.put("especialidades", CACHE_ESPECIALIDADES.obtenerEstadisticas());
+        return estadisticas;
+    }
+
+    /**
+     * Copia un médico para que el llamador no modifique el de la caché
+     */
+    private static Medico copiar(Medico medico) {
+        return new Medico(medico.getIdMedico(), medico.getNombre(),
+                          medico.getApellidos(), medico.getEspecialidad());
+    }
+
+    private static List<Medico> copiar(List<Medico> medicos) {
+        List<Medico> copia = new ArrayList<>(medicos.size());
+        for (Medico medico : medicos) {
+            copia.add(copiar(medico));
+        }
+        return copia;
+    }
+
+    private static MetricasDAO.Operacion metrica(String metodo) {
+        return MetricasDAO.operacion("MedicoDAO", metodo);
+    }
+
+    /**
+     * Construye un médico por posición de columna (ver MAPEO_MEDICO)
      */
-    private Medico mapearMedico(ResultSet rs) throws SQLException {
-        Medico medico = new Medico();
-        medico.setIdMedico(rs.getInt("id_medico"));
-        medico.setNombre(rs.getString("nombre"));
-        medico.setApellidos(rs.getString("apellidos"));
-        medico.setEspecialidad(rs.getString("especialidad"));
-        return medico;
+    private static Medico construirMedico(ResultSet rs, int[] c) throws SQLException {
+        return new Medico(
+                MapeadorColumnas.entero(rs, c[0]),
+                MapeadorColumnas.texto(rs, c[1]),
+                MapeadorColumnas.texto(rs, c[2]),
+                MapeadorColumnas.texto(rs, c[3]));
     }
 }
@@ -1,39 +1,65 @@
 package com.example.gestionmedica.dao;
 
+import com.example.gestionmedica.dao.EventoCambio.Entidad;
 import com.example.gestionmedica.models.Paciente;
 import com.example.gestionmedica.utils.DatabaseConnection;
+import com.example.gestionmedica.utils.MetricasDAO;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * DAO para la gestión de operaciones CRUD sobre la tabla 'pacientes'
  */
 public class PacienteDAO {
 
+    // Filas por lote (y por transacción) en insertarLote
+    public static final int TAMANO_LOTE_DEFECTO = 1000;
+
+    // Filas de pacientes leídas por posición
+    private static final MapeadorColumnas<Paciente> MAPEO_PACIENTE = new MapeadorColumnas<>(
+            PacienteDAO::construirPaciente,
+            "id_paciente", "dni", "nombre", "apellidos", "fecha_nacimiento", "telefono", "email", "direccion");
+
+    private static final String SQL_INSERTAR =
+            "INSERT INTO pacientes (dni, nombre, apellidos, fecha_nacimiento, telefono, email, direccion) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    // Métricas de cada método (ver MetricasDAO)
+    private static final MetricasDAO.Operacion M_INSERTAR = metrica("insertar");
+    private static final MetricasDAO.Operacion M_INSERTAR_LOTE = metrica("insertarLote");
+    private static final MetricasDAO.Operacion M_OBTENER_TODOS = metrica("obtenerTodos");
+    private static final MetricasDAO.Operacion M_FLUJO_TODOS = metrica("flujoTodos");
+    private static final MetricasDAO.Operacion M_RECORRER_TODOS = metrica("recorrerTodos");
+    private static final MetricasDAO.Operacion M_OBTENER_POR_ID = metrica("obtenerPorId");
+    private static final MetricasDAO.Operacion M_BUSCAR_POR_DNI = metrica("buscarPorDni");
+    private static final MetricasDAO.Operacion M_OBTENER_ID_POR_DNI = metrica("obtenerIdPorDni");
+    private static final MetricasDAO.Operacion M_BUSCAR_POR_NOMBRE = metrica("buscarPorNombre");
+    private static final MetricasDAO.Operacion M_OBTENER_PAGINA = metrica("obtenerPagina");
+    private static final MetricasDAO.Operacion M_ACTUALIZAR = metrica("actualizar");
+    private static final MetricasDAO.Operacion M_ELIMINAR = metrica("eliminar");
+    private static final MetricasDAO.Operacion M_CONTAR_PACIENTES = metrica("contarPacientes");
+
     /**
      * Inserta un nuevo paciente en la base de datos
      * @param paciente El paciente a insertar
      * @return true si se insertó correctamente
      */
     public boolean insertar(Paciente paciente) {
-        String sql = "INSERT INTO pacientes (dni, nombre, apellidos, fecha_nacimiento, telefono, email, direccion) " +
-                     "VALUES (?, ?, ?, ?, ?, ?, ?)";
-        
+        MetricasDAO.Medicion medicion = M_INSERTAR.iniciar();
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+             PreparedStatement stmt = conn.prepareStatement(SQL_INSERTAR, Statement.RETURN_GENERATED_KEYS)) {
             
-            stmt.setString(1, paciente.getDni());
-            stmt.setString(2, paciente.getNombre());
-            stmt.setString(3, paciente.getApellidos());
-            stmt.setDate(4, paciente.getFechaNacimiento() != null ? Date.valueOf(paciente.getFechaNacimiento()) : null);
-            stmt.setString(5, paciente.getTelefono());
-            stmt.setString(6, paciente.getEmail());
-            stmt.setString(7, paciente.getDireccion());
+            asignarParametrosInsercion(stmt, paciente);
             
             int filasAfectadas = stmt.executeUpdate();
+            medicion.filas(filasAfectadas);
             
             if (filasAfectadas > 0) {
                 // Obtener el ID generado
@@ -42,16 +68,127 @@ public class PacienteDAO {
                         paciente.setIdPaciente(rs.getInt(1));
                     }
                 }
+                IndiceNombresPacientes.getInstancia().registrar(paciente);
+                IndiceDni.getInstancia().registrar(paciente);
+                BusCambios.getInstancia().alta(Entidad.PACIENTE, paciente.getIdPaciente(), paciente);
                 System.out.println("✓ Paciente insertado: " + paciente.getNombreCompleto());
                 return true;
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al insertar paciente: " + e.getMessage());
+        } finally {
+            medicion.terminar();
         }
         return false;
     }
 
+    /**
+     * Inserta varios pacientes por lotes usando el tamaño de lote por defecto
+     * @param pacientes Pacientes a insertar (se les asigna el ID generado)
+     * @return Resultado con el número de insertados y las filas fallidas
+     */
+    public ResultadoLote<Paciente> insertarLote(List<Paciente> pacientes) {
+        return insertarLote(pacientes, TAMANO_LOTE_DEFECTO);
+    }
+
+    /**
+     * Inserta varios pacientes por lotes JDBC, con una transacción por lote
+     * Si un lote falla (p. ej. por un DNI duplicado) se repite fila a fila
+     * para insertar los válidos y registrar solo los que fallan
+     * @param pacientes Pacientes a insertar (se les asigna el ID generado)
+     * @param tamanoLote Filas por lote
+     * @return Resultado con el número de insertados y las filas fallidas
+     */
+    public ResultadoLote<Paciente> insertarLote(List<Paciente> pacientes, int tamanoLote) {
+        ResultadoLote<Paciente> resultado = new ResultadoLote<>(pacientes.size());
+        int tamano = Math.max(1, tamanoLote);
+        
+        MetricasDAO.Medicion medicion = M_INSERTAR_LOTE.iniciar();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SQL_INSERTAR, Statement.RETURN_GENERATED_KEYS)) {
+            
+            conn.setAutoCommit(false);
+            
+            for (int inicio = 0; inicio < pacientes.size(); inicio += tamano) {
+                List<Paciente> tramo = pacientes.subList(inicio, Math.min(inicio + tamano, pacientes.size()));
+                try {
+                    for (Paciente paciente : tramo) {
+                        asignarParametrosInsercion(stmt, paciente);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    
+                    // Las claves generadas llegan en el mismo orden que las filas del lote
+                    try (ResultSet rs = stmt.getGeneratedKeys()) {
+                        int i = 0;
+                        while (rs.next() && i < tramo.size()) {
+                            tramo.get(i++).setIdPaciente(rs.getInt(1));
+                        }
+                    }
+                    conn.commit();
+                    resultado.registrarInsertados(tramo.size());
+                    for (Paciente paciente : tramo) {
+                        IndiceNombresPacientes.getInstancia().registrar(paciente);
+                        IndiceDni.getInstancia().registrar(paciente);
+                    }
+                    
+                } catch (SQLException e) {
+                    conn.rollback();
+                    stmt.clearBatch();
+                    insertarFilaAFila(conn, stmt, tramo, inicio, resultado);
+                }
+            }
+            
+            // Un lote puede ser una importación entera: se avisa una vez en lugar de por paciente
+            if (resultado.getInsertados() > 0) {
+                BusCambios.getInstancia().recarga(Entidad.PACIENTE);
+            }
+            System.out.println("✓ Lote de pacientes: " + resultado.getInsertados() + " insertados, " +
+                               resultado.getFallos().size() + " fallidos");
+            
+        } catch (SQLException e) {
+            medicion.error();
+            System.err.println("✗ Error al insertar lote de pacientes: " + e.getMessage());
+            // Las filas que no llegaron a procesarse cuentan como fallidas
+            for (int i = resultado.getInsertados() + resultado.getFallos().size(); i < pacientes.size(); i++) {
+                resultado.registrarFallo(i, pacientes.get(i), e.getMessage());
+            }
+        } finally {
+            medicion.filas(resultado.getInsertados());
+            medicion.terminar();
+        }
+        return resultado;
+    }
+
+    /**
+     * Inserta los pacientes de un lote fallido uno a uno, cada uno en su propia transacción
+     */
+    private void insertarFilaAFila(Connection conn, PreparedStatement stmt, List<Paciente> tramo,
+                                   int desplazamiento, ResultadoLote<Paciente> resultado) throws SQLException {
+        for (int i = 0; i < tramo.size(); i++) {
+            Paciente paciente = tramo.get(i);
+            paciente.setIdPaciente(0);
+            try {
+                asignarParametrosInsercion(stmt, paciente);
+                stmt.executeUpdate();
+                try (ResultSet rs = stmt.getGeneratedKeys()) {
+                    if (rs.next()) {
+                        paciente.setIdPaciente(rs.getInt(1));
+                    }
+                }
+                conn.commit();
+                resultado.registrarInsertados(1);
+                IndiceNombresPacientes.getInstancia().registrar(paciente);
+                IndiceDni.getInstancia().registrar(paciente);
+            } catch (SQLException e) {
+                conn.rollback();
+                resultado.registrarFallo(desplazamiento + i, paciente, e.getMessage());
+            }
+        }
+    }
+
     /**
      * Obtiene todos los pacientes de la base de datos
      * @return Lista de todos los pacientes
@@ -60,22 +197,59 @@ public class PacienteDAO {
         List<Paciente> pacientes = new ArrayList<>();
         String sql = "SELECT * FROM pacientes ORDER BY apellidos, nombre";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        MetricasDAO.Medicion medicion = M_OBTENER_TODOS.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
+            MapeadorFila<Paciente> mapeador = MAPEO_PACIENTE.compilar(rs);
             while (rs.next()) {
-                pacientes.add(mapearPaciente(rs));
+                pacientes.add(mapeador.mapear(rs));
             }
             
             System.out.println("✓ Se obtuvieron " + pacientes.size() + " pacientes");
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al obtener pacientes: " + e.getMessage());
+        } finally {
+            medicion.filas(pacientes.size());
+            medicion.terminar();
         }
         return pacientes;
     }
 
+    /**
+     * Recorre todos los pacientes en streaming, sin cargarlos en memoria
+     * Hay que cerrar el Stream (try-with-resources) para liberar la conexión
+     * @return Stream perezoso de pacientes ordenados por apellidos y nombre
+     */
+    public Stream<Paciente> flujoTodos() {
+        return FlujoResultados.abrir(
+                "SELECT * FROM pacientes ORDER BY apellidos, nombre",
+                stmt -> { },
+                MAPEO_PACIENTE,
+                "pacientes",
+                M_FLUJO_TODOS,
+                true);
+    }
+
+    /**
+     * Recorre todos los pacientes en streaming entregando cada uno al visitante
+     * @param visitante Acción a aplicar a cada paciente
+     * @return Número de pacientes recorridos o -1 si hubo un error
+     */
+    public long recorrerTodos(Consumer<Paciente> visitante) {
+        return FlujoResultados.recorrer(
+                "SELECT * FROM pacientes ORDER BY apellidos, nombre",
+                stmt -> { },
+                MAPEO_PACIENTE,
+                "pacientes",
+                visitante,
+                M_RECORRER_TODOS,
+                true);
+    }
+
     /**
      * Obtiene un paciente por su ID
      * @param idPaciente ID del paciente
@@ -84,6 +258,7 @@ public class PacienteDAO {
     public Paciente obtenerPorId(int idPaciente) {
         String sql = "SELECT * FROM pacientes WHERE id_paciente = ?";
         
+        MetricasDAO.Medicion medicion = M_OBTENER_POR_ID.iniciar();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
@@ -91,24 +266,40 @@ public class PacienteDAO {
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return mapearPaciente(rs);
+                    medicion.filas(1);
+                    return MAPEO_PACIENTE.mapear(rs);
                 }
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al obtener paciente por ID: " + e.getMessage());
+        } finally {
+            medicion.terminar();
         }
         return null;
     }
 
     /**
      * Busca pacientes por DNI
+     * Si el índice de DNI da un ID, el paciente sale de obtenerPorId (y de su caché).
+     * Un "no existe" del índice no se da por bueno: el paciente puede venir de otro
+     * puesto y aún no haber llegado con RefrescoPacientes, así que se consulta la BD
      * @param dni DNI a buscar
      * @return El paciente encontrado o null
      */
     public Paciente buscarPorDni(String dni) {
+        int id = IndiceDni.getInstancia().obtenerId(dni);
+        if (id != IndiceDni.DESCONOCIDO && id != IndiceDni.NO_EXISTE) {
+            Paciente paciente = obtenerPorId(id);
+            if (paciente != null && dni.trim().equalsIgnoreCase(paciente.getDni())) {
+                return paciente;
+            }
+        }
+        
         String sql = "SELECT * FROM pacientes WHERE dni = ?";
         
+        MetricasDAO.Medicion medicion = M_BUSCAR_POR_DNI.iniciar();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
@@ -116,46 +307,196 @@ public class PacienteDAO {
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return mapearPaciente(rs);
+                    medicion.filas(1);
+                    Paciente paciente = MAPEO_PACIENTE.mapear(rs);
+                    // El índice no lo tenía (o lo tenía con otro ID): se corrige
+                    IndiceDni.getInstancia().registrar(paciente);
+                    return paciente;
                 }
             }
+            if (id > 0) {
+                // Borrado o con otro DNI desde otro puesto
+                IndiceDni.getInstancia().eliminar(id);
+            }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al buscar paciente por DNI: " + e.getMessage());
+        } finally {
+            medicion.terminar();
         }
         return null;
     }
 
+    /**
+     * Obtiene el ID del paciente con ese DNI, sin cargar el paciente
+     * Con el índice de DNI cargado no accede a la BD: un alta hecha desde otro puesto
+     * puede no verse hasta el siguiente refresco (la clave única de dni la rechaza igual)
+     * @param dni DNI a buscar
+     * @return ID del paciente o 0 si no existe
+     */
+    public int obtenerIdPorDni(String dni) {
+        int id = IndiceDni.getInstancia().obtenerId(dni);
+        if (id != IndiceDni.DESCONOCIDO) {
+            return id;
+        }
+        
+        String sql = "SELECT id_paciente FROM pacientes WHERE dni = ?";
+        
+        MetricasDAO.Medicion medicion = M_OBTENER_ID_POR_DNI.iniciar();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, dni);
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    medicion.filas(1);
+                    return rs.getInt(1);
+                }
+            }
+            
+        } catch (SQLException e) {
+            medicion.error();
+            System.err.println("✗ Error al buscar ID por DNI: " + e.getMessage());
+        } finally {
+            medicion.terminar();
+        }
+        return 0;
+    }
+
+    /**
+     * Comprueba si ya hay un paciente con ese DNI (p. ej. antes de importar)
+     * @param dni DNI a comprobar
+     * @return true si existe
+     */
+    public boolean existeDni(String dni) {
+        return obtenerIdPorDni(dni) > 0;
+    }
+
     /**
      * Busca pacientes por nombre o apellidos
      * @param texto Texto a buscar
      * @return Lista de pacientes que coinciden
      */
     public List<Paciente> buscarPorNombre(String texto) {
+        return buscarPorNombre(texto, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Busca pacientes por nombre o apellidos sin distinguir tildes ni mayúsculas
+     * Usa el índice de trigramas si está cargado (ordenando por relevancia);
+     * si no, o si el texto es muy corto, hace la consulta LIKE
+     * @param texto Texto a buscar
+     * @param maximo Número máximo de pacientes a devolver
+     * @return Lista de pacientes que coinciden
+     */
+    public List<Paciente> buscarPorNombre(String texto, int maximo) {
+        List<Integer> ids = IndiceNombresPacientes.getInstancia().buscar(texto, maximo);
+        if (ids != null) {
+            return obtenerPorIds(ids);
+        }
+        
         List<Paciente> pacientes = new ArrayList<>();
         String sql = "SELECT * FROM pacientes " +
                      "WHERE nombre LIKE ? OR apellidos LIKE ? " +
-                     "ORDER BY apellidos, nombre";
+                     "ORDER BY apellidos, nombre LIMIT ?";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        MetricasDAO.Medicion medicion = M_BUSCAR_POR_NOMBRE.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             String patron = "%" + texto + "%";
             stmt.setString(1, patron);
             stmt.setString(2, patron);
+            stmt.setInt(3, Math.max(0, maximo));
             
             try (ResultSet rs = stmt.executeQuery()) {
+                MapeadorFila<Paciente> mapeador = MAPEO_PACIENTE.compilar(rs);
                 while (rs.next()) {
-                    pacientes.add(mapearPaciente(rs));
+                    pacientes.add(mapeador.mapear(rs));
                 }
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al buscar pacientes: " + e.getMessage());
+        } finally {
+            medicion.filas(pacientes.size());
+            medicion.terminar();
         }
         return pacientes;
     }
 
+    /**
+     * Obtiene una página de pacientes ordenados por apellidos y nombre
+     * Usa paginación por clave: el coste es el mismo en la primera página y en la última
+     * @param token Token de la página anterior o null para la primera
+     * @param tamano Número máximo de pacientes de la página
+     * @return Página de pacientes con el token de la siguiente
+     * @throws IllegalArgumentException si el token no es válido para este listado
+     */
+    public Pagina<Paciente> obtenerPagina(String token, int tamano) {
+        int limite = Math.max(1, tamano);
+        List<Paciente> pacientes = new ArrayList<>();
+        Object[] ultimo = token != null
+                ? TokenPagina.decodificar("pacientes", token, String.class, String.class, Integer.class)
+                : null;
+        
+        MetricasDAO.Medicion medicion = M_OBTENER_PAGINA.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
+             PreparedStatement stmt = conn.prepareStatement(sqlPagina(ultimo != null))) {
+            
+            int i = 1;
+            if (ultimo != null) {
+                stmt.setString(i++, (String) ultimo[0]);
+                stmt.setString(i++, (String) ultimo[0]);
+                stmt.setString(i++, (String) ultimo[1]);
+                stmt.setString(i++, (String) ultimo[1]);
+                stmt.setInt(i++, (Integer) ultimo[2]);
+            }
+            // Una fila de más para saber si hay página siguiente
+            stmt.setInt(i, limite + 1);
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                MapeadorFila<Paciente> mapeador = MAPEO_PACIENTE.compilar(rs);
+                while (rs.next()) {
+                    pacientes.add(mapeador.mapear(rs));
+                }
+            }
+            
+        } catch (SQLException e) {
+            medicion.error();
+            System.err.println("✗ Error al obtener página de pacientes: " + e.getMessage());
+            return new Pagina<>(pacientes, null);
+        } finally {
+            medicion.filas(pacientes.size());
+            medicion.terminar();
+        }
+        
+        String siguiente = null;
+        if (pacientes.size() > limite) {
+            pacientes.remove(pacientes.size() - 1);
+            Paciente ultimoPaciente = pacientes.get(pacientes.size() - 1);
+            siguiente = TokenPagina.codificar("pacientes", ultimoPaciente.getApellidos(),
+                    ultimoPaciente.getNombre(), ultimoPaciente.getIdPaciente());
+        }
+        return new Pagina<>(pacientes, siguiente);
+    }
+
+    /**
+     * SQL de una página de pacientes; el orden sale de idx_pacientes_apellidos_nombre (migración V4)
+     * @param conToken true si la página sigue a la última fila de otra
+     */
+    static String sqlPagina(boolean conToken) {
+        return "SELECT * FROM pacientes " +
+               (conToken
+                   ? "WHERE (apellidos > ? OR (apellidos = ? AND " +
+                     "(nombre > ? OR (nombre = ? AND id_paciente > ?)))) "
+                   : "") +
+               "ORDER BY apellidos, nombre, id_paciente LIMIT ?";
+    }
+
     /**
      * Actualiza los datos de un paciente
      * @param paciente Paciente con los datos actualizados
@@ -166,6 +507,7 @@ public class PacienteDAO {
                      "fecha_nacimiento = ?, telefono = ?, email = ?, direccion = ? " +
                      "WHERE id_paciente = ?";
         
+        MetricasDAO.Medicion medicion = M_ACTUALIZAR.iniciar();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
@@ -179,14 +521,22 @@ public class PacienteDAO {
             stmt.setInt(8, paciente.getIdPaciente());
             
             int filasAfectadas = stmt.executeUpdate();
+            medicion.filas(filasAfectadas);
             
             if (filasAfectadas > 0) {
+                DirectorioNombres.getInstancia().invalidarPaciente(paciente.getIdPaciente());
+                IndiceNombresPacientes.getInstancia().registrar(paciente);
+                IndiceDni.getInstancia().registrar(paciente);
+                BusCambios.getInstancia().modificacion(Entidad.PACIENTE, paciente.getIdPaciente(), paciente);
                 System.out.println("✓ Paciente actualizado: " + paciente.getNombreCompleto());
                 return true;
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al actualizar paciente: " + e.getMessage());
+        } finally {
+            medicion.terminar();
         }
         return false;
     }
@@ -199,20 +549,39 @@ public class PacienteDAO {
     public boolean eliminar(int idPaciente) {
         String sql = "DELETE FROM pacientes WHERE id_paciente = ?";
         
+        MetricasDAO.Medicion medicion = M_ELIMINAR.iniciar();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
+            // Sin claves foráneas (citas particionada) las citas asociadas se comprueban aquí
+            boolean integridad = IntegridadCitas.necesaria(conn);
+            if (integridad) {
+                conn.setAutoCommit(false);
+                IntegridadCitas.comprobarPacienteSinCitas(conn, idPaciente);
+            }
+            
             stmt.setInt(1, idPaciente);
             int filasAfectadas = stmt.executeUpdate();
+            medicion.filas(filasAfectadas);
             
             if (filasAfectadas > 0) {
+                if (integridad) {
+                    conn.commit();
+                }
+                DirectorioNombres.getInstancia().invalidarPaciente(idPaciente);
+                IndiceNombresPacientes.getInstancia().eliminar(idPaciente);
+                IndiceDni.getInstancia().eliminar(idPaciente);
+                BusCambios.getInstancia().baja(Entidad.PACIENTE, idPaciente);
                 System.out.println("✓ Paciente eliminado con ID: " + idPaciente);
                 return true;
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al eliminar paciente: " + e.getMessage());
             System.err.println("  Puede que tenga citas asociadas");
+        } finally {
+            medicion.terminar();
         }
         return false;
     }
@@ -224,41 +593,87 @@ public class PacienteDAO {
     public int contarPacientes() {
         String sql = "SELECT COUNT(*) as total FROM pacientes";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        MetricasDAO.Medicion medicion = M_CONTAR_PACIENTES.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
             if (rs.next()) {
+                medicion.filas(1);
                 return rs.getInt("total");
             }
             
         } catch (SQLException e) {
+            medicion.error();
             System.err.println("✗ Error al contar pacientes: " + e.getMessage());
+        } finally {
+            medicion.terminar();
         }
         return 0;
     }
 
     /**
-     * Mapea un ResultSet a un objeto Paciente
-     * @param rs ResultSet con los datos del paciente
-     * @return Objeto Paciente
+     * Carga los pacientes de una lista de IDs respetando su orden (ver ConsultaPorIds)
      */
-    private Paciente mapearPaciente(ResultSet rs) throws SQLException {
-        Paciente paciente = new Paciente();
-        paciente.setIdPaciente(rs.getInt("id_paciente"));
-        paciente.setDni(rs.getString("dni"));
-        paciente.setNombre(rs.getString("nombre"));
-        paciente.setApellidos(rs.getString("apellidos"));
+    private List<Paciente> obtenerPorIds(List<Integer> ids) {
+        Map<Integer, Paciente> porId = new HashMap<>();
         
-        Date fecha = rs.getDate("fecha_nacimiento");
-        if (fecha != null) {
-            paciente.setFechaNacimiento(fecha.toLocalDate());
+        MetricasDAO.Medicion medicion = M_BUSCAR_POR_NOMBRE.iniciar();
+        try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+            ConsultaPorIds.recorrer(conn, "SELECT * FROM pacientes WHERE id_paciente IN ", ids, rs -> {
+                MapeadorFila<Paciente> mapeador = MAPEO_PACIENTE.compilar(rs);
+                while (rs.next()) {
+                    Paciente paciente = mapeador.mapear(rs);
+                    porId.put(paciente.getIdPaciente(), paciente);
+                }
+            });
+        } catch (SQLException e) {
+            medicion.error();
+            System.err.println("✗ Error al obtener pacientes por ID: " + e.getMessage());
+        } finally {
+            medicion.filas(porId.size());
+            medicion.terminar();
         }
         
-        paciente.setTelefono(rs.getString("telefono"));
-        paciente.setEmail(rs.getString("email"));
-        paciente.setDireccion(rs.getString("direccion"));
-        
-        return paciente;
+        List<Paciente> pacientes = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Paciente paciente = porId.get(id);
+            if (paciente != null) {
+                pacientes.add(paciente);
+            }
+        }
+        return pacientes;
+    }
+
+    /**
+     * Asigna los parámetros de SQL_INSERTAR
+     */
+    private void asignarParametrosInsercion(PreparedStatement stmt, Paciente paciente) throws SQLException {
+        stmt.setString(1, paciente.getDni());
+        stmt.setString(2, paciente.getNombre());
+        stmt.setString(3, paciente.getApellidos());
+        stmt.setDate(4, paciente.getFechaNacimiento() != null ? Date.valueOf(paciente.getFechaNacimiento()) : null);
+        stmt.setString(5, paciente.getTelefono());
+        stmt.setString(6, paciente.getEmail());
+        stmt.setString(7, paciente.getDireccion());
+    }
+
+    private static MetricasDAO.Operacion metrica(String metodo) {
+        return MetricasDAO.operacion("PacienteDAO", metodo);
+    }
+
+    /**
+     * Construye un paciente por posición de columna (ver MAPEO_PACIENTE)
+     */
+    private static Paciente construirPaciente(ResultSet rs, int[] c) throws SQLException {
+        return new Paciente(
+                MapeadorColumnas.entero(rs, c[0]),
+                MapeadorColumnas.texto(rs, c[1]),
+                MapeadorColumnas.texto(rs, c[2]),
+                MapeadorColumnas.texto(rs, c[3]),
+                MapeadorColumnas.fecha(rs, c[4]),
+                MapeadorColumnas.texto(rs, c[5]),
+                MapeadorColumnas.texto(rs, c[6]),
+                MapeadorColumnas.texto(rs, c[7]));
     }
 }
@@ -0,0 +1,41 @@
+package com.example.gestionmedica.dao;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Página de resultados de una consulta paginada por clave (keyset)
+ * Para pedir la siguiente página se pasa el token de continuación tal cual
+ * @param <T> Tipo de los elementos
+ */
+public class Pagina<T> {
+
+    private final List<T> elementos;
+    private final String tokenSiguiente;
+
+    public Pagina(List<T> elementos, String tokenSiguiente) {
+        this.elementos = Collections.unmodifiableList(elementos);
+        this.tokenSiguiente = tokenSiguiente;
+    }
+
+    public List<T> getElementos() {
+        return elementos;
+    }
+
+    /**
+     * Token opaco para pedir la página siguiente
+     * @return Token o null si esta es la última página
+     */
+    public String getTokenSiguiente() {
+        return tokenSiguiente;
+    }
+
+    public boolean hayMas() {
+        return tokenSiguiente != null;
+    }
+
+    @Override
+    public String toString() {
+        return "Pagina{elementos=" + elementos.size() + ", hayMas=" + hayMas() + '}';
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.gestionmedica.dao;
+
+import com.example.gestionmedica.models.Cita;
+import com.example.gestionmedica.models.Cita.EstadoCita;
+import com.example.gestionmedica.utils.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refresco periódico del índice de ocupación en memoria (IndiceOcupacion)
+ *
+ * CitaDAO mantiene el índice con las escrituras de este proceso, pero no ve las
+ * de otros puestos. Cada pocos segundos se leen las citas con updated_at posterior
+ * a la última marca y las bajas de citas_eliminadas (columnas de la migración V1,
+ * índices de la V6). Como en RefrescoPacientes, las marcas salen del reloj de la BD
+ * y se solapan unos segundos: una cita puede llegar dos veces
+ *
+ * Las bajas se aplican antes que los cambios: una cita que cambia de médico deja
+ * una baja para el anterior y llega como cambio con el nuevo
+ */
+public class RefrescoCitas {
+
+    private static final Duration MARGEN = Duration.ofSeconds(5);
+    private static final String SQL_CAMBIOS =
+            "SELECT id_cita, id_medico, fecha_cita, hora_cita, estado FROM citas WHERE updated_at > ?";
+    private static final String SQL_BAJAS =
+            "SELECT id_cita, id_medico FROM citas_eliminadas WHERE eliminada_en > ?";
+
+    private static final RefrescoCitas INSTANCIA = new RefrescoCitas();
+
+    private LocalDateTime marca;
+    private ScheduledExecutorService planificador;
+
+    private RefrescoCitas() {
+    }
+
+    public static RefrescoCitas getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Toma la marca inicial y empieza a refrescar en segundo plano
+     * Llamar antes de cargar el índice: lo que cambie después de la marca llega por aquí
+     * @param intervalo Cada cuánto se refresca
+     * @return true si se pudo leer la marca
+     */
+    public synchronized boolean iniciar(Duration intervalo) {
+        if (planificador != null) {
+            return true;
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            marca = leerReloj(conn).minus(MARGEN);
+        } catch (SQLException e) {
+            System.err.println("✗ Error al iniciar el refresco del índice de ocupación: " + e.getMessage());
+            return false;
+        }
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "refresco-citas");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        planificador.scheduleWithFixedDelay(this::refrescar, intervalo.toMillis(), intervalo.toMillis(),
+                TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Detiene el refresco en segundo plano
+     */
+    public synchronized void detener() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+            planificador = null;
+        }
+    }
+
+    /**
+     * Aplica ahora mismo al índice las citas cambiadas y borradas desde la última marca
+     * @return Citas recibidas (cambios más bajas) o -1 si hubo un error o el refresco no está iniciado
+     */
+    public synchronized int refrescar() {
+        if (marca == null) {
+            return -1;
+        }
+        List<Cita> cambiadas = new ArrayList<>();
+        List<int[]> bajas = new ArrayList<>();
+        LocalDateTime ahora;
+        // Del primario: una réplica con retraso se saltaría cambios anteriores a la marca
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            ahora = leerReloj(conn);
+            try (PreparedStatement stmt = conn.prepareStatement(SQL_BAJAS)) {
+                stmt.setObject(1, marca);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        bajas.add(new int[] {rs.getInt(1), rs.getInt(2)});
+                    }
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(SQL_CAMBIOS)) {
+                stmt.setObject(1, marca);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        cambiadas.add(new Cita(rs.getInt(1), 0, rs.getInt(2), rs.getObject(3, LocalDate.class),
+                                               rs.getObject(4, LocalTime.class), null,
+                                               EstadoCita.fromString(rs.getString(5))));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Error al refrescar el índice de ocupación: " + e.getMessage());
+            return -1;
+        }
+
+        IndiceOcupacion indice = IndiceOcupacion.getInstancia();
+        for (int[] baja : bajas) {
+            indice.darDeBaja(baja[0], baja[1]);
+        }
+        for (Cita cita : cambiadas) {
+            indice.registrar(cita);
+        }
+        marca = ahora.minus(MARGEN);
+        return bajas.size() + cambiadas.size();
+    }
+
+    private static LocalDateTime leerReloj(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT NOW(3)");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getObject(1, LocalDateTime.class);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.gestionmedica.dao;
+
+import com.example.gestionmedica.models.Paciente;
+import com.example.gestionmedica.utils.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refresco periódico de los índices de pacientes en memoria (IndiceDni e IndiceNombresPacientes)
+ *
+ * PacienteDAO mantiene los índices con las escrituras de este proceso, pero no ve
+ * las de otros puestos. Cada pocos segundos se leen los pacientes con updated_at
+ * posterior a la última marca (columna de la migración V3) y se registran en los
+ * índices. Las marcas salen del reloj de la BD y se solapan unos segundos, como en
+ * CitaDAO.obtenerCambiosPorMedico: un paciente puede llegar dos veces
+ *
+ * Los pacientes borrados desde otro puesto no llegan por aquí: el índice puede dar
+ * un ID que ya no existe y PacienteDAO lo comprueba al cargar el paciente
+ */
+public class RefrescoPacientes {
+
+    private static final Duration MARGEN = Duration.ofSeconds(5);
+    private static final String SQL_CAMBIOS =
+            "SELECT id_paciente, dni, nombre, apellidos FROM pacientes WHERE updated_at > ?";
+
+    private static final RefrescoPacientes INSTANCIA = new RefrescoPacientes();
+
+    private LocalDateTime marca;
+    private ScheduledExecutorService planificador;
+
+    private RefrescoPacientes() {
+    }
+
+    public static RefrescoPacientes getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Toma la marca inicial y empieza a refrescar en segundo plano
+     * Llamar antes de cargar los índices: lo que cambie después de la marca llega por aquí
+     * @param intervalo Cada cuánto se refresca
+     * @return true si se pudo leer la marca
+     */
+    public synchronized boolean iniciar(Duration intervalo) {
+        if (planificador != null) {
+            return true;
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            marca = leerReloj(conn).minus(MARGEN);
+        } catch (SQLException e) {
+            System.err.println("✗ Error al iniciar el refresco de índices de pacientes: " + e.getMessage());
+            return false;
+        }
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "refresco-pacientes");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        planificador.scheduleWithFixedDelay(this::refrescar, intervalo.toMillis(), intervalo.toMillis(),
+                TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Detiene el refresco en segundo plano
+     */
+    public synchronized void detener() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+            planificador = null;
+        }
+    }
+
+    /**
+     * Aplica ahora mismo a los índices los pacientes cambiados desde la última marca
+     * @return Pacientes recibidos o -1 si hubo un error o el refresco no está iniciado
+     */
+    public synchronized int refrescar() {
+        if (marca == null) {
+            return -1;
+        }
+        List<Paciente> cambiados = new ArrayList<>();
+        LocalDateTime ahora;
+        // Del primario: una réplica con retraso se saltaría cambios anteriores a la marca
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            ahora = leerReloj(conn);
+            try (PreparedStatement stmt = conn.prepareStatement(SQL_CAMBIOS)) {
+                stmt.setObject(1, marca);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        cambiados.add(new Paciente(rs.getInt(1), rs.getString(2), rs.getString(3),
+                                                   rs.getString(4), null, null, null, null));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Error al refrescar los índices de pacientes: " + e.getMessage());
+            return -1;
+        }
+
+        for (Paciente paciente : cambiados) {
+            IndiceDni.getInstancia().registrar(paciente);
+            IndiceNombresPacientes.getInstancia().registrar(paciente);
+        }
+        marca = ahora.minus(MARGEN);
+        return cambiados.size();
+    }
+
+    private static LocalDateTime leerReloj(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT NOW(3)");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getObject(1, LocalDateTime.class);
+        }
+    }
+}
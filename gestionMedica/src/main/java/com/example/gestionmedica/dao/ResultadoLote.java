@@ -0,0 +1,90 @@
+package com.example.gestionmedica.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de una inserción por lotes
+ * Indica cuántas filas se insertaron y qué filas fallaron y por qué
+ * @param <T> Tipo de los elementos insertados
+ */
+public class ResultadoLote<T> {
+
+    private final int totalSolicitado;
+    private int insertados;
+    private final List<Fallo<T>> fallos = new ArrayList<>();
+
+    public ResultadoLote(int totalSolicitado) {
+        this.totalSolicitado = totalSolicitado;
+    }
+
+    void registrarInsertados(int cantidad) {
+        insertados += cantidad;
+    }
+
+    void registrarFallo(int indice, T elemento, String mensaje) {
+        fallos.add(new Fallo<>(indice, elemento, mensaje));
+    }
+
+    public int getTotalSolicitado() {
+        return totalSolicitado;
+    }
+
+    public int getInsertados() {
+        return insertados;
+    }
+
+    public List<Fallo<T>> getFallos() {
+        return Collections.unmodifiableList(fallos);
+    }
+
+    public boolean isCompleto() {
+        return fallos.isEmpty() && insertados == totalSolicitado;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoLote{" +
+                "solicitados=" + totalSolicitado +
+                ", insertados=" + insertados +
+                ", fallidos=" + fallos.size() +
+                '}';
+    }
+
+    /**
+     * Fila que no se pudo insertar
+     * @param <T> Tipo del elemento
+     */
+    public static class Fallo<T> {
+        private final int indice;
+        private final T elemento;
+        private final String mensaje;
+
+        Fallo(int indice, T elemento, String mensaje) {
+            this.indice = indice;
+            this.elemento = elemento;
+            this.mensaje = mensaje;
+        }
+
+        /**
+         * Posición del elemento en la lista original
+         */
+        public int getIndice() {
+            return indice;
+        }
+
+        public T getElemento() {
+            return elemento;
+        }
+
+        public String getMensaje() {
+            return mensaje;
+        }
+
+        @Override
+        public String toString() {
+            return "Fallo{indice=" + indice + ", mensaje='" + mensaje + "'}";
+        }
+    }
+}
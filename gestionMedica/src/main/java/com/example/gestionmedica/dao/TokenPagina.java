@@ -0,0 +1,83 @@
+package com.example.gestionmedica.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Codifica y decodifica los tokens de continuación de la paginación por clave
+ * El token guarda los valores de ordenación de la última fila entregada,
+ * precedidos por el tipo de listado para no mezclar tokens de consultas distintas
+ */
+final class TokenPagina {
+
+    private static final String SEPARADOR = "\u001F";
+
+    private TokenPagina() {
+    }
+
+    /**
+     * Crea un token con los valores de la última fila
+     * @param tipo Identificador del listado
+     * @param valores Valores de las columnas de ordenación
+     * @return Token opaco
+     */
+    static String codificar(String tipo, Object... valores) {
+        StringBuilder texto = new StringBuilder(tipo);
+        for (Object valor : valores) {
+            texto.append(SEPARADOR).append(valor);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(texto.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Recupera y convierte los valores guardados en un token
+     * Un token manipulado no llega nunca a la consulta: cualquier valor que no se
+     * pueda convertir al tipo esperado hace el token no válido
+     * @param tipo Identificador del listado esperado
+     * @param token Token recibido
+     * @param tipos Tipo de cada valor (String, Integer, LocalDate o LocalTime)
+     * @return Valores convertidos, en el mismo orden en que se codificaron
+     * @throws IllegalArgumentException si el token no es válido para este listado
+     */
+    static Object[] decodificar(String tipo, String token, Class<?>... tipos) {
+        String[] partes;
+        try {
+            String texto = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            partes = texto.split(SEPARADOR, -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Token de página no válido", e);
+        }
+        if (partes.length != tipos.length + 1 || !partes[0].equals(tipo)) {
+            throw new IllegalArgumentException("El token de página no corresponde a este listado");
+        }
+        Object[] valores = new Object[tipos.length];
+        try {
+            for (int i = 0; i < tipos.length; i++) {
+                valores[i] = convertir(partes[i + 1], tipos[i]);
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Token de página no válido", e);
+        }
+        return valores;
+    }
+
+    private static Object convertir(String valor, Class<?> tipo) {
+        if (tipo == Integer.class) {
+            return Integer.valueOf(valor);
+        }
+        if (tipo == LocalDate.class) {
+            return LocalDate.parse(valor);
+        }
+        if (tipo == LocalTime.class) {
+            return LocalTime.parse(valor);
+        }
+        if (tipo == String.class) {
+            return valor;
+        }
+        throw new IllegalStateException("Tipo no admitido en un token de página: " + tipo.getName());
+    }
+}
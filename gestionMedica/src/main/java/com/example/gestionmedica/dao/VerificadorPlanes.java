@@ -0,0 +1,232 @@
+package com.example.gestionmedica.dao;
+
+import com.example.gestionmedica.models.Cita.EstadoCita;
+import com.example.gestionmedica.utils.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * Comprueba con EXPLAIN que las consultas críticas de los DAO usan su índice
+ *
+ * Lanza EXPLAIN con el mismo SQL que los DAO y FORCE INDEX con el índice esperado,
+ * y mira la clave de la tabla y si hay filesort. Con tablas pequeñas MySQL prefiere
+ * leer la tabla entera, así que sin forzar el resultado dependería de los datos; con
+ * FORCE INDEX se comprueba que el índice sirve al filtro y al orden de la consulta.
+ * Es un fallo que el índice no exista (una migración sin aplicar o un esquema hecho
+ * a mano), que MySQL no pueda usarlo o que aun así ordene con filesort
+ *
+ * Incluye las consultas por rango de fechas, la sincronización de agendas y la
+ * paginación por clave (primera página y siguientes). Lo ejecuta VerificadorPlanesTest
+ * contra la BD de pruebas; verificar() sirve para lanzarlo a mano contra otra BD
+ */
+public class VerificadorPlanes {
+
+    private static final int ID_EJEMPLO = 1;
+    private static final int LIMITE_EJEMPLO = 50;
+
+    private static final String SQL_EXISTE_INDICE =
+            "SELECT 1 FROM information_schema.statistics " +
+            "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ? LIMIT 1";
+
+    private static final List<Plan> PLANES = List.of(
+            new Plan("citas de un médico por fechas", "citas", "c", "idx_citas_medico_fecha",
+                    CitaDAO.SELECT_CITA + CitaDAO.condicionEntre("c.id_medico = ?", true, true, true),
+                    stmt -> asignarRango(stmt, ID_EJEMPLO)),
+            new Plan("citas de un paciente por fechas", "citas", "c", "idx_citas_paciente_fecha",
+                    CitaDAO.SELECT_CITA + CitaDAO.condicionEntre("c.id_paciente = ?", true, true, true),
+                    stmt -> asignarRango(stmt, ID_EJEMPLO)),
+            new Plan("citas por estado y fechas", "citas", "c", "idx_citas_estado_fecha",
+                    CitaDAO.SELECT_CITA + CitaDAO.condicionEntre("c.estado = ?", true, true, true),
+                    stmt -> asignarRango(stmt, EstadoCita.PROGRAMADA.getValor())),
+            new Plan("cambios de la agenda de un médico", "citas", "c", "idx_citas_medico_actualizada",
+                    CitaDAO.SELECT_CITA + CitaDAO.CONDICION_CAMBIOS_MEDICO,
+                    VerificadorPlanes::asignarMarca),
+            new Plan("bajas de la agenda de un médico", "citas_eliminadas", "citas_eliminadas",
+                    "idx_eliminadas_medico_fecha",
+                    CitaDAO.SQL_BAJAS_MEDICO,
+                    VerificadorPlanes::asignarMarca),
+            new Plan("primera página de citas", "citas", "c", "idx_citas_fecha_hora",
+                    CitaDAO.sqlPagina(null, false),
+                    stmt -> stmt.setInt(1, LIMITE_EJEMPLO)),
+            new Plan("página siguiente de citas", "citas", "c", "idx_citas_fecha_hora",
+                    CitaDAO.sqlPagina(null, true),
+                    stmt -> asignarPaginaCitas(stmt, 1)),
+            new Plan("página siguiente de citas por estado", "citas", "c", "idx_citas_estado_fecha",
+                    CitaDAO.sqlPagina("c.estado = ?", true),
+                    stmt -> {
+                        stmt.setString(1, EstadoCita.PROGRAMADA.getValor());
+                        asignarPaginaCitas(stmt, 2);
+                    }),
+            new Plan("página siguiente de citas de un médico", "citas", "c", "idx_citas_medico_fecha",
+                    CitaDAO.sqlPagina("c.id_medico = ?", true),
+                    stmt -> {
+                        stmt.setInt(1, ID_EJEMPLO);
+                        asignarPaginaCitas(stmt, 2);
+                    }),
+            new Plan("primera página de pacientes", "pacientes", "pacientes", "idx_pacientes_apellidos_nombre",
+                    PacienteDAO.sqlPagina(false),
+                    stmt -> stmt.setInt(1, LIMITE_EJEMPLO)),
+            new Plan("página siguiente de pacientes", "pacientes", "pacientes", "idx_pacientes_apellidos_nombre",
+                    PacienteDAO.sqlPagina(true),
+                    VerificadorPlanes::asignarPaginaPacientes));
+
+    /**
+     * Comprueba todos los planes y escribe el resultado de cada uno
+     * @return true si todos los planes usan su índice sin filesort
+     */
+    public boolean verificar() {
+        int fallos = 0;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            for (Plan plan : PLANES) {
+                if (!verificar(conn, plan)) {
+                    fallos++;
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Error al verificar los planes de consulta: " + e.getMessage());
+            return false;
+        }
+        if (fallos == 0) {
+            System.out.println("✓ Planes de consulta verificados (" + PLANES.size() + ")");
+        }
+        return fallos == 0;
+    }
+
+    /**
+     * Consultas que se comprueban
+     */
+    static List<Plan> planes() {
+        return PLANES;
+    }
+
+    /**
+     * Comprueba un plan
+     * @return true si con su índice forzado lo usa y no ordena con filesort
+     */
+    static boolean verificar(Connection conn, Plan plan) throws SQLException {
+        if (!existeIndice(conn, plan.tabla, plan.indice)) {
+            System.err.println("✗ Falta el índice " + plan.indice + " para " + plan.descripcion +
+                               " (¿migraciones sin aplicar?)");
+            return false;
+        }
+        String sql = plan.sqlConIndice();
+        if (sql == null) {
+            System.err.println("✗ " + plan.descripcion + ": no se encuentra la tabla " + plan.tabla + " en el SQL");
+            return false;
+        }
+        String clave = null;
+        boolean filesort = false;
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sql)) {
+            plan.parametros.asignar(stmt);
+            try (ResultSet rs = stmt.executeQuery()) {
+                // Con JOIN hay una fila por tabla; el filesort sale en la primera que se lee
+                while (rs.next()) {
+                    if (plan.alias.equals(rs.getString("table"))) {
+                        clave = rs.getString("key");
+                    }
+                    String extra = rs.getString("Extra");
+                    filesort |= extra != null && extra.contains("Using filesort");
+                }
+            }
+        }
+
+        if (!plan.indice.equals(clave)) {
+            System.err.println("✗ " + plan.descripcion + " no puede usar " + plan.indice + " (MySQL usa " +
+                               (clave != null ? clave : "la tabla entera") + ")");
+            return false;
+        }
+        if (filesort) {
+            System.err.println("✗ " + plan.descripcion + " usa " + plan.indice + " pero ordena con filesort");
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean existeIndice(Connection conn, String tabla, String indice) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_EXISTE_INDICE)) {
+            stmt.setString(1, tabla);
+            stmt.setString(2, indice);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static void asignarRango(PreparedStatement stmt, Object valor) throws SQLException {
+        stmt.setObject(1, valor);
+        stmt.setDate(2, Date.valueOf(LocalDate.now().minusYears(1)));
+        stmt.setDate(3, Date.valueOf(LocalDate.now()));
+        stmt.setInt(4, LIMITE_EJEMPLO);
+    }
+
+    private static void asignarPaginaCitas(PreparedStatement stmt, int primero) throws SQLException {
+        Date fecha = Date.valueOf(LocalDate.now());
+        Time hora = Time.valueOf(LocalTime.NOON);
+        stmt.setDate(primero, fecha);
+        stmt.setDate(primero + 1, fecha);
+        stmt.setTime(primero + 2, hora);
+        stmt.setTime(primero + 3, hora);
+        stmt.setInt(primero + 4, ID_EJEMPLO);
+        stmt.setInt(primero + 5, LIMITE_EJEMPLO);
+    }
+
+    private static void asignarPaginaPacientes(PreparedStatement stmt) throws SQLException {
+        stmt.setString(1, "M");
+        stmt.setString(2, "M");
+        stmt.setString(3, "M");
+        stmt.setString(4, "M");
+        stmt.setInt(5, ID_EJEMPLO);
+        stmt.setInt(6, LIMITE_EJEMPLO);
+    }
+
+    private static void asignarMarca(PreparedStatement stmt) throws SQLException {
+        stmt.setInt(1, ID_EJEMPLO);
+        stmt.setObject(2, LocalDateTime.now().minusDays(1));
+    }
+
+    /**
+     * Una consulta y el índice que debería usar
+     */
+    static final class Plan {
+        final String descripcion;
+        final String tabla;
+        // Nombre de la tabla en la columna table de EXPLAIN
+        final String alias;
+        final String indice;
+        final String sql;
+        final FlujoResultados.AsignadorParametros parametros;
+
+        Plan(String descripcion, String tabla, String alias, String indice, String sql,
+             FlujoResultados.AsignadorParametros parametros) {
+            this.descripcion = descripcion;
+            this.tabla = tabla;
+            this.alias = alias;
+            this.indice = indice;
+            this.sql = sql;
+            this.parametros = parametros;
+        }
+
+        /**
+         * SQL con FORCE INDEX tras la tabla
+         * @return SQL o null si no aparece "FROM tabla alias"
+         */
+        String sqlConIndice() {
+            String desde = "FROM " + tabla + (alias.equals(tabla) ? "" : " " + alias) + " ";
+            int posicion = sql.indexOf(desde);
+            if (posicion < 0) {
+                return null;
+            }
+            int fin = posicion + desde.length();
+            return sql.substring(0, fin) + "FORCE INDEX (" + indice + ") " + sql.substring(fin);
+        }
+    }
+}
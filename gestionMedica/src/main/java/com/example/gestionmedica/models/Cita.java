@@ -2,6 +2,9 @@ package com.example.gestionmedica.models;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Clase que representa una Cita médica en el sistema
@@ -38,13 +41,25 @@ public class Cita {
             return valor;
         }
 
+        // Búsqueda por valor precalculada (se llama una vez por fila leída)
+        private static final Map<String, EstadoCita> POR_VALOR = new HashMap<>();
+
+        static {
+            for (EstadoCita estado : values()) {
+                POR_VALOR.put(estado.valor, estado);
+            }
+        }
+
         public static EstadoCita fromString(String texto) {
-            for (EstadoCita estado : EstadoCita.values()) {
-                if (estado.valor.equalsIgnoreCase(texto)) {
-                    return estado;
-                }
+            if (texto == null) {
+                return PROGRAMADA; // Por defecto
+            }
+            EstadoCita estado = POR_VALOR.get(texto);
+            if (estado == null) {
+                // La BD guarda el valor en minúsculas; otras grafías pasan por aquí
+                estado = POR_VALOR.get(texto.toLowerCase(Locale.ROOT));
             }
-            return PROGRAMADA; // Por defecto
+            return estado != null ? estado : PROGRAMADA;
         }
     }
 
@@ -0,0 +1,55 @@
+package com.example.gestionmedica.models;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Hueco libre en la agenda de un médico
+ * No se guarda en la BD: lo devuelve el buscador de huecos
+ */
+public class Hueco {
+
+    private final int idMedico;
+    private final String nombreMedico;
+    private final LocalDate fecha;
+    private final LocalTime hora;
+    private final int duracionMinutos;
+
+    public Hueco(int idMedico, String nombreMedico, LocalDate fecha, LocalTime hora, int duracionMinutos) {
+        this.idMedico = idMedico;
+        this.nombreMedico = nombreMedico;
+        this.fecha = fecha;
+        this.hora = hora;
+        this.duracionMinutos = duracionMinutos;
+    }
+
+    public int getIdMedico() {
+        return idMedico;
+    }
+
+    public String getNombreMedico() {
+        return nombreMedico;
+    }
+
+    public LocalDate getFecha() {
+        return fecha;
+    }
+
+    public LocalTime getHora() {
+        return hora;
+    }
+
+    public int getDuracionMinutos() {
+        return duracionMinutos;
+    }
+
+    @Override
+    public String toString() {
+        return "Hueco{" +
+                "fecha=" + fecha +
+                ", hora=" + hora +
+                ", medico='" + nombreMedico + '\'' +
+                ", duracion=" + duracionMinutos + " min" +
+                '}';
+    }
+}
@@ -13,10 +13,17 @@ public class Usuario {
     }
 
     // getters/setters...
+    public int getId() { return id; }
+    public String getUsername() { return username; }
     public String getRol() { return rol; }
     public String getNombre() { return nombre; }
     public boolean isActivo() { return activo; }
 
+    public void setId(int id) {
+        this.id = id;
+    }
+
     public void setActivo(boolean activo) {
+        this.activo = activo;
     }
 }
@@ -0,0 +1,149 @@
+package com.example.gestionmedica.services;
+
+import com.example.gestionmedica.dao.CitaDAO;
+import com.example.gestionmedica.dao.MedicoDAO;
+import com.example.gestionmedica.dao.PacienteDAO;
+import com.example.gestionmedica.models.Usuario;
+import javafx.application.Platform;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Fachada asíncrona sobre los DAO para no bloquear el hilo de JavaFX
+ *
+ * Cada llamada se ejecuta en un hilo virtual y el CompletableFuture devuelto se
+ * completa en el hilo de JavaFX (Platform.runLater), así que en thenAccept,
+ * exceptionally, etc. se puede tocar la interfaz directamente.
+ * Cancelar el futuro o superar el timeout interrumpe el hilo virtual
+ *
+ * Uso: accesoDatos.citas(dao -> dao.obtenerCitasDeHoy()).thenAccept(tabla::setItems);
+ */
+public class AccesoDatosAsync {
+
+    public static final Duration TIMEOUT_DEFECTO = Duration.ofSeconds(15);
+
+    // Un hilo virtual por llamada: esperar a MySQL no ocupa hilos de plataforma
+    private static final ExecutorService HILOS_VIRTUALES = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Executor entrega;
+    private final CitaDAO citaDAO = new CitaDAO();
+    private final PacienteDAO pacienteDAO = new PacienteDAO();
+    private final MedicoDAO medicoDAO = new MedicoDAO();
+
+    /**
+     * Fachada que entrega los resultados en el hilo de JavaFX
+     */
+    public AccesoDatosAsync() {
+        this(Platform::runLater);
+    }
+
+    /**
+     * Fachada que entrega los resultados con otro ejecutor (p. ej. fuera de la UI)
+     * @param entrega Ejecutor en el que se completan los futuros devueltos
+     */
+    public AccesoDatosAsync(Executor entrega) {
+        this.entrega = entrega;
+    }
+
+    /**
+     * Login sin bloquear la interfaz
+     * @param username Usuario
+     * @param password Contraseña
+     * @return Futuro con el usuario o null si las credenciales no son válidas
+     */
+    public CompletableFuture<Usuario> login(String username, String password) {
+        return ejecutar(() -> ServicioLogin.getInstancia().login(username, password), TIMEOUT_DEFECTO);
+    }
+
+    /**
+     * Ejecuta una operación de CitaDAO en segundo plano
+     * @param operacion Operación a ejecutar con el DAO
+     * @return Futuro con el resultado
+     */
+    public <T> CompletableFuture<T> citas(Function<CitaDAO, T> operacion) {
+        return citas(operacion, TIMEOUT_DEFECTO);
+    }
+
+    public <T> CompletableFuture<T> citas(Function<CitaDAO, T> operacion, Duration timeout) {
+        return ejecutar(() -> operacion.apply(citaDAO), timeout);
+    }
+
+    /**
+     * Ejecuta una operación de PacienteDAO en segundo plano
+     * @param operacion Operación a ejecutar con el DAO
+     * @return Futuro con el resultado
+     */
+    public <T> CompletableFuture<T> pacientes(Function<PacienteDAO, T> operacion) {
+        return pacientes(operacion, TIMEOUT_DEFECTO);
+    }
+
+    public <T> CompletableFuture<T> pacientes(Function<PacienteDAO, T> operacion, Duration timeout) {
+        return ejecutar(() -> operacion.apply(pacienteDAO), timeout);
+    }
+
+    /**
+     * Ejecuta una operación de MedicoDAO en segundo plano
+     * @param operacion Operación a ejecutar con el DAO
+     * @return Futuro con el resultado
+     */
+    public <T> CompletableFuture<T> medicos(Function<MedicoDAO, T> operacion) {
+        return medicos(operacion, TIMEOUT_DEFECTO);
+    }
+
+    public <T> CompletableFuture<T> medicos(Function<MedicoDAO, T> operacion, Duration timeout) {
+        return ejecutar(() -> operacion.apply(medicoDAO), timeout);
+    }
+
+    /**
+     * Ejecuta una tarea en un hilo virtual con timeout y entrega el resultado
+     * @param tarea Tarea bloqueante (normalmente una llamada a un DAO)
+     * @param timeout Tiempo máximo; al superarlo el futuro falla con TimeoutException
+     * @return Futuro que se completa en el ejecutor de entrega
+     */
+    public <T> CompletableFuture<T> ejecutar(Supplier<T> tarea, Duration timeout) {
+        CompletableFuture<T> enSegundoPlano = new CompletableFuture<>();
+        Future<?> hilo = HILOS_VIRTUALES.submit(() -> {
+            try {
+                enSegundoPlano.complete(tarea.get());
+            } catch (Throwable t) {
+                enSegundoPlano.completeExceptionally(t);
+            }
+        });
+        enSegundoPlano.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        // Cancelación o timeout: interrumpir el hilo virtual que sigue trabajando
+        enSegundoPlano.whenComplete((resultado, error) -> {
+            if (error != null) {
+                hilo.cancel(true);
+            }
+        });
+
+        CompletableFuture<T> entregado = new CompletableFuture<>();
+        enSegundoPlano.whenCompleteAsync((resultado, error) -> {
+            if (error == null) {
+                entregado.complete(resultado);
+            } else {
+                entregado.completeExceptionally(desenvolver(error));
+            }
+        }, entrega);
+        entregado.whenComplete((resultado, error) -> {
+            if (error instanceof CancellationException) {
+                enSegundoPlano.cancel(true);
+            }
+        });
+        return entregado;
+    }
+
+    private static Throwable desenvolver(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
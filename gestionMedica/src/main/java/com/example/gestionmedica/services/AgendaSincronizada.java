@@ -0,0 +1,103 @@
+package com.example.gestionmedica.services;
+
+import com.example.gestionmedica.dao.CambiosAgenda;
+import com.example.gestionmedica.dao.CitaDAO;
+import com.example.gestionmedica.models.Cita;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copia local de la agenda de un médico que se refresca trayendo solo lo cambiado
+ *
+ * La primera sincronización trae todas las citas; las siguientes solo las
+ * creadas o modificadas y los IDs de las eliminadas desde la última marca
+ * (CitaDAO.obtenerCambiosPorMedico). Aplicar los cambios es idempotente, así que
+ * el solape entre sincronizaciones no duplica nada
+ */
+public class AgendaSincronizada {
+
+    // Mismo orden que CitaDAO.obtenerPorMedico: más recientes primero
+    private static final Comparator<Cita> MAS_RECIENTES_PRIMERO = Comparator
+            .comparing(Cita::getFechaCita, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Cita::getHoraCita, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Cita::getIdCita, Comparator.reverseOrder());
+
+    private final int idMedico;
+    private final CitaDAO citaDAO;
+    // Solo una sincronización a la vez; las lecturas no esperan a la BD
+    private final Object sincronizando = new Object();
+
+    private final Map<Integer, Cita> citas = new HashMap<>();
+    private LocalDateTime marca;
+
+    public AgendaSincronizada(int idMedico) {
+        this(idMedico, new CitaDAO());
+    }
+
+    AgendaSincronizada(int idMedico, CitaDAO citaDAO) {
+        this.idMedico = idMedico;
+        this.citaDAO = citaDAO;
+    }
+
+    /**
+     * Trae los cambios desde la última sincronización y los aplica
+     * @return Citas recibidas (cambiadas más eliminadas) o -1 si hubo un error
+     */
+    public int sincronizar() {
+        synchronized (sincronizando) {
+            CambiosAgenda cambios = citaDAO.obtenerCambiosPorMedico(idMedico, getMarca());
+            if (cambios == null) {
+                return -1;
+            }
+            synchronized (this) {
+                if (cambios.isCompleta()) {
+                    citas.clear();
+                }
+                // Primero las bajas: si una cita volvió a este médico también llega como cambiada
+                for (Integer id : cambios.getEliminadas()) {
+                    citas.remove(id);
+                }
+                for (Cita cita : cambios.getCambiadas()) {
+                    citas.put(cita.getIdCita(), cita);
+                }
+                marca = cambios.getMarca();
+            }
+            return cambios.getCambiadas().size() + cambios.getEliminadas().size();
+        }
+    }
+
+    /**
+     * Citas de la copia local, de la más reciente a la más antigua
+     * @return Lista nueva (las citas son las de la copia: no modificarlas)
+     */
+    public synchronized List<Cita> getCitas() {
+        List<Cita> lista = new ArrayList<>(citas.values());
+        lista.sort(MAS_RECIENTES_PRIMERO);
+        return lista;
+    }
+
+    public synchronized Cita getCita(int idCita) {
+        return citas.get(idCita);
+    }
+
+    public synchronized int getTamano() {
+        return citas.size();
+    }
+
+    /**
+     * Marca de la última sincronización
+     * @return Marca o null si aún no se ha sincronizado
+     */
+    public synchronized LocalDateTime getMarca() {
+        return marca;
+    }
+
+    public int getIdMedico() {
+        return idMedico;
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.gestionmedica.services;
+
+import com.example.gestionmedica.dao.IndiceOcupacion;
+import com.example.gestionmedica.dao.MedicoDAO;
+import com.example.gestionmedica.dao.RefrescoCitas;
+import com.example.gestionmedica.models.Hueco;
+import com.example.gestionmedica.models.Medico;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Buscador de los primeros huecos libres entre todos los médicos de una especialidad
+ *
+ * No consulta la base de datos por médico ni por día: los médicos salen de la caché
+ * de MedicoDAO y la ocupación del índice en memoria (IndiceOcupacion). Antes de cada
+ * búsqueda el índice recoge lo que han cambiado otros puestos (RefrescoCitas), con
+ * una sola consulta por la marca de tiempo. Cada día de cada médico se recorre una
+ * sola vez sobre su mapa de bits, saltando directamente detrás de la última cita
+ * que bloquea el hueco candidato
+ *
+ * Las citas existentes no guardan duración: se supone que todas ocupan
+ * duracionCitaExistente minutos desde su hora de inicio
+ */
+public class BuscadorHuecos {
+
+    public static final int DURACION_CITA_DEFECTO = 30;
+
+    private static final Comparator<Hueco> ORDEN_HUECOS = Comparator
+            .comparing(Hueco::getHora)
+            .thenComparingInt(Hueco::getIdMedico);
+
+    private final MedicoDAO medicoDAO = new MedicoDAO();
+    private final IndiceOcupacion indice = IndiceOcupacion.getInstancia();
+    private final Map<Integer, PlantillaHorario> plantillas = new ConcurrentHashMap<>();
+    private final int duracionCitaExistente;
+    private volatile PlantillaHorario plantillaDefecto = PlantillaHorario.porDefecto();
+
+    public BuscadorHuecos() {
+        this(DURACION_CITA_DEFECTO);
+    }
+
+    /**
+     * @param duracionCitaExistente Minutos que se considera que ocupa cada cita ya dada
+     */
+    public BuscadorHuecos(int duracionCitaExistente) {
+        if (duracionCitaExistente <= 0) {
+            throw new IllegalArgumentException("La duración de las citas debe ser positiva");
+        }
+        this.duracionCitaExistente = duracionCitaExistente;
+    }
+
+    /**
+     * Asigna un horario de consulta propio a un médico
+     * @param idMedico ID del médico
+     * @param plantilla Horario semanal (null para volver al horario por defecto)
+     */
+    public void setPlantilla(int idMedico, PlantillaHorario plantilla) {
+        if (plantilla == null) {
+            plantillas.remove(idMedico);
+        } else {
+            plantillas.put(idMedico, plantilla);
+        }
+    }
+
+    /**
+     * Horario de los médicos que no tienen uno propio
+     * @param plantilla Horario semanal
+     */
+    public void setPlantillaDefecto(PlantillaHorario plantilla) {
+        this.plantillaDefecto = plantilla;
+    }
+
+    /**
+     * Busca los primeros huecos libres sin restricciones adicionales
+     * @see #buscar(String, LocalDate, LocalDate, int, int, RestriccionesHueco)
+     */
+    public List<Hueco> buscar(String especialidad, LocalDate desde, LocalDate hasta,
+                              int duracionMinutos, int maximo) {
+        return buscar(especialidad, desde, hasta, duracionMinutos, maximo, new RestriccionesHueco());
+    }
+
+    /**
+     * Busca los primeros huecos libres entre los médicos de una especialidad
+     * @param especialidad Especialidad (como en MedicoDAO.obtenerEspecialidades)
+     * @param desde Primer día (los días pasados se ignoran)
+     * @param hasta Último día (incluido)
+     * @param duracionMinutos Duración de la cita que se quiere dar
+     * @param maximo Número máximo de huecos a devolver
+     * @param restricciones Franja horaria, días excluidos y paso entre horas candidatas
+     * @return Huecos ordenados por fecha, hora y médico (lista vacía si no hay o hay error)
+     */
+    public List<Hueco> buscar(String especialidad, LocalDate desde, LocalDate hasta,
+                              int duracionMinutos, int maximo, RestriccionesHueco restricciones) {
+        List<Hueco> huecos = new ArrayList<>();
+        if (maximo <= 0 || duracionMinutos <= 0 || especialidad == null) {
+            return huecos;
+        }
+
+        List<Medico> medicos = new ArrayList<>();
+        for (Medico medico : medicoDAO.obtenerTodos()) {
+            if (especialidad.equalsIgnoreCase(medico.getEspecialidad())) {
+                medicos.add(medico);
+            }
+        }
+        if (medicos.isEmpty()) {
+            return huecos;
+        }
+        medicos.sort(Comparator.comparingInt(Medico::getIdMedico));
+
+        LocalDate hoy = LocalDate.now();
+        LocalDate inicio = desde.isBefore(hoy) ? hoy : desde;
+        if (!indice.asegurarCargado(inicio)) {
+            System.err.println("✗ No se pudo cargar la ocupación para buscar huecos");
+            return huecos;
+        }
+        // Sin refresco (esquema sin migrar) el índice solo tiene lo de este puesto;
+        // la clave uq_medico_fecha_hora sigue impidiendo dar dos veces la misma hora
+        RefrescoCitas.getInstancia().refrescar();
+
+        int minutoMinimo = minutoDe(restricciones.getHoraMinima());
+        int minutoMaximo = restricciones.getHoraMaxima() == null
+                ? IndiceOcupacion.MINUTOS_DIA : minutoDe(restricciones.getHoraMaxima());
+        int minutoAhora = minutoDe(LocalTime.now()) + 1;
+        long[] bits = new long[IndiceOcupacion.PALABRAS_DIA];
+        List<Hueco> delDia = new ArrayList<>();
+
+        for (LocalDate fecha = inicio; !fecha.isAfter(hasta) && huecos.size() < maximo; fecha = fecha.plusDays(1)) {
+            if (restricciones.getDiasExcluidos().contains(fecha.getDayOfWeek())) {
+                continue;
+            }
+            int restantes = maximo - huecos.size();
+            int minimoDelDia = fecha.equals(hoy) ? Math.max(minutoMinimo, minutoAhora) : minutoMinimo;
+
+            delDia.clear();
+            for (Medico medico : medicos) {
+                PlantillaHorario plantilla = plantillas.getOrDefault(medico.getIdMedico(), plantillaDefecto);
+                int[][] tramos = plantilla.tramos(fecha.getDayOfWeek());
+                if (tramos.length == 0) {
+                    continue;
+                }
+                boolean hayCitas = indice.copiarDia(medico.getIdMedico(), fecha, bits);
+                recorrerDia(medico, fecha, tramos, hayCitas ? bits : null, minimoDelDia, minutoMaximo,
+                            duracionMinutos, restricciones.getPasoMinutos(), restantes, delDia);
+            }
+
+            // Cada médico aporta como mucho 'restantes' huecos, así que los primeros del día están aquí
+            delDia.sort(ORDEN_HUECOS);
+            for (int i = 0; i < delDia.size() && huecos.size() < maximo; i++) {
+                huecos.add(delDia.get(i));
+            }
+        }
+
+        System.out.println("✓ Se encontraron " + huecos.size() + " huecos de " + especialidad);
+        return huecos;
+    }
+
+    /**
+     * Recorre los tramos de un día de un médico y añade sus primeros huecos libres
+     * @param bits Ocupación del día o null si no tiene citas
+     */
+    private void recorrerDia(Medico medico, LocalDate fecha, int[][] tramos, long[] bits,
+                             int minimo, int maximo, int duracion, int paso, int limite, List<Hueco> destino) {
+        int encontrados = 0;
+        for (int[] tramo : tramos) {
+            int origen = tramo[0];
+            int fin = Math.min(tramo[1], maximo);
+            int t = alinear(Math.max(origen, minimo), origen, paso);
+
+            while (t + duracion <= fin && encontrados < limite) {
+                // Bloquea el hueco cualquier cita que empiece en (t - duracionCitaExistente, t + duracion)
+                int bloqueo = bits == null ? -1 : ultimoOcupado(bits, t - duracionCitaExistente + 1, t + duracion);
+                if (bloqueo < 0) {
+                    destino.add(new Hueco(medico.getIdMedico(), medico.getNombreCompleto(), fecha,
+                                          LocalTime.of(t / 60, t % 60), duracion));
+                    encontrados++;
+                    t += paso;
+                } else {
+                    // Ningún inicio anterior a bloqueo + duracionCitaExistente puede estar libre
+                    t = alinear(Math.max(t + paso, bloqueo + duracionCitaExistente), origen, paso);
+                }
+            }
+        }
+    }
+
+    /**
+     * Último minuto ocupado en [desde, hasta) o -1 si el rango está libre
+     */
+    private static int ultimoOcupado(long[] bits, int desde, int hasta) {
+        desde = Math.max(0, desde);
+        hasta = Math.min(IndiceOcupacion.MINUTOS_DIA, hasta);
+        if (desde >= hasta) {
+            return -1;
+        }
+        int primera = desde >>> 6;
+        int ultima = (hasta - 1) >>> 6;
+        for (int p = ultima; p >= primera; p--) {
+            long palabra = bits[p];
+            if (p == primera) {
+                palabra &= -1L << (desde & 63);
+            }
+            if (p == ultima) {
+                palabra &= -1L >>> (63 - ((hasta - 1) & 63));
+            }
+            if (palabra != 0) {
+                return (p << 6) + 63 - Long.numberOfLeadingZeros(palabra);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Primer minuto >= minuto que cae en la rejilla origen + k * paso
+     */
+    private static int alinear(int minuto, int origen, int paso) {
+        int desfase = Math.floorMod(minuto - origen, paso);
+        return desfase == 0 ? minuto : minuto + paso - desfase;
+    }
+
+    private static int minutoDe(LocalTime hora) {
+        return hora.getHour() * 60 + hora.getMinute();
+    }
+}
@@ -0,0 +1,312 @@
+package com.example.gestionmedica.services;
+
+import com.example.gestionmedica.dao.CitaDAO;
+import com.example.gestionmedica.dao.FiltroCitas;
+import com.example.gestionmedica.models.Cita;
+import com.example.gestionmedica.models.Cita.EstadoCita;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Almacén columnar de citas para análisis
+ *
+ * En lugar de un objeto Cita por fila guarda una array primitiva por columna:
+ * IDs en int, la fecha como día desde 1970 (int), la hora como minuto del día (short),
+ * el estado como ordinal (byte) y el motivo como código de un diccionario (int).
+ * Son unos 23 bytes por cita: un millón de citas ocupa unos 23 MB
+ *
+ * Las consultas son bucles simples sobre las arrays, sin objetos ni saltos
+ * difíciles de predecir, así que recorren millones de filas en milisegundos.
+ * Una vez cargado no cambia; para ver datos nuevos hay que volver a cargarlo
+ */
+public class CitaColumns {
+
+    public static final int SIN_MOTIVO = -1;
+
+    private static final EstadoCita[] ESTADOS = EstadoCita.values();
+
+    private int tamano;
+    private int[] idCita;
+    private int[] idPaciente;
+    private int[] idMedico;
+    private int[] dia;
+    private short[] minuto;
+    private byte[] estado;
+    private int[] motivo;
+
+    private String[] diccionario = new String[64];
+    private int numeroMotivos;
+    // Solo durante la construcción
+    private Map<String, Integer> codigos = new HashMap<>();
+
+    private CitaColumns(int capacidad) {
+        int c = Math.max(16, capacidad);
+        idCita = new int[c];
+        idPaciente = new int[c];
+        idMedico = new int[c];
+        dia = new int[c];
+        minuto = new short[c];
+        estado = new byte[c];
+        motivo = new int[c];
+    }
+
+    /**
+     * Carga las citas del filtro leyéndolas en streaming (sin crear objetos Cita)
+     * @param filtro Citas a cargar (p. ej. el último año)
+     * @return Almacén cargado o null si hubo un error
+     */
+    public static CitaColumns cargar(FiltroCitas filtro) {
+        CitaColumns columnas = new CitaColumns(1_024);
+        long filas = new CitaDAO().recorrerColumnas(filtro, rs -> {
+            LocalDate fecha = rs.getObject(4, LocalDate.class);
+            LocalTime hora = rs.getObject(5, LocalTime.class);
+            if (fecha != null && hora != null) {
+                columnas.agregar(rs.getInt(1), rs.getInt(2), rs.getInt(3), (int) fecha.toEpochDay(),
+                        hora.getHour() * 60 + hora.getMinute(), EstadoCita.fromString(rs.getString(7)), rs.getString(6));
+            }
+            return null;
+        });
+        if (filas < 0) {
+            return null;
+        }
+        columnas.recortar();
+        System.out.println("✓ Almacén columnar cargado: " + columnas.tamano + " citas, " +
+                           columnas.numeroMotivos + " motivos distintos, " +
+                           columnas.getBytesAproximados() / 1024 + " KB");
+        return columnas;
+    }
+
+    /**
+     * Construye el almacén a partir de citas ya cargadas
+     * @param citas Citas
+     * @return Almacén con esas citas
+     */
+    public static CitaColumns desde(Iterable<Cita> citas) {
+        CitaColumns columnas = new CitaColumns(1_024);
+        for (Cita cita : citas) {
+            if (cita.getFechaCita() != null && cita.getHoraCita() != null) {
+                columnas.agregar(cita.getIdCita(), cita.getIdPaciente(), cita.getIdMedico(),
+                        (int) cita.getFechaCita().toEpochDay(),
+                        cita.getHoraCita().getHour() * 60 + cita.getHoraCita().getMinute(),
+                        cita.getEstado(), cita.getMotivo());
+            }
+        }
+        columnas.recortar();
+        return columnas;
+    }
+
+    // ==================== Consultas ====================
+
+    public int getTamano() {
+        return tamano;
+    }
+
+    /**
+     * Cuenta las citas de un rango de fechas, opcionalmente de un médico y un estado
+     * @param desde Primer día (incluido)
+     * @param hasta Último día (incluido)
+     * @param idMedicoFiltro ID del médico o 0 para todos
+     * @param estadoFiltro Estado o null para todos
+     * @return Número de citas
+     */
+    public int contar(LocalDate desde, LocalDate hasta, int idMedicoFiltro, EstadoCita estadoFiltro) {
+        int d0 = (int) desde.toEpochDay();
+        int d1 = (int) hasta.toEpochDay();
+        boolean todosMedicos = idMedicoFiltro <= 0;
+        boolean todosEstados = estadoFiltro == null;
+        int e = todosEstados ? 0 : estadoFiltro.ordinal();
+        int total = 0;
+        for (int i = 0; i < tamano; i++) {
+            boolean coincide = dia[i] >= d0 & dia[i] <= d1
+                    & (todosMedicos | idMedico[i] == idMedicoFiltro)
+                    & (todosEstados | estado[i] == e);
+            total += coincide ? 1 : 0;
+        }
+        return total;
+    }
+
+    /**
+     * Citas por estado en un rango de fechas
+     * @return Array indexada por EstadoCita.ordinal()
+     */
+    public int[] contarPorEstado(LocalDate desde, LocalDate hasta) {
+        int d0 = (int) desde.toEpochDay();
+        int d1 = (int) hasta.toEpochDay();
+        int[] conteo = new int[ESTADOS.length];
+        for (int i = 0; i < tamano; i++) {
+            conteo[estado[i]] += (dia[i] >= d0 & dia[i] <= d1) ? 1 : 0;
+        }
+        return conteo;
+    }
+
+    /**
+     * Citas por hora del día en un rango de fechas (sin contar las canceladas)
+     * @return Array de 24 posiciones
+     */
+    public int[] contarPorHora(LocalDate desde, LocalDate hasta) {
+        int d0 = (int) desde.toEpochDay();
+        int d1 = (int) hasta.toEpochDay();
+        int cancelada = EstadoCita.CANCELADA.ordinal();
+        int[] conteo = new int[24];
+        for (int i = 0; i < tamano; i++) {
+            conteo[minuto[i] / 60] += (dia[i] >= d0 & dia[i] <= d1 & estado[i] != cancelada) ? 1 : 0;
+        }
+        return conteo;
+    }
+
+    /**
+     * Citas por médico en un rango de fechas
+     * @return Mapa de ID de médico a número de citas
+     */
+    public Map<Integer, Integer> contarPorMedico(LocalDate desde, LocalDate hasta) {
+        int d0 = (int) desde.toEpochDay();
+        int d1 = (int) hasta.toEpochDay();
+        int maximo = 0;
+        for (int i = 0; i < tamano; i++) {
+            maximo = Math.max(maximo, idMedico[i]);
+        }
+        // Los IDs de médico son pocos y densos: se cuenta en una array y se pasa al mapa al final
+        int[] conteo = new int[maximo + 1];
+        for (int i = 0; i < tamano; i++) {
+            conteo[idMedico[i]] += (dia[i] >= d0 & dia[i] <= d1) ? 1 : 0;
+        }
+        Map<Integer, Integer> resultado = new HashMap<>();
+        for (int id = 0; id <= maximo; id++) {
+            if (conteo[id] > 0) {
+                resultado.put(id, conteo[id]);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Citas por motivo en un rango de fechas
+     * @return Mapa de motivo a número de citas (sin las que no tienen motivo)
+     */
+    public Map<String, Integer> contarPorMotivo(LocalDate desde, LocalDate hasta) {
+        int d0 = (int) desde.toEpochDay();
+        int d1 = (int) hasta.toEpochDay();
+        // Posición 0 para SIN_MOTIVO, el resto desplazadas en uno
+        int[] conteo = new int[numeroMotivos + 1];
+        for (int i = 0; i < tamano; i++) {
+            conteo[motivo[i] + 1] += (dia[i] >= d0 & dia[i] <= d1) ? 1 : 0;
+        }
+        Map<String, Integer> resultado = new HashMap<>();
+        for (int codigo = 0; codigo < numeroMotivos; codigo++) {
+            if (conteo[codigo + 1] > 0) {
+                resultado.put(diccionario[codigo], conteo[codigo + 1]);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Porcentaje de citas canceladas en un rango de fechas
+     * @return Tasa entre 0 y 1 (0 si no hay citas)
+     */
+    public double tasaCancelacion(LocalDate desde, LocalDate hasta) {
+        int[] porEstado = contarPorEstado(desde, hasta);
+        int total = Arrays.stream(porEstado).sum();
+        return total == 0 ? 0 : porEstado[EstadoCita.CANCELADA.ordinal()] / (double) total;
+    }
+
+    /**
+     * Posiciones de las citas de un paciente (para materializarlas con getCita)
+     * @param idPacienteFiltro ID del paciente
+     * @return Posiciones en orden de fecha y hora
+     */
+    public int[] filasDePaciente(int idPacienteFiltro) {
+        int[] filas = new int[16];
+        int n = 0;
+        for (int i = 0; i < tamano; i++) {
+            if (idPaciente[i] == idPacienteFiltro) {
+                if (n == filas.length) {
+                    filas = Arrays.copyOf(filas, n * 2);
+                }
+                filas[n++] = i;
+            }
+        }
+        return Arrays.copyOf(filas, n);
+    }
+
+    /**
+     * Reconstruye la cita de una posición (sin nombres de paciente y médico)
+     * @param fila Posición entre 0 y getTamano() - 1
+     * @return Cita nueva
+     */
+    public Cita getCita(int fila) {
+        if (fila < 0 || fila >= tamano) {
+            throw new IndexOutOfBoundsException("Fila " + fila + " de " + tamano);
+        }
+        return new Cita(idCita[fila], idPaciente[fila], idMedico[fila], LocalDate.ofEpochDay(dia[fila]),
+                LocalTime.of(minuto[fila] / 60, minuto[fila] % 60),
+                motivo[fila] == SIN_MOTIVO ? null : diccionario[motivo[fila]], ESTADOS[estado[fila]]);
+    }
+
+    /**
+     * Memoria aproximada de las columnas (sin el texto de los motivos)
+     * @return Bytes
+     */
+    public long getBytesAproximados() {
+        return (long) idCita.length * (4 + 4 + 4 + 4 + 2 + 1 + 4) + (long) diccionario.length * 8;
+    }
+
+    // ==================== Construcción ====================
+
+    private void agregar(int id, int paciente, int medico, int diaEpoca, int minutoDia,
+                         EstadoCita estadoCita, String textoMotivo) {
+        if (tamano == idCita.length) {
+            int capacidad = tamano + (tamano >> 1);
+            idCita = Arrays.copyOf(idCita, capacidad);
+            idPaciente = Arrays.copyOf(idPaciente, capacidad);
+            idMedico = Arrays.copyOf(idMedico, capacidad);
+            dia = Arrays.copyOf(dia, capacidad);
+            minuto = Arrays.copyOf(minuto, capacidad);
+            estado = Arrays.copyOf(estado, capacidad);
+            motivo = Arrays.copyOf(motivo, capacidad);
+        }
+        idCita[tamano] = id;
+        idPaciente[tamano] = paciente;
+        idMedico[tamano] = medico;
+        dia[tamano] = diaEpoca;
+        minuto[tamano] = (short) minutoDia;
+        estado[tamano] = (byte) (estadoCita != null ? estadoCita : EstadoCita.PROGRAMADA).ordinal();
+        motivo[tamano] = codificarMotivo(textoMotivo);
+        tamano++;
+    }
+
+    private int codificarMotivo(String texto) {
+        if (texto == null || texto.isBlank()) {
+            return SIN_MOTIVO;
+        }
+        Integer codigo = codigos.get(texto);
+        if (codigo != null) {
+            return codigo;
+        }
+        if (numeroMotivos == diccionario.length) {
+            diccionario = Arrays.copyOf(diccionario, numeroMotivos * 2);
+        }
+        diccionario[numeroMotivos] = texto;
+        codigos.put(texto, numeroMotivos);
+        return numeroMotivos++;
+    }
+
+    /**
+     * Ajusta las arrays al número de filas y suelta el mapa de construcción
+     */
+    private void recortar() {
+        idCita = Arrays.copyOf(idCita, tamano);
+        idPaciente = Arrays.copyOf(idPaciente, tamano);
+        idMedico = Arrays.copyOf(idMedico, tamano);
+        dia = Arrays.copyOf(dia, tamano);
+        minuto = Arrays.copyOf(minuto, tamano);
+        estado = Arrays.copyOf(estado, tamano);
+        motivo = Arrays.copyOf(motivo, tamano);
+        diccionario = Arrays.copyOf(diccionario, numeroMotivos);
+        codigos = null;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.gestionmedica.services;
+
+import com.example.gestionmedica.models.Cita.EstadoCita;
+import com.example.gestionmedica.utils.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resumen del dashboard: totales de citas, pacientes y médicos y citas de hoy por estado
+ *
+ * Todos los contadores se obtienen en una única consulta y se guardan en una
+ * instantánea inmutable que se refresca en segundo plano cada cierto intervalo.
+ * Las pantallas leen la instantánea sin tocar la base de datos
+ */
+public class DashboardSummary {
+
+    private static final String SQL = construirSql();
+
+    private final Duration intervalo;
+    private volatile Instantanea instantanea = Instantanea.VACIA;
+    private ScheduledExecutorService planificador;
+
+    /**
+     * @param intervalo Cada cuánto se refresca la instantánea
+     */
+    public DashboardSummary(Duration intervalo) {
+        this.intervalo = intervalo;
+    }
+
+    /**
+     * Empieza a refrescar la instantánea en segundo plano (la primera vez, en seguida)
+     */
+    public synchronized void iniciar() {
+        if (planificador != null) {
+            return;
+        }
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "dashboard-summary");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        planificador.scheduleWithFixedDelay(this::refrescar, 0, intervalo.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Detiene el refresco en segundo plano
+     */
+    public synchronized void detener() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+            planificador = null;
+        }
+    }
+
+    /**
+     * Última instantánea calculada; no accede a la base de datos
+     * @return Instantánea (vacía si todavía no se ha podido calcular)
+     */
+    public Instantanea getInstantanea() {
+        return instantanea;
+    }
+
+    /**
+     * Recalcula la instantánea ahora mismo
+     * @return true si se actualizó correctamente
+     */
+    public boolean refrescar() {
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
+             PreparedStatement stmt = conn.prepareStatement(SQL);
+             ResultSet rs = stmt.executeQuery()) {
+
+            if (rs.next()) {
+                EnumMap<EstadoCita, Integer> hoyPorEstado = new EnumMap<>(EstadoCita.class);
+                for (EstadoCita estado : EstadoCita.values()) {
+                    hoyPorEstado.put(estado, rs.getInt("hoy_" + estado.getValor()));
+                }
+                instantanea = new Instantanea(
+                        rs.getInt("total_citas"),
+                        rs.getInt("total_pacientes"),
+                        rs.getInt("total_medicos"),
+                        rs.getInt("citas_hoy"),
+                        hoyPorEstado,
+                        Instant.now());
+                return true;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al refrescar el resumen del dashboard: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Una sola consulta: subconsultas para los totales y agregados condicionales
+     * sobre las citas de hoy para los contadores por estado
+     */
+    private static String construirSql() {
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append("(SELECT COUNT(*) FROM citas) AS total_citas, ")
+                .append("(SELECT COUNT(*) FROM pacientes) AS total_pacientes, ")
+                .append("(SELECT COUNT(*) FROM medicos) AS total_medicos, ")
+                .append("COUNT(*) AS citas_hoy");
+        for (EstadoCita estado : EstadoCita.values()) {
+            sql.append(", COALESCE(SUM(estado = '").append(estado.getValor())
+               .append("'), 0) AS hoy_").append(estado.getValor());
+        }
+        sql.append(" FROM citas WHERE fecha_cita = CURDATE()");
+        return sql.toString();
+    }
+
+    /**
+     * Contadores del dashboard en un momento dado (inmutable)
+     */
+    public static final class Instantanea {
+
+        static final Instantanea VACIA = new Instantanea(0, 0, 0, 0,
+                new EnumMap<>(EstadoCita.class), null);
+
+        private final int totalCitas;
+        private final int totalPacientes;
+        private final int totalMedicos;
+        private final int citasHoy;
+        private final Map<EstadoCita, Integer> citasHoyPorEstado;
+        private final Instant generada;
+
+        private Instantanea(int totalCitas, int totalPacientes, int totalMedicos, int citasHoy,
+                            EnumMap<EstadoCita, Integer> citasHoyPorEstado, Instant generada) {
+            this.totalCitas = totalCitas;
+            this.totalPacientes = totalPacientes;
+            this.totalMedicos = totalMedicos;
+            this.citasHoy = citasHoy;
+            this.citasHoyPorEstado = Collections.unmodifiableMap(citasHoyPorEstado);
+            this.generada = generada;
+        }
+
+        public int getTotalCitas() { return totalCitas; }
+        public int getTotalPacientes() { return totalPacientes; }
+        public int getTotalMedicos() { return totalMedicos; }
+        public int getCitasHoy() { return citasHoy; }
+
+        public int getCitasHoy(EstadoCita estado) {
+            return citasHoyPorEstado.getOrDefault(estado, 0);
+        }
+
+        public Map<EstadoCita, Integer> getCitasHoyPorEstado() {
+            return citasHoyPorEstado;
+        }
+
+        /**
+         * Momento en que se calculó
+         * @return Instante o null si todavía no se ha calculado ninguna
+         */
+        public Instant getGenerada() {
+            return generada;
+        }
+
+        @Override
+        public String toString() {
+            return "Instantanea{" +
+                    "citas=" + totalCitas +
+                    ", pacientes=" + totalPacientes +
+                    ", medicos=" + totalMedicos +
+                    ", citasHoy=" + citasHoy +
+                    ", porEstado=" + citasHoyPorEstado +
+                    ", generada=" + generada +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.gestionmedica.services;
+
+import com.example.gestionmedica.dao.CitaDAO;
+import com.example.gestionmedica.dao.FiltroCitas;
+import com.example.gestionmedica.dao.MapeadorFila;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exportación de citas a CSV o JSON Lines (p. ej. para la consejería de sanidad)
+ *
+ * Cada fila va directamente del cursor JDBC al archivo: no se crean objetos Cita
+ * ni listas, así que la memoria usada no depende del número de citas. La salida
+ * se escribe por un canal NIO con buffer y, opcionalmente, comprimida en gzip
+ *
+ * El modo por meses reparte el rango de fechas en un archivo por mes y los
+ * escribe en paralelo, cada uno con su propia conexión del pool
+ */
+public class ExportadorCitas {
+
+    private static final int TAMANO_BUFFER = 256 * 1024;
+
+    /**
+     * Formato de salida
+     */
+    public enum Formato {
+        CSV(".csv"),
+        JSONL(".jsonl");
+
+        private final String extension;
+
+        Formato(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private final CitaDAO citaDAO = new CitaDAO();
+
+    /**
+     * Exporta las citas del filtro a un archivo
+     * @param filtro Citas a exportar
+     * @param formato CSV o JSONL
+     * @param destino Archivo de salida (se sobrescribe)
+     * @param gzip true para comprimir la salida
+     * @return Número de citas exportadas o -1 si hubo un error (el archivo se borra)
+     */
+    public long exportar(FiltroCitas filtro, Formato formato, Path destino, boolean gzip) {
+        long filas = escribir(filtro, formato, destino, gzip);
+        if (filas >= 0) {
+            System.out.println("✓ Exportadas " + filas + " citas a " + destino);
+        }
+        return filas;
+    }
+
+    /**
+     * Exporta las citas del filtro en un archivo por mes, escribiendo varios a la vez
+     * Los archivos se llaman prefijo-aaaa-mm.csv (o .jsonl, con .gz si se comprime)
+     * @param filtro Citas a exportar (sin fechas, se usa el rango de las citas existentes)
+     * @param formato CSV o JSONL
+     * @param directorio Carpeta de salida
+     * @param prefijo Inicio del nombre de cada archivo
+     * @param gzip true para comprimir la salida
+     * @param hilos Meses que se exportan a la vez (cada uno ocupa una conexión)
+     * @return Número total de citas exportadas o -1 si algún mes falló
+     */
+    public long exportarPorMeses(FiltroCitas filtro, Formato formato, Path directorio, String prefijo,
+                                 boolean gzip, int hilos) {
+        LocalDate desde = filtro.getDesde();
+        LocalDate hasta = filtro.getHasta();
+        if (desde == null || hasta == null) {
+            LocalDate[] rango = citaDAO.obtenerRangoFechas(filtro);
+            if (rango == null) {
+                return 0;
+            }
+            desde = desde != null ? desde : rango[0];
+            hasta = hasta != null ? hasta : rango[1];
+        }
+
+        ExecutorService ejecutor = Executors.newFixedThreadPool(Math.max(1, hilos), r -> {
+            Thread hilo = new Thread(r, "exportacion-citas");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        List<Future<Long>> segmentos = new ArrayList<>();
+        for (YearMonth mes = YearMonth.from(desde); !mes.atDay(1).isAfter(hasta); mes = mes.plusMonths(1)) {
+            LocalDate inicioMes = mes.atDay(1).isBefore(desde) ? desde : mes.atDay(1);
+            LocalDate finMes = mes.atEndOfMonth().isAfter(hasta) ? hasta : mes.atEndOfMonth();
+            FiltroCitas delMes = filtro.conFechas(inicioMes, finMes);
+            Path archivo = directorio.resolve(prefijo + "-" + mes + formato.getExtension() + (gzip ? ".gz" : ""));
+            segmentos.add(ejecutor.submit(() -> escribir(delMes, formato, archivo, gzip)));
+        }
+        ejecutor.shutdown();
+
+        long total = 0;
+        boolean error = false;
+        for (Future<Long> segmento : segmentos) {
+            try {
+                long filas = segmento.get();
+                if (filas < 0) {
+                    error = true;
+                } else {
+                    total += filas;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                ejecutor.shutdownNow();
+                return -1;
+            } catch (ExecutionException e) {
+                error = true;
+                System.err.println("✗ Error en un segmento de la exportación: " + e.getCause());
+            }
+        }
+        if (error) {
+            return -1;
+        }
+        System.out.println("✓ Exportadas " + total + " citas en " + segmentos.size() + " archivos a " + directorio);
+        return total;
+    }
+
+    /**
+     * Escribe un archivo; si falla lo borra para no dejar exportaciones a medias
+     */
+    private long escribir(FiltroCitas filtro, Formato formato, Path destino, boolean gzip) {
+        long filas;
+        try (FileChannel canal = FileChannel.open(destino, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             Writer salida = abrirSalida(canal, gzip)) {
+
+            EscritorFilas escritor = new EscritorFilas(salida, formato);
+            escritor.cabecera();
+            filas = citaDAO.recorrerParaExportar(filtro, escritor);
+            escritor.vaciar();
+
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("✗ Error al escribir " + destino + ": " + e.getMessage());
+            filas = -1;
+        }
+
+        if (filas < 0) {
+            try {
+                Files.deleteIfExists(destino);
+            } catch (IOException e) {
+                // Ignorado: ya se ha informado del error principal
+            }
+        }
+        return filas;
+    }
+
+    private static Writer abrirSalida(FileChannel canal, boolean gzip) throws IOException {
+        OutputStream salida = Channels.newOutputStream(canal);
+        if (gzip) {
+            salida = new GZIPOutputStream(salida, TAMANO_BUFFER);
+        }
+        return new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANO_BUFFER);
+    }
+
+    /**
+     * Convierte cada fila del ResultSet en una línea de texto, reutilizando el mismo buffer
+     */
+    private static final class EscritorFilas implements MapeadorFila<Void> {
+
+        private final Writer salida;
+        private final Formato formato;
+        private final StringBuilder linea = new StringBuilder(256);
+
+        EscritorFilas(Writer salida, Formato formato) {
+            this.salida = salida;
+            this.formato = formato;
+        }
+
+        void cabecera() throws IOException {
+            if (formato == Formato.CSV) {
+                salida.write(String.join(",", CitaDAO.COLUMNAS_EXPORTACION));
+                salida.write('\n');
+            }
+        }
+
+        void vaciar() throws IOException {
+            salida.flush();
+        }
+
+        @Override
+        public Void mapear(ResultSet rs) throws SQLException {
+            linea.setLength(0);
+            String[] columnas = CitaDAO.COLUMNAS_EXPORTACION;
+            if (formato == Formato.CSV) {
+                for (int i = 0; i < columnas.length; i++) {
+                    if (i > 0) {
+                        linea.append(',');
+                    }
+                    campoCsv(rs.getString(i + 1));
+                }
+            } else {
+                linea.append('{');
+                for (int i = 0; i < columnas.length; i++) {
+                    if (i > 0) {
+                        linea.append(',');
+                    }
+                    linea.append('"').append(columnas[i]).append("\":");
+                    if (esNumerica(i)) {
+                        linea.append(rs.getInt(i + 1));
+                    } else {
+                        campoJson(rs.getString(i + 1));
+                    }
+                }
+                linea.append('}');
+            }
+            linea.append('\n');
+            try {
+                salida.append(linea);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        }
+
+        /**
+         * id_cita, id_paciente e id_medico
+         */
+        private static boolean esNumerica(int columna) {
+            return columna == 0 || columna == 3 || columna == 6;
+        }
+
+        private void campoCsv(String valor) {
+            if (valor == null) {
+                return;
+            }
+            boolean comillas = false;
+            for (int i = 0; i < valor.length() && !comillas; i++) {
+                char c = valor.charAt(i);
+                comillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!comillas) {
+                linea.append(valor);
+                return;
+            }
+            linea.append('"');
+            for (int i = 0; i < valor.length(); i++) {
+                char c = valor.charAt(i);
+                if (c == '"') {
+                    linea.append('"');
+                }
+                linea.append(c);
+            }
+            linea.append('"');
+        }
+
+        private void campoJson(String valor) {
+            if (valor == null) {
+                linea.append("null");
+                return;
+            }
+            linea.append('"');
+            for (int i = 0; i < valor.length(); i++) {
+                char c = valor.charAt(i);
+                switch (c) {
+                    case '"' -> linea.append("\\\"");
+                    case '\\' -> linea.append("\\\\");
+                    case '\n' -> linea.append("\\n");
+                    case '\r' -> linea.append("\\r");
+                    case '\t' -> linea.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            linea.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            linea.append(c);
+                        }
+                    }
+                }
+            }
+            linea.append('"');
+        }
+    }
+}
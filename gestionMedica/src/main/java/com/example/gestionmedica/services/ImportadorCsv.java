@@ -0,0 +1,650 @@
+package com.example.gestionmedica.services;
+
+import com.example.gestionmedica.dao.CitaDAO;
+import com.example.gestionmedica.dao.IndiceDni;
+import com.example.gestionmedica.dao.PacienteDAO;
+import com.example.gestionmedica.dao.RefrescoPacientes;
+import com.example.gestionmedica.dao.ResultadoLote;
+import com.example.gestionmedica.models.Cita;
+import com.example.gestionmedica.models.Cita.EstadoCita;
+import com.example.gestionmedica.models.Paciente;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Importación masiva de pacientes y citas desde CSV
+ *
+ * Funciona como una tubería de tres etapas unidas por colas acotadas (si la BD va
+ * más lenta que la lectura, la lectura espera):
+ *  1. Un hilo lee el archivo por NIO y lo corta en bloques de líneas
+ *  2. Varios hilos analizan y validan cada bloque (y resuelven el paciente por DNI)
+ *  3. Varios hilos insertan los bloques válidos con insertarLote
+ *
+ * La primera línea es la cabecera; las columnas se buscan por nombre y el separador
+ * (',' o ';') se deduce de ella. Las filas rechazadas se copian, con el motivo en una
+ * columna más, a "archivo.rechazados.csv", que se puede corregir y volver a importar
+ */
+public class ImportadorCsv {
+
+    public static final int FILAS_POR_BLOQUE = 2_000;
+
+    private static final String[] COLUMNAS_PACIENTES =
+            {"dni", "nombre", "apellidos", "fecha_nacimiento", "telefono", "email", "direccion"};
+    private static final boolean[] OBLIGATORIAS_PACIENTES = {true, true, true, false, false, false, false};
+
+    private static final String[] COLUMNAS_CITAS =
+            {"dni_paciente", "id_paciente", "id_medico", "fecha_cita", "hora_cita", "motivo", "estado"};
+    private static final boolean[] OBLIGATORIAS_CITAS = {false, false, true, true, true, false, false};
+
+    private final int hilosAnalisis;
+    private final int hilosEscritura;
+    private final int tamanoLote;
+    private final PacienteDAO pacienteDAO = new PacienteDAO();
+    private final CitaDAO citaDAO = new CitaDAO();
+    private Consumer<Progreso> observador = progreso -> { };
+
+    /**
+     * Importador con un hilo de análisis por núcleo (menos el de lectura) y dos de escritura
+     */
+    public ImportadorCsv() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), 2, PacienteDAO.TAMANO_LOTE_DEFECTO);
+    }
+
+    /**
+     * @param hilosAnalisis Hilos que analizan y validan las filas
+     * @param hilosEscritura Hilos que insertan (cada uno usa una conexión del pool)
+     * @param tamanoLote Filas por lote JDBC y por transacción
+     */
+    public ImportadorCsv(int hilosAnalisis, int hilosEscritura, int tamanoLote) {
+        this.hilosAnalisis = Math.max(1, hilosAnalisis);
+        this.hilosEscritura = Math.max(1, hilosEscritura);
+        this.tamanoLote = Math.max(1, tamanoLote);
+    }
+
+    /**
+     * Recibe el progreso una vez por segundo y al terminar (desde un hilo de la importación)
+     * @param observador Acción a ejecutar con cada progreso
+     * @return El propio importador
+     */
+    public ImportadorCsv setObservador(Consumer<Progreso> observador) {
+        this.observador = observador;
+        return this;
+    }
+
+    /**
+     * Importa pacientes. Columnas: dni, nombre, apellidos y opcionalmente
+     * fecha_nacimiento (aaaa-mm-dd), telefono, email y direccion
+     * Se rechazan los DNI que ya existen
+     * @param archivo Archivo CSV
+     * @return Progreso final de la importación
+     */
+    public Progreso importarPacientes(Path archivo) throws IOException {
+        prepararIndiceDni();
+        return importar(archivo, "pacientes", COLUMNAS_PACIENTES, OBLIGATORIAS_PACIENTES,
+                this::analizarPaciente, lote -> pacienteDAO.insertarLote(lote, tamanoLote));
+    }
+
+    /**
+     * Importa citas. Columnas: dni_paciente o id_paciente, id_medico, fecha_cita (aaaa-mm-dd),
+     * hora_cita (hh:mm[:ss]) y opcionalmente motivo y estado
+     * @param archivo Archivo CSV
+     * @return Progreso final de la importación
+     */
+    public Progreso importarCitas(Path archivo) throws IOException {
+        prepararIndiceDni();
+        return importar(archivo, "citas", COLUMNAS_CITAS, OBLIGATORIAS_CITAS,
+                this::analizarCita, lote -> citaDAO.insertarLote(lote, tamanoLote));
+    }
+
+    // ==================== Análisis de filas ====================
+
+    private Paciente analizarPaciente(String[] v) {
+        String dni = obligatorio(v[0], "dni");
+        if (dni.length() > 9) {
+            throw new IllegalArgumentException("DNI demasiado largo: " + dni);
+        }
+        if (pacienteDAO.existeDni(dni)) {
+            throw new IllegalArgumentException("El DNI ya existe: " + dni);
+        }
+        return new Paciente(dni, obligatorio(v[1], "nombre"), obligatorio(v[2], "apellidos"),
+                vacio(v[3]) ? null : fecha(v[3]), opcional(v[4]), opcional(v[5]), opcional(v[6]));
+    }
+
+    private Cita analizarCita(String[] v) {
+        int idPaciente;
+        if (!vacio(v[0])) {
+            idPaciente = pacienteDAO.obtenerIdPorDni(v[0].trim());
+            if (idPaciente <= 0) {
+                throw new IllegalArgumentException("No hay ningún paciente con DNI " + v[0].trim());
+            }
+        } else if (!vacio(v[1])) {
+            idPaciente = entero(v[1], "id_paciente");
+        } else {
+            throw new IllegalArgumentException("Falta dni_paciente o id_paciente");
+        }
+        int idMedico = entero(obligatorio(v[2], "id_medico"), "id_medico");
+        LocalDate fechaCita = fecha(obligatorio(v[3], "fecha_cita"));
+        LocalTime horaCita;
+        try {
+            horaCita = LocalTime.parse(obligatorio(v[4], "hora_cita"));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Hora no válida: " + v[4]);
+        }
+        return new Cita(idPaciente, idMedico, fechaCita, horaCita, opcional(v[5]), estado(v[6]));
+    }
+
+    private static EstadoCita estado(String valor) {
+        if (vacio(valor)) {
+            return EstadoCita.PROGRAMADA;
+        }
+        for (EstadoCita estado : EstadoCita.values()) {
+            if (estado.getValor().equalsIgnoreCase(valor.trim())) {
+                return estado;
+            }
+        }
+        throw new IllegalArgumentException("Estado no válido: " + valor);
+    }
+
+    private static LocalDate fecha(String valor) {
+        try {
+            return LocalDate.parse(valor.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Fecha no válida: " + valor);
+        }
+    }
+
+    private static int entero(String valor, String columna) {
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(columna + " no es un número: " + valor);
+        }
+    }
+
+    private static String obligatorio(String valor, String columna) {
+        if (vacio(valor)) {
+            throw new IllegalArgumentException("Falta " + columna);
+        }
+        return valor.trim();
+    }
+
+    private static String opcional(String valor) {
+        return vacio(valor) ? null : valor.trim();
+    }
+
+    private static boolean vacio(String valor) {
+        return valor == null || valor.isBlank();
+    }
+
+    /**
+     * Con el índice de DNI cargado, la resolución de DNI no hace una consulta por fila
+     * Se refresca antes para que vea también las altas recientes de otros puestos
+     */
+    private static void prepararIndiceDni() {
+        if (IndiceDni.getInstancia().asegurarCargado()) {
+            RefrescoPacientes.getInstancia().refrescar();
+        }
+    }
+
+    // ==================== Tubería ====================
+
+    private <T> Progreso importar(Path archivo, String tipo, String[] columnas, boolean[] obligatorias,
+                                  Function<String[], T> analizador,
+                                  Function<List<T>, ResultadoLote<T>> cargador) throws IOException {
+        long inicio = System.nanoTime();
+        Contadores contadores = new Contadores();
+        BlockingQueue<BloqueLineas> porAnalizar = new ArrayBlockingQueue<>(hilosAnalisis * 2);
+        BlockingQueue<Lote<T>> porInsertar = new ArrayBlockingQueue<>(hilosEscritura * 2);
+
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ);
+             BufferedReader lector = new BufferedReader(Channels.newReader(canal, StandardCharsets.UTF_8), 1 << 20);
+             Rechazos rechazos = new Rechazos(archivo)) {
+
+            String cabecera = leerRegistro(lector);
+            if (cabecera == null) {
+                throw new IOException("El archivo está vacío: " + archivo);
+            }
+            if (cabecera.startsWith("\uFEFF")) {
+                cabecera = cabecera.substring(1);
+            }
+            char separador = cabecera.chars().filter(c -> c == ';').count()
+                    > cabecera.chars().filter(c -> c == ',').count() ? ';' : ',';
+            int[] posiciones = posicionesColumnas(dividir(cabecera, separador), columnas, obligatorias);
+            rechazos.setCabecera(cabecera, separador);
+
+            ScheduledExecutorService informes = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread hilo = new Thread(r, "importacion-progreso");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            informes.scheduleAtFixedRate(() -> observador.accept(contadores.progreso(inicio, false, null)),
+                    1, 1, TimeUnit.SECONDS);
+
+            List<Thread> hilos = new ArrayList<>();
+            AtomicInteger analizadoresVivos = new AtomicInteger(hilosAnalisis);
+            for (int i = 0; i < hilosAnalisis; i++) {
+                hilos.add(arrancar("importacion-analisis-" + i, () -> analizar(porAnalizar, porInsertar,
+                        analizadoresVivos, posiciones, separador, analizador, contadores, rechazos)));
+            }
+            for (int i = 0; i < hilosEscritura; i++) {
+                hilos.add(arrancar("importacion-escritura-" + i,
+                        () -> insertar(porInsertar, cargador, contadores, rechazos)));
+            }
+
+            IOException errorLectura = null;
+            try {
+                leer(lector, porAnalizar, contadores);
+            } catch (IOException e) {
+                errorLectura = e;
+            } finally {
+                for (int i = 0; i < hilosAnalisis; i++) {
+                    poner(porAnalizar, BloqueLineas.FIN);
+                }
+                for (Thread hilo : hilos) {
+                    esperar(hilo);
+                }
+                informes.shutdownNow();
+            }
+
+            Progreso fin = contadores.progreso(inicio, true, rechazos.getDestino());
+            observador.accept(fin);
+            if (errorLectura != null) {
+                System.err.println("✗ Importación de " + tipo + " interrumpida: " + errorLectura.getMessage());
+                throw errorLectura;
+            }
+            System.out.println("✓ Importación de " + tipo + ": " + fin);
+            return fin;
+        }
+    }
+
+    /**
+     * Etapa 1: corta el archivo en bloques de registros
+     */
+    private void leer(BufferedReader lector, BlockingQueue<BloqueLineas> porAnalizar,
+                      Contadores contadores) throws IOException {
+        long numero = 1;
+        List<String> lineas = new ArrayList<>(FILAS_POR_BLOQUE);
+        String registro;
+        while ((registro = leerRegistro(lector)) != null) {
+            if (registro.isBlank()) {
+                continue;
+            }
+            lineas.add(registro);
+            contadores.leidas.increment();
+            if (lineas.size() == FILAS_POR_BLOQUE) {
+                poner(porAnalizar, new BloqueLineas(numero, lineas));
+                numero += lineas.size();
+                lineas = new ArrayList<>(FILAS_POR_BLOQUE);
+            }
+        }
+        if (!lineas.isEmpty()) {
+            poner(porAnalizar, new BloqueLineas(numero, lineas));
+        }
+    }
+
+    /**
+     * Etapa 2: analiza y valida; el último analizador en terminar avisa a los de escritura
+     */
+    private <T> void analizar(BlockingQueue<BloqueLineas> porAnalizar, BlockingQueue<Lote<T>> porInsertar,
+                              AtomicInteger analizadoresVivos, int[] posiciones, char separador,
+                              Function<String[], T> analizador, Contadores contadores, Rechazos rechazos) {
+        try {
+            while (true) {
+                BloqueLineas bloque = tomar(porAnalizar);
+                if (bloque == BloqueLineas.FIN) {
+                    break;
+                }
+                Lote<T> lote = new Lote<>(bloque.lineas.size());
+                for (int i = 0; i < bloque.lineas.size(); i++) {
+                    String linea = bloque.lineas.get(i);
+                    try {
+                        String[] campos = dividir(linea, separador);
+                        String[] valores = new String[posiciones.length];
+                        for (int c = 0; c < posiciones.length; c++) {
+                            int p = posiciones[c];
+                            valores[c] = p >= 0 && p < campos.length ? campos[p] : null;
+                        }
+                        lote.agregar(analizador.apply(valores), linea);
+                    } catch (RuntimeException e) {
+                        contadores.rechazadas.increment();
+                        rechazos.escribir(linea, "Registro " + (bloque.primerRegistro + i) + ": " + e.getMessage());
+                    }
+                }
+                if (!lote.elementos.isEmpty()) {
+                    poner(porInsertar, lote);
+                }
+            }
+        } finally {
+            if (analizadoresVivos.decrementAndGet() == 0) {
+                for (int i = 0; i < hilosEscritura; i++) {
+                    poner(porInsertar, Lote.fin());
+                }
+            }
+        }
+    }
+
+    /**
+     * Etapa 3: inserta por lotes y pasa al archivo de rechazos las filas que falla la BD
+     */
+    private <T> void insertar(BlockingQueue<Lote<T>> porInsertar, Function<List<T>, ResultadoLote<T>> cargador,
+                              Contadores contadores, Rechazos rechazos) {
+        while (true) {
+            Lote<T> lote = tomar(porInsertar);
+            if (lote.elementos == null) {
+                return;
+            }
+            ResultadoLote<T> resultado;
+            try {
+                resultado = cargador.apply(lote.elementos);
+            } catch (RuntimeException e) {
+                // Si este hilo muriera, las colas se llenarían y la importación no acabaría nunca
+                contadores.rechazadas.add(lote.elementos.size());
+                for (String linea : lote.lineas) {
+                    rechazos.escribir(linea, e.getMessage());
+                }
+                continue;
+            }
+            contadores.insertadas.add(resultado.getInsertados());
+            contadores.rechazadas.add(resultado.getFallos().size());
+            for (ResultadoLote.Fallo<T> fallo : resultado.getFallos()) {
+                rechazos.escribir(lote.lineas.get(fallo.getIndice()), fallo.getMensaje());
+            }
+        }
+    }
+
+    // ==================== CSV ====================
+
+    /**
+     * Lee un registro completo: si un campo entre comillas contiene saltos de línea, une las líneas
+     */
+    private static String leerRegistro(BufferedReader lector) throws IOException {
+        String linea = lector.readLine();
+        if (linea == null || linea.indexOf('"') < 0) {
+            return linea;
+        }
+        StringBuilder registro = new StringBuilder(linea);
+        while (comillasAbiertas(registro)) {
+            String siguiente = lector.readLine();
+            if (siguiente == null) {
+                break;
+            }
+            registro.append('\n').append(siguiente);
+        }
+        return registro.toString();
+    }
+
+    private static boolean comillasAbiertas(CharSequence texto) {
+        boolean abiertas = false;
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) == '"') {
+                abiertas = !abiertas;
+            }
+        }
+        return abiertas;
+    }
+
+    /**
+     * Divide un registro en campos; admite campos entre comillas con "" como comilla escapada
+     */
+    static String[] dividir(String registro, char separador) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < registro.length(); i++) {
+            char c = registro.charAt(i);
+            if (entreComillas) {
+                if (c == '"') {
+                    if (i + 1 < registro.length() && registro.charAt(i + 1) == '"') {
+                        campo.append('"');
+                        i++;
+                    } else {
+                        entreComillas = false;
+                    }
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString());
+        return campos.toArray(new String[0]);
+    }
+
+    private static int[] posicionesColumnas(String[] cabecera, String[] columnas, boolean[] obligatorias)
+            throws IOException {
+        int[] posiciones = new int[columnas.length];
+        for (int c = 0; c < columnas.length; c++) {
+            posiciones[c] = -1;
+            for (int i = 0; i < cabecera.length; i++) {
+                if (cabecera[i].trim().toLowerCase(Locale.ROOT).equals(columnas[c])) {
+                    posiciones[c] = i;
+                    break;
+                }
+            }
+            if (posiciones[c] < 0 && obligatorias[c]) {
+                throw new IOException("Falta la columna obligatoria '" + columnas[c] + "' en la cabecera");
+            }
+        }
+        return posiciones;
+    }
+
+    // ==================== Utilidades de hilos ====================
+
+    private static Thread arrancar(String nombre, Runnable tarea) {
+        Thread hilo = new Thread(tarea, nombre);
+        hilo.setDaemon(true);
+        hilo.start();
+        return hilo;
+    }
+
+    private static <E> void poner(BlockingQueue<E> cola, E elemento) {
+        try {
+            cola.put(elemento);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Importación interrumpida", e);
+        }
+    }
+
+    private static <E> E tomar(BlockingQueue<E> cola) {
+        try {
+            return cola.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Importación interrumpida", e);
+        }
+    }
+
+    private static void esperar(Thread hilo) {
+        try {
+            hilo.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ==================== Clases auxiliares ====================
+
+    /**
+     * Registros leídos pendientes de analizar (primerRegistro cuenta desde 1 sin la cabecera)
+     */
+    private static final class BloqueLineas {
+        static final BloqueLineas FIN = new BloqueLineas(0, List.of());
+
+        final long primerRegistro;
+        final List<String> lineas;
+
+        BloqueLineas(long primerRegistro, List<String> lineas) {
+            this.primerRegistro = primerRegistro;
+            this.lineas = lineas;
+        }
+    }
+
+    /**
+     * Elementos válidos pendientes de insertar, con su línea original para los rechazos
+     */
+    private static final class Lote<T> {
+        final List<T> elementos;
+        final List<String> lineas;
+
+        Lote(int capacidad) {
+            elementos = new ArrayList<>(capacidad);
+            lineas = new ArrayList<>(capacidad);
+        }
+
+        private Lote() {
+            elementos = null;
+            lineas = null;
+        }
+
+        static <T> Lote<T> fin() {
+            return new Lote<>();
+        }
+
+        void agregar(T elemento, String linea) {
+            elementos.add(elemento);
+            lineas.add(linea);
+        }
+    }
+
+    private static final class Contadores {
+        final LongAdder leidas = new LongAdder();
+        final LongAdder insertadas = new LongAdder();
+        final LongAdder rechazadas = new LongAdder();
+
+        Progreso progreso(long inicio, boolean terminado, Path archivoRechazos) {
+            return new Progreso(leidas.sum(), insertadas.sum(), rechazadas.sum(),
+                    Duration.ofNanos(System.nanoTime() - inicio), terminado, archivoRechazos);
+        }
+    }
+
+    /**
+     * Archivo de rechazos: se crea con la primera fila rechazada
+     */
+    private static final class Rechazos implements AutoCloseable {
+        private final Path destino;
+        private String cabecera;
+        private char separador;
+        private BufferedWriter escritor;
+        private IOException error;
+
+        Rechazos(Path archivo) {
+            this.destino = archivo.resolveSibling(archivo.getFileName() + ".rechazados.csv");
+        }
+
+        void setCabecera(String cabecera, char separador) {
+            this.cabecera = cabecera;
+            this.separador = separador;
+        }
+
+        synchronized void escribir(String linea, String motivo) {
+            if (error != null) {
+                return;
+            }
+            try {
+                if (escritor == null) {
+                    escritor = Files.newBufferedWriter(destino, StandardCharsets.UTF_8);
+                    escritor.write(cabecera + separador + "motivo_rechazo");
+                    escritor.newLine();
+                }
+                String texto = motivo == null ? "" : motivo.replace("\"", "\"\"");
+                escritor.write(linea + separador + '"' + texto + '"');
+                escritor.newLine();
+            } catch (IOException e) {
+                error = e;
+                System.err.println("✗ Error al escribir rechazos: " + e.getMessage());
+            }
+        }
+
+        synchronized Path getDestino() {
+            return escritor != null ? destino : null;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (escritor != null) {
+                escritor.close();
+            }
+        }
+    }
+
+    /**
+     * Estado de una importación (inmutable)
+     */
+    public static final class Progreso {
+        private final long leidas;
+        private final long insertadas;
+        private final long rechazadas;
+        private final Duration duracion;
+        private final boolean terminado;
+        private final Path archivoRechazos;
+
+        private Progreso(long leidas, long insertadas, long rechazadas, Duration duracion,
+                         boolean terminado, Path archivoRechazos) {
+            this.leidas = leidas;
+            this.insertadas = insertadas;
+            this.rechazadas = rechazadas;
+            this.duracion = duracion;
+            this.terminado = terminado;
+            this.archivoRechazos = archivoRechazos;
+        }
+
+        public long getLeidas() { return leidas; }
+        public long getInsertadas() { return insertadas; }
+        public long getRechazadas() { return rechazadas; }
+        public Duration getDuracion() { return duracion; }
+        public boolean isTerminado() { return terminado; }
+
+        /**
+         * Filas procesadas (insertadas o rechazadas) por segundo
+         */
+        public double getFilasPorSegundo() {
+            double segundos = duracion.toNanos() / 1e9;
+            return segundos > 0 ? (insertadas + rechazadas) / segundos : 0;
+        }
+
+        /**
+         * Archivo con las filas rechazadas
+         * @return Ruta o null si no hubo rechazos
+         */
+        public Path getArchivoRechazos() {
+            return archivoRechazos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d leídas, %d insertadas, %d rechazadas en %.1f s (%.0f filas/s)",
+                    leidas, insertadas, rechazadas, duracion.toNanos() / 1e9, getFilasPorSegundo());
+        }
+    }
+}
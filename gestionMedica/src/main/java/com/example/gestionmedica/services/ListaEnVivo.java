@@ -0,0 +1,202 @@
+package com.example.gestionmedica.services;
+
+import com.example.gestionmedica.dao.BusCambios;
+import com.example.gestionmedica.dao.EventoCambio;
+import com.example.gestionmedica.dao.EventoCambio.Entidad;
+import com.example.gestionmedica.models.Cita;
+import com.example.gestionmedica.models.Cita.EstadoCita;
+import com.example.gestionmedica.models.Medico;
+import com.example.gestionmedica.models.Paciente;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Mantiene una ObservableList al día con los cambios del BusCambios
+ *
+ * En lugar de volver a consultar la lista entera, aplica cada lote de eventos
+ * en el hilo de JavaFX: añade las altas que cumplen el filtro, sustituye las
+ * modificaciones (o las quita si dejan de cumplirlo) y quita las bajas. Ante una
+ * recarga (p. ej. tras importar un CSV), o un cambio parcial de un elemento que no
+ * está en la lista, llama a la acción de recarga de la vista
+ *
+ * Uso: ListaEnVivo.citas(tabla.getItems(), c -> c.getFechaCita().equals(hoy), this::recargar);
+ * y cerrar() al salir de la vista
+ */
+public class ListaEnVivo<T> implements AutoCloseable {
+
+    private static final Comparator<Cita> ORDEN_CITAS = Comparator
+            .comparing(Cita::getFechaCita, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Cita::getHoraCita, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final ObservableList<T> lista;
+    private final Entidad entidad;
+    private final Class<T> clase;
+    private final ToIntFunction<T> id;
+    private final Predicate<T> filtro;
+    private final Comparator<T> orden;
+    private final BiConsumer<T, Object> cambioParcial;
+    private final Runnable recargar;
+    private final BusCambios.Suscripcion suscripcion;
+
+    /**
+     * @param lista Lista a mantener (solo se toca en el hilo de JavaFX)
+     * @param entidad Entidad de los elementos
+     * @param clase Clase de los elementos
+     * @param id ID de un elemento
+     * @param filtro Elementos que deben estar en la lista
+     * @param orden Orden de la lista o null para añadir al final
+     * @param cambioParcial Aplica un valor que no es un T completo (p. ej. un EstadoCita) o null
+     * @param recargar Vuelve a cargar la lista entera o null para ignorar las recargas
+     */
+    public ListaEnVivo(ObservableList<T> lista, Entidad entidad, Class<T> clase, ToIntFunction<T> id,
+                       Predicate<T> filtro, Comparator<T> orden, BiConsumer<T, Object> cambioParcial,
+                       Runnable recargar) {
+        this.lista = lista;
+        this.entidad = entidad;
+        this.clase = clase;
+        this.id = id;
+        this.filtro = filtro;
+        this.orden = orden;
+        this.cambioParcial = cambioParcial;
+        this.recargar = recargar;
+        this.suscripcion = BusCambios.getInstancia().suscribir(Platform::runLater, this::aplicar, entidad);
+    }
+
+    /**
+     * Lista de citas ordenada por fecha y hora
+     */
+    public static ListaEnVivo<Cita> citas(ObservableList<Cita> lista, Predicate<Cita> filtro, Runnable recargar) {
+        return new ListaEnVivo<>(lista, Entidad.CITA, Cita.class, Cita::getIdCita, filtro, ORDEN_CITAS,
+                (cita, valor) -> {
+                    if (valor instanceof EstadoCita estado) {
+                        cita.setEstado(estado);
+                    }
+                }, recargar);
+    }
+
+    /**
+     * Lista de pacientes (las altas se añaden al final)
+     */
+    public static ListaEnVivo<Paciente> pacientes(ObservableList<Paciente> lista, Runnable recargar) {
+        return new ListaEnVivo<>(lista, Entidad.PACIENTE, Paciente.class, Paciente::getIdPaciente,
+                p -> true, null, null, recargar);
+    }
+
+    /**
+     * Lista de médicos (las altas se añaden al final)
+     */
+    public static ListaEnVivo<Medico> medicos(ObservableList<Medico> lista, Runnable recargar) {
+        return new ListaEnVivo<>(lista, Entidad.MEDICO, Medico.class, Medico::getIdMedico,
+                m -> true, null, null, recargar);
+    }
+
+    /**
+     * Deja de seguir los cambios
+     */
+    @Override
+    public void close() {
+        suscripcion.cancelar();
+    }
+
+    private void aplicar(List<EventoCambio> eventos) {
+        boolean recargarAlFinal = false;
+        for (EventoCambio evento : eventos) {
+            if (evento.getEntidad() != entidad) {
+                continue;
+            }
+            switch (evento.getTipo()) {
+                case RECARGA:
+                    if (recargar != null) {
+                        recargar.run();
+                    }
+                    break;
+                case BAJA:
+                    int posicion = buscar(evento.getId());
+                    if (posicion >= 0) {
+                        lista.remove(posicion);
+                    }
+                    break;
+                default:
+                    T valor = evento.getValor(clase);
+                    if (valor != null) {
+                        colocar(evento.getId(), valor);
+                    } else {
+                        recargarAlFinal |= !aplicarParcial(evento);
+                    }
+            }
+        }
+        if (recargarAlFinal && recargar != null) {
+            recargar.run();
+        }
+    }
+
+    private void colocar(int idElemento, T valor) {
+        int posicion = buscar(idElemento);
+        if (!filtro.test(valor)) {
+            if (posicion >= 0) {
+                lista.remove(posicion);
+            }
+            return;
+        }
+        if (orden == null) {
+            if (posicion >= 0) {
+                lista.set(posicion, valor);
+            } else {
+                lista.add(valor);
+            }
+            return;
+        }
+        if (posicion >= 0) {
+            // Si no cambia de sitio se sustituye en su posición
+            boolean enOrden = (posicion == 0 || orden.compare(lista.get(posicion - 1), valor) <= 0)
+                    && (posicion == lista.size() - 1 || orden.compare(valor, lista.get(posicion + 1)) <= 0);
+            if (enOrden) {
+                lista.set(posicion, valor);
+                return;
+            }
+            lista.remove(posicion);
+        }
+        int destino = Collections.binarySearch(lista, valor, orden);
+        lista.add(destino >= 0 ? destino + 1 : -destino - 1, valor);
+    }
+
+    /**
+     * Aplica un cambio parcial al elemento de la lista
+     * @return false si el elemento no está en la lista: con solo el cambio no se sabe
+     *         si ahora cumple el filtro y hay que recargar
+     */
+    private boolean aplicarParcial(EventoCambio evento) {
+        if (cambioParcial == null || evento.getValor() == null) {
+            return true;
+        }
+        int posicion = buscar(evento.getId());
+        if (posicion < 0) {
+            return false;
+        }
+        T elemento = lista.get(posicion);
+        cambioParcial.accept(elemento, evento.getValor());
+        if (filtro.test(elemento)) {
+            // set con el mismo objeto para que la tabla se entere del cambio
+            lista.set(posicion, elemento);
+        } else {
+            lista.remove(posicion);
+        }
+        return true;
+    }
+
+    private int buscar(int idElemento) {
+        for (int i = 0; i < lista.size(); i++) {
+            if (id.applyAsInt(lista.get(i)) == idElemento) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
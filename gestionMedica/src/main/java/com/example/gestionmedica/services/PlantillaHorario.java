@@ -0,0 +1,60 @@
+package com.example.gestionmedica.services;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Horario de consulta semanal de un médico: tramos [inicio, fin) por día de la semana
+ */
+public class PlantillaHorario {
+
+    private static final int[][] SIN_TRAMOS = new int[0][];
+
+    private final Map<DayOfWeek, List<int[]>> tramos = new EnumMap<>(DayOfWeek.class);
+
+    /**
+     * Horario habitual: de lunes a viernes, 09:00-14:00 y 16:00-20:00
+     * @return Plantilla nueva
+     */
+    public static PlantillaHorario porDefecto() {
+        PlantillaHorario plantilla = new PlantillaHorario();
+        for (DayOfWeek dia = DayOfWeek.MONDAY; dia.compareTo(DayOfWeek.FRIDAY) <= 0; dia = dia.plus(1)) {
+            plantilla.agregarTramo(dia, LocalTime.of(9, 0), LocalTime.of(14, 0));
+            plantilla.agregarTramo(dia, LocalTime.of(16, 0), LocalTime.of(20, 0));
+        }
+        return plantilla;
+    }
+
+    /**
+     * Añade un tramo de consulta
+     * @param dia Día de la semana
+     * @param inicio Hora de inicio (incluida)
+     * @param fin Hora de fin (excluida)
+     * @return La propia plantilla
+     */
+    public PlantillaHorario agregarTramo(DayOfWeek dia, LocalTime inicio, LocalTime fin) {
+        int desde = inicio.getHour() * 60 + inicio.getMinute();
+        int hasta = fin.equals(LocalTime.MIDNIGHT) ? 24 * 60 : fin.getHour() * 60 + fin.getMinute();
+        if (hasta <= desde) {
+            throw new IllegalArgumentException("Tramo vacío: " + inicio + " - " + fin);
+        }
+        List<int[]> delDia = tramos.computeIfAbsent(dia, d -> new ArrayList<>());
+        delDia.add(new int[]{desde, hasta});
+        delDia.sort((a, b) -> Integer.compare(a[0], b[0]));
+        return this;
+    }
+
+    /**
+     * Tramos de un día en minutos desde medianoche, ordenados
+     * @param dia Día de la semana
+     * @return Array de pares {inicio, fin}
+     */
+    int[][] tramos(DayOfWeek dia) {
+        List<int[]> delDia = tramos.get(dia);
+        return delDia == null ? SIN_TRAMOS : delDia.toArray(new int[0][]);
+    }
+}
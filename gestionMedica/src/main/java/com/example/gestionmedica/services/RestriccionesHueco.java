@@ -0,0 +1,65 @@
+package com.example.gestionmedica.services;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Restricciones opcionales de la búsqueda de huecos (franja horaria, días, paso)
+ */
+public class RestriccionesHueco {
+
+    private LocalTime horaMinima = LocalTime.MIDNIGHT;
+    private LocalTime horaMaxima = null;
+    private final Set<DayOfWeek> diasExcluidos = EnumSet.noneOf(DayOfWeek.class);
+    private int pasoMinutos = 15;
+
+    public LocalTime getHoraMinima() {
+        return horaMinima;
+    }
+
+    /**
+     * Hora a partir de la cual puede empezar el hueco
+     */
+    public RestriccionesHueco setHoraMinima(LocalTime horaMinima) {
+        this.horaMinima = horaMinima;
+        return this;
+    }
+
+    public LocalTime getHoraMaxima() {
+        return horaMaxima;
+    }
+
+    /**
+     * Hora antes de la cual tiene que terminar el hueco (null = sin límite)
+     */
+    public RestriccionesHueco setHoraMaxima(LocalTime horaMaxima) {
+        this.horaMaxima = horaMaxima;
+        return this;
+    }
+
+    public Set<DayOfWeek> getDiasExcluidos() {
+        return diasExcluidos;
+    }
+
+    public RestriccionesHueco excluirDia(DayOfWeek dia) {
+        diasExcluidos.add(dia);
+        return this;
+    }
+
+    public int getPasoMinutos() {
+        return pasoMinutos;
+    }
+
+    /**
+     * Separación entre horas de inicio candidatas, contada desde el inicio del tramo
+     */
+    public RestriccionesHueco setPasoMinutos(int pasoMinutos) {
+        if (pasoMinutos <= 0) {
+            throw new IllegalArgumentException("El paso debe ser positivo");
+        }
+        this.pasoMinutos = pasoMinutos;
+        return this;
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.gestionmedica.services;
+
+import com.example.gestionmedica.dao.LoginDAO;
+import com.example.gestionmedica.models.Usuario;
+import com.example.gestionmedica.utils.CacheTTL;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Login con caché de usuarios validados y freno a los intentos fallidos
+ *
+ * Un login correcto se guarda unos minutos (con un hash salado de la contraseña,
+ * nunca la contraseña) para que repetirlo no vuelva a la BD, p. ej. en el cambio
+ * de turno o al reabrir sesión en el mismo puesto
+ *
+ * Cada nombre de usuario tiene una cubeta de fichas: cada intento que llega a la BD
+ * gasta una y se recuperan con el tiempo. Con la cubeta vacía se rechaza sin
+ * consultar, así una ráfaga de contraseñas contra un usuario no ocupa el pool.
+ * Un login correcto la rellena
+ */
+public class ServicioLogin {
+
+    // Usuarios validados: poco tiempo, para que las bajas y cambios de contraseña se noten pronto
+    private static final long TTL_SESIONES_MS = 2 * 60_000;
+    private static final int CAPACIDAD_SESIONES = 1_000;
+
+    // Cubeta: 5 intentos seguidos y luego uno cada 30 segundos
+    private static final int INTENTOS_SEGUIDOS = 5;
+    private static final long NANOS_POR_INTENTO = TimeUnit.SECONDS.toNanos(30);
+
+    // Con más cubetas que esto se quitan las que ya están llenas
+    private static final int MAXIMO_CUBETAS = 10_000;
+
+    private static final ServicioLogin INSTANCIA = new ServicioLogin(new LoginDAO());
+
+    private final LoginDAO loginDAO;
+    private final CacheTTL<String, Sesion> sesiones = new CacheTTL<>(CAPACIDAD_SESIONES, TTL_SESIONES_MS);
+    private final ConcurrentMap<String, Cubeta> cubetas = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, String> especialidades = new ConcurrentHashMap<>();
+    private final byte[] sal = new byte[16];
+
+    ServicioLogin(LoginDAO loginDAO) {
+        this.loginDAO = loginDAO;
+        new SecureRandom().nextBytes(sal);
+    }
+
+    public static ServicioLogin getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Comprueba las credenciales
+     * @param username Usuario
+     * @param password Contraseña
+     * @return Usuario (una copia) o null si no son válidas o hay demasiados intentos fallidos
+     */
+    public Usuario login(String username, String password) {
+        if (username == null || password == null) {
+            return null;
+        }
+        byte[] hash = hash(username, password);
+
+        long generacion = sesiones.getGeneracion();
+        Sesion sesion = sesiones.obtener(username);
+        if (sesion != null && MessageDigest.isEqual(sesion.hash, hash)) {
+            return copiar(sesion.usuario);
+        }
+
+        // La ficha se gasta antes de consultar: en una ráfaga solo pasan las que haya
+        Cubeta cubeta = cubetas.computeIfAbsent(username, u -> new Cubeta());
+        if (!cubeta.gastar(System.nanoTime())) {
+            System.err.println("✗ Demasiados intentos de login para " + username);
+            return null;
+        }
+
+        Usuario usuario = loginDAO.login(username, password);
+        if (usuario == null) {
+            purgarCubetas();
+            return null;
+        }
+        cubetas.remove(username, cubeta);
+        sesiones.guardar(username, new Sesion(hash, copiar(usuario)), generacion);
+        return usuario;
+    }
+
+    /**
+     * Segundos hasta que el usuario pueda volver a intentarlo
+     * @param username Usuario
+     * @return 0 si puede intentarlo ya
+     */
+    public long segundosDeEspera(String username) {
+        Cubeta cubeta = username != null ? cubetas.get(username) : null;
+        if (cubeta == null) {
+            return 0;
+        }
+        long espera = cubeta.esperaNanos(System.nanoTime());
+        return espera <= 0 ? 0 : TimeUnit.NANOSECONDS.toSeconds(espera) + 1;
+    }
+
+    /**
+     * Especialidad de un usuario médico; se consulta la primera vez que se pide
+     * @param usuario Usuario validado
+     * @return Especialidad o null si no es médico
+     */
+    public String getEspecialidad(Usuario usuario) {
+        if (!"medico".equals(usuario.getRol())) {
+            return null;
+        }
+        String especialidad = especialidades.get(usuario.getId());
+        if (especialidad == null) {
+            especialidad = loginDAO.obtenerEspecialidad(usuario.getId());
+            if (especialidad != null) {
+                especialidades.put(usuario.getId(), especialidad);
+            }
+        }
+        return especialidad;
+    }
+
+    /**
+     * Olvida el login cacheado de un usuario (p. ej. al cambiar su contraseña o darlo de baja)
+     * @param username Usuario
+     */
+    public void invalidar(String username) {
+        sesiones.invalidar(username);
+    }
+
+    /**
+     * Olvida todos los logins cacheados
+     */
+    public void invalidarTodo() {
+        sesiones.invalidarTodo();
+        especialidades.clear();
+    }
+
+    public CacheTTL.Estadisticas getEstadisticasCache() {
+        return sesiones.obtenerEstadisticas();
+    }
+
+    private byte[] hash(String username, String password) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(sal);
+            sha.update(username.getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0);
+            sha.update(password.getBytes(StandardCharsets.UTF_8));
+            return sha.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private void purgarCubetas() {
+        if (cubetas.size() > MAXIMO_CUBETAS) {
+            long ahora = System.nanoTime();
+            cubetas.values().removeIf(cubeta -> cubeta.llena(ahora));
+        }
+    }
+
+    private static Usuario copiar(Usuario usuario) {
+        Usuario copia = new Usuario(usuario.getUsername(), usuario.getRol(), usuario.getNombre());
+        copia.setId(usuario.getId());
+        copia.setActivo(usuario.isActivo());
+        return copia;
+    }
+
+    /**
+     * Login validado: hash de la contraseña y usuario
+     */
+    private static class Sesion {
+        final byte[] hash;
+        final Usuario usuario;
+
+        Sesion(byte[] hash, Usuario usuario) {
+            this.hash = hash;
+            this.usuario = usuario;
+        }
+    }
+
+    /**
+     * Cubeta de fichas sin bloqueos: en lugar de contar fichas guarda el instante
+     * en que volverá a estar llena, y se actualiza con un CAS
+     */
+    private static class Cubeta {
+        // Instante (nanoTime) hasta el que están "ocupadas" las fichas gastadas
+        private final AtomicLong ocupadaHasta = new AtomicLong(System.nanoTime());
+
+        boolean gastar(long ahora) {
+            while (true) {
+                long actual = ocupadaHasta.get();
+                long nuevo = Math.max(actual, ahora) + NANOS_POR_INTENTO;
+                if (nuevo - ahora > INTENTOS_SEGUIDOS * NANOS_POR_INTENTO) {
+                    return false;
+                }
+                if (ocupadaHasta.compareAndSet(actual, nuevo)) {
+                    return true;
+                }
+            }
+        }
+
+        long esperaNanos(long ahora) {
+            long ocupada = ocupadaHasta.get();
+            return Math.max(ocupada, ahora) + NANOS_POR_INTENTO - ahora - INTENTOS_SEGUIDOS * NANOS_POR_INTENTO;
+        }
+
+        boolean llena(long ahora) {
+            return ocupadaHasta.get() - ahora <= 0;
+        }
+    }
+}
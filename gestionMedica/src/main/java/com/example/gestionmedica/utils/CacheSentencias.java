@@ -0,0 +1,205 @@
+package com.example.gestionmedica.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché LRU de sentencias preparadas de una conexión física del pool, indexada por el texto SQL
+ * Al cerrar la sentencia desde el DAO no se cierra la real: se limpian sus parámetros
+ * y queda lista para la siguiente llamada con el mismo SQL
+ * No es thread-safe: la usa solo el hilo que tiene prestada la conexión
+ */
+class CacheSentencias {
+
+    // Cambiar estos parámetros deja la sentencia en un estado distinto al recién preparado
+    private static final Set<String> AJUSTES = Set.of(
+            "setFetchSize", "setFetchDirection", "setMaxRows", "setLargeMaxRows",
+            "setMaxFieldSize", "setQueryTimeout", "setEscapeProcessing",
+            "setPoolable", "closeOnCompletion", "setCursorName");
+
+    private final int capacidad;
+    private final LongAdder aciertos;
+    private final LongAdder fallos;
+    private final LinkedHashMap<String, Entrada> entradas;
+
+    CacheSentencias(int capacidad, LongAdder aciertos, LongAdder fallos) {
+        this.capacidad = capacidad;
+        this.aciertos = aciertos;
+        this.fallos = fallos;
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Devuelve una sentencia preparada para el SQL, reutilizando la cacheada si está libre
+     * @param real Conexión física
+     * @param conexionPrestada Envoltorio de la conexión que ve el DAO
+     * @param sql Texto SQL
+     * @return Sentencia cuyo close() la devuelve a la caché
+     */
+    PreparedStatement preparar(Connection real, Connection conexionPrestada, String sql) throws SQLException {
+        if (capacidad <= 0) {
+            return SentenciaMedida.envolver(real.prepareStatement(sql), sql);
+        }
+
+        Entrada entrada = entradas.get(sql);
+        if (entrada != null && entrada.enUso == null) {
+            aciertos.increment();
+            return entrada.prestar(conexionPrestada);
+        }
+        if (entrada != null) {
+            // El mismo SQL ya está abierto (consulta anidada): sentencia suelta sin cachear
+            fallos.increment();
+            return SentenciaMedida.envolver(real.prepareStatement(sql), sql);
+        }
+
+        fallos.increment();
+        entrada = new Entrada(sql, real.prepareStatement(sql));
+        entradas.put(sql, entrada);
+        desalojarSobrantes();
+        return entrada.prestar(conexionPrestada);
+    }
+
+    /**
+     * Marca como cerradas las sentencias que el DAO no cerró antes de devolver la conexión
+     */
+    void liberarTodas() {
+        for (Entrada entrada : new ArrayList<>(entradas.values())) {
+            if (entrada.enUso != null) {
+                entrada.enUso.cerrar();
+            }
+        }
+    }
+
+    int getTamano() {
+        return entradas.size();
+    }
+
+    private void desalojarSobrantes() {
+        List<Entrada> desalojadas = new ArrayList<>();
+        Iterator<Map.Entry<String, Entrada>> it = entradas.entrySet().iterator();
+        while (entradas.size() - desalojadas.size() > capacidad && it.hasNext()) {
+            Entrada entrada = it.next().getValue();
+            if (entrada.enUso == null) {
+                it.remove();
+                desalojadas.add(entrada);
+            }
+        }
+        for (Entrada entrada : desalojadas) {
+            entrada.cerrarReal();
+        }
+    }
+
+    private void descartar(Entrada entrada) {
+        entradas.remove(entrada.sql, entrada);
+        entrada.cerrarReal();
+    }
+
+    /**
+     * Sentencia real guardada en la caché
+     */
+    private class Entrada {
+        final String sql;
+        final PreparedStatement real;
+        ManejadorSentencia enUso;
+
+        Entrada(String sql, PreparedStatement real) {
+            this.sql = sql;
+            this.real = real;
+        }
+
+        PreparedStatement prestar(Connection conexionPrestada) {
+            enUso = new ManejadorSentencia(this, conexionPrestada);
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    CacheSentencias.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    enUso);
+        }
+
+        void devolver(boolean modificada) {
+            enUso = null;
+            if (modificada || entradas.get(sql) != this) {
+                descartar(this);
+                return;
+            }
+            try {
+                real.clearParameters();
+                real.clearBatch();
+            } catch (SQLException e) {
+                descartar(this);
+            }
+        }
+
+        void cerrarReal() {
+            try {
+                real.close();
+            } catch (SQLException e) {
+                // Ignorado: la sentencia se descarta igualmente
+            }
+        }
+    }
+
+    /**
+     * Envoltorio que ve el DAO: close() devuelve la sentencia a la caché
+     * El resto de llamadas pasan por SentenciaMedida (registro de consultas lentas)
+     */
+    private static class ManejadorSentencia implements InvocationHandler {
+        private final Entrada entrada;
+        private final Connection conexionPrestada;
+        private final SentenciaMedida medida;
+        private boolean cerrada;
+        private boolean modificada;
+
+        ManejadorSentencia(Entrada entrada, Connection conexionPrestada) {
+            this.entrada = entrada;
+            this.conexionPrestada = conexionPrestada;
+            this.medida = new SentenciaMedida(entrada.real, entrada.sql);
+        }
+
+        void cerrar() {
+            if (!cerrada) {
+                cerrada = true;
+                entrada.devolver(modificada);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String nombre = method.getName();
+            switch (nombre) {
+                case "close":
+                    cerrar();
+                    return null;
+                case "isClosed":
+                    return cerrada;
+                case "getConnection":
+                    return conexionPrestada;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "SentenciaCacheada[" + entrada.sql + "]";
+                default:
+                    break;
+            }
+            if (cerrada) {
+                throw new SQLException("La sentencia ya está cerrada");
+            }
+            if (AJUSTES.contains(nombre)) {
+                modificada = true;
+            }
+            return medida.invocar(method, args);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.gestionmedica.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché en memoria acotada por tamaño (LRU) y por tiempo de vida (TTL)
+ * Es thread-safe y lleva métricas de aciertos, fallos y desalojos
+ *
+ * Para no guardar datos obsoletos cuando una invalidación llega mientras se
+ * consultaba la BD, se lee la generación antes de consultar y se pasa al guardar:
+ * si hubo una invalidación entre medias, el valor no se guarda
+ * @param <K> Tipo de la clave
+ * @param <V> Tipo del valor
+ */
+public class CacheTTL<K, V> {
+
+    private final int capacidad;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entrada<V>> entradas;
+    private long generacion;
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+    private final LongAdder expirados = new LongAdder();
+
+    /**
+     * @param capacidad Número máximo de entradas
+     * @param ttlMs Tiempo de vida de cada entrada en milisegundos
+     */
+    public CacheTTL(int capacidad, long ttlMs) {
+        this.capacidad = capacidad;
+        this.ttlNanos = ttlMs * 1_000_000L;
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entrada<V>> eldest) {
+                if (size() > CacheTTL.this.capacidad) {
+                    desalojos.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Obtiene un valor si está en caché y no ha caducado
+     * @param clave Clave a buscar
+     * @return Valor cacheado o null
+     */
+    public synchronized V obtener(K clave) {
+        Entrada<V> entrada = entradas.get(clave);
+        if (entrada == null) {
+            fallos.increment();
+            return null;
+        }
+        if (System.nanoTime() - entrada.creada > ttlNanos) {
+            entradas.remove(clave);
+            expirados.increment();
+            fallos.increment();
+            return null;
+        }
+        aciertos.increment();
+        return entrada.valor;
+    }
+
+    /**
+     * Generación actual; cambia con cada invalidación
+     * @return Generación a pasar a {@link #guardar(Object, Object, long)}
+     */
+    public synchronized long getGeneracion() {
+        return generacion;
+    }
+
+    /**
+     * Guarda un valor leído de la BD si no ha habido invalidaciones desde que se leyó
+     * @param clave Clave
+     * @param valor Valor
+     * @param generacionLeida Generación obtenida antes de consultar la BD
+     */
+    public synchronized void guardar(K clave, V valor, long generacionLeida) {
+        if (generacionLeida == generacion) {
+            entradas.put(clave, new Entrada<>(valor, System.nanoTime()));
+        }
+    }
+
+    /**
+     * Elimina una entrada
+     * @param clave Clave a invalidar
+     */
+    public synchronized void invalidar(K clave) {
+        generacion++;
+        entradas.remove(clave);
+    }
+
+    /**
+     * Elimina todas las entradas
+     */
+    public synchronized void invalidarTodo() {
+        generacion++;
+        entradas.clear();
+    }
+
+    public synchronized int getTamano() {
+        return entradas.size();
+    }
+
+    /**
+     * Instantánea de las métricas de la caché
+     * @return Estadísticas actuales
+     */
+    public Estadisticas obtenerEstadisticas() {
+        return new Estadisticas(getTamano(), aciertos.sum(), fallos.sum(), desalojos.sum(), expirados.sum());
+    }
+
+    private static class Entrada<V> {
+        final V valor;
+        final long creada;
+
+        Entrada(V valor, long creada) {
+            this.valor = valor;
+            this.creada = creada;
+        }
+    }
+
+    /**
+     * Métricas de una caché
+     */
+    public static class Estadisticas {
+        private final int tamano;
+        private final long aciertos;
+        private final long fallos;
+        private final long desalojos;
+        private final long expirados;
+
+        Estadisticas(int tamano, long aciertos, long fallos, long desalojos, long expirados) {
+            this.tamano = tamano;
+            this.aciertos = aciertos;
+            this.fallos = fallos;
+            this.desalojos = desalojos;
+            this.expirados = expirados;
+        }
+
+        public int getTamano() { return tamano; }
+        public long getAciertos() { return aciertos; }
+        public long getFallos() { return fallos; }
+        public long getDesalojos() { return desalojos; }
+        public long getExpirados() { return expirados; }
+
+        public double getTasaAciertos() {
+            long total = aciertos + fallos;
+            return total == 0 ? 0 : (double) aciertos / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Cache{tamano=%d, aciertos=%d, fallos=%d, desalojos=%d, expirados=%d, tasa=%.1f%%}",
+                    tamano, aciertos, fallos, desalojos, expirados, getTasaAciertos() * 100);
+        }
+    }
+}
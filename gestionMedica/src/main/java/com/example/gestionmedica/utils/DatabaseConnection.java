@@ -1,52 +1,78 @@
 package com.example.gestionmedica.utils;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Clase Singleton para gestionar la conexión a la base de datos MySQL
+ * Punto de acceso único al pool de conexiones de la base de datos MySQL
  * Base de datos: hospital_mvp
+ *
+ * getConnection() presta una conexión del pool; al cerrarla (try-with-resources)
+ * vuelve al pool en lugar de cerrar el socket con MySQL
+ *
+ * getConnectionLectura() es para los métodos de solo lectura: si hay réplicas
+ * configuradas la presta una de ellas (ver {@link EnrutadorLecturas}) y si no, el
+ * primario. La conexión se configura con propiedades del sistema, p. ej. para
+ * probar en local con dos instancias:
+ *   -Dgestionmedica.bd.url=jdbc:mysql://localhost:3306/hospital_mvp
+ *   -Dgestionmedica.bd.replicas=localhost:3307
+ *   -Dgestionmedica.bd.replicas.sinReplicacion=true (si la segunda no es una réplica real)
  */
 public class DatabaseConnection {
     
     // Configuración de la base de datos
-    private static final String URL = "jdbc:mysql://localhost:3306/hospital_mvp";
-    private static final String USER = "root";
-    private static final String PASSWORD = "";
+    private static final String BASE_DATOS = "hospital_mvp";
+    private static final String URL = System.getProperty("gestionmedica.bd.url",
+            "jdbc:mysql://localhost:3306/" + BASE_DATOS);
+    private static final String USER = System.getProperty("gestionmedica.bd.usuario", "root");
+    private static final String PASSWORD = System.getProperty("gestionmedica.bd.password", "");
+    
+    // Réplicas de lectura: host:puerto o URL JDBC, separadas por comas (vacío = sin réplicas)
+    private static final String REPLICAS = System.getProperty("gestionmedica.bd.replicas", "");
+    private static final long RETRASO_MAXIMO_REPLICA_SEG = Long.getLong("gestionmedica.bd.replicas.retrasoMaximoSeg", 5);
+    private static final long COMPROBACION_REPLICAS_SEG = Long.getLong("gestionmedica.bd.replicas.comprobacionSeg", 5);
+    private static final boolean REPLICAS_SIN_REPLICACION = Boolean.getBoolean("gestionmedica.bd.replicas.sinReplicacion");
+    // Espera corta por una conexión de réplica: si no hay, se lee del primario
+    private static final long TIMEOUT_PRESTAMO_REPLICA_MS = 500;
     
     // Parámetros adicionales para MySQL 8.x
-    private static final String FULL_URL = URL 
-        + "?useSSL=false"
+    private static final String PARAMETROS = ""
+        + "useSSL=false"
         + "&serverTimezone=UTC"
-        + "&allowPublicKeyRetrieval=true";
+        + "&allowPublicKeyRetrieval=true"
+        // Sentencias preparadas en el servidor: el pool las cachea por conexión
+        + "&useServerPrepStmts=true"
+        // Los lotes JDBC se envían como un único INSERT multi-fila
+        + "&rewriteBatchedStatements=true";
+    
+    // Configuración del pool
+    private static final int POOL_MINIMO = 2;
+    private static final int POOL_MAXIMO = 10;
+    private static final long TIMEOUT_PRESTAMO_MS = 5_000;
+    private static final long MAXIMO_INACTIVA_MS = 5 * 60_000;
+    private static final int TIMEOUT_VALIDACION_SEG = 2;
+    private static final int CACHE_SENTENCIAS = 64;
+    
+    private static final String FULL_URL = conParametros(URL);
     
-    private static Connection connection = null;
+    private static volatile PoolConexiones pool = null;
+    private static volatile EnrutadorLecturas enrutador = null;
     
     // Constructor privado para evitar instanciación
     private DatabaseConnection() {
     }
     
     /**
-     * Obtiene una conexión a la base de datos (patrón Singleton)
+     * Obtiene una conexión del pool (se crea el pool la primera vez)
+     * Hay que cerrarla al terminar para devolverla al pool
      * @return Connection objeto de conexión activo
      * @throws SQLException si hay error al conectar
      */
     public static Connection getConnection() throws SQLException {
         try {
-            // Cargar el driver de MySQL
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            
-            // Si no existe conexión o está cerrada, crear una nueva
-            if (connection == null || connection.isClosed()) {
-                connection = DriverManager.getConnection(FULL_URL, USER, PASSWORD);
-                System.out.println("✓ Conexión exitosa a la base de datos hospital_mvp");
-            }
-            
-            return connection;
-            
-        } catch (ClassNotFoundException e) {
-            throw new SQLException("Driver MySQL no encontrado. Añade mysql-connector-java al pom.xml", e);
+            return obtenerPool().prestar();
         } catch (SQLException e) {
             System.err.println("✗ Error al conectar con la base de datos:");
             System.err.println("  - Verifica que MySQL esté ejecutándose");
@@ -57,37 +83,135 @@ public class DatabaseConnection {
     }
     
     /**
-     * Cierra la conexión a la base de datos
+     * Obtiene una conexión para leer: de una réplica si hay alguna disponible
+     * y no se acaba de escribir, y si no del primario
+     * Solo para consultas; escribir con ella puede fallar o perderse
+     * @return Connection objeto de conexión activo
+     * @throws SQLException si hay error al conectar con el primario
+     */
+    public static Connection getConnectionLectura() throws SQLException {
+        if (!REPLICAS.isBlank()) {
+            obtenerPool();
+            // closeConnection() puede dejarlo a null en cualquier momento: se lee una vez
+            EnrutadorLecturas actual = enrutador;
+            Connection conn = actual != null ? actual.prestar() : null;
+            if (conn != null) {
+                return conn;
+            }
+        }
+        return getConnection();
+    }
+    
+    /**
+     * Aviso de las sentencias del pool tras cada escritura (lectura de lo escrito)
+     */
+    static void registrarEscritura() {
+        EnrutadorLecturas actual = enrutador;
+        if (actual != null) {
+            actual.registrarEscritura();
+        }
+    }
+    
+    /**
+     * Devuelve el pool, creándolo si todavía no existe
+     */
+    private static PoolConexiones obtenerPool() throws SQLException {
+        PoolConexiones actual = pool;
+        if (actual != null && actual.estaAbierto()) {
+            return actual;
+        }
+        synchronized (DatabaseConnection.class) {
+            if (pool == null || !pool.estaAbierto()) {
+                try {
+                    // Cargar el driver de MySQL (solo una vez)
+                    Class.forName("com.mysql.cj.jdbc.Driver");
+                } catch (ClassNotFoundException e) {
+                    throw new SQLException("Driver MySQL no encontrado. Añade mysql-connector-java al pom.xml", e);
+                }
+                pool = new PoolConexiones(FULL_URL, USER, PASSWORD,
+                        POOL_MINIMO, POOL_MAXIMO,
+                        TIMEOUT_PRESTAMO_MS, MAXIMO_INACTIVA_MS, TIMEOUT_VALIDACION_SEG,
+                        CACHE_SENTENCIAS);
+                System.out.println("✓ Pool de conexiones creado para hospital_mvp (" 
+                        + POOL_MINIMO + "-" + POOL_MAXIMO + " conexiones)");
+                if (!REPLICAS.isBlank() && enrutador == null) {
+                    enrutador = crearEnrutador();
+                }
+            }
+            return pool;
+        }
+    }
+    
+    private static EnrutadorLecturas crearEnrutador() {
+        List<String> urls = new ArrayList<>();
+        for (String replica : REPLICAS.split(",")) {
+            if (!replica.isBlank()) {
+                String url = replica.strip();
+                urls.add(url.startsWith("jdbc:") ? url : "jdbc:mysql://" + url + "/" + BASE_DATOS);
+            }
+        }
+        System.out.println("✓ Lecturas repartidas entre " + urls.size() + " réplicas (retraso máximo " +
+                           RETRASO_MAXIMO_REPLICA_SEG + " s)");
+        return new EnrutadorLecturas(urls,
+                url -> new PoolConexiones(conParametros(url), USER, PASSWORD,
+                        0, POOL_MAXIMO,
+                        TIMEOUT_PRESTAMO_REPLICA_MS, MAXIMO_INACTIVA_MS, TIMEOUT_VALIDACION_SEG,
+                        CACHE_SENTENCIAS),
+                RETRASO_MAXIMO_REPLICA_SEG, COMPROBACION_REPLICAS_SEG, REPLICAS_SIN_REPLICACION);
+    }
+    
+    private static String conParametros(String url) {
+        return url + (url.contains("?") ? "&" : "?") + PARAMETROS;
+    }
+    
+    /**
+     * Cierra el pool y todas sus conexiones (también las de las réplicas)
      */
     public static void closeConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                System.out.println("✓ Conexión cerrada correctamente");
+        synchronized (DatabaseConnection.class) {
+            if (enrutador != null) {
+                enrutador.cerrar();
+                enrutador = null;
+            }
+            if (pool != null && pool.estaAbierto()) {
+                pool.cerrar();
+                System.out.println("✓ Conexiones cerradas correctamente");
             }
-        } catch (SQLException e) {
-            System.err.println("✗ Error al cerrar la conexión: " + e.getMessage());
         }
     }
     
     /**
-     * Verifica si la conexión está activa
-     * @return true si la conexión está activa
+     * Estado de las réplicas de lectura
+     * @return Una línea por réplica o null si no hay réplicas configuradas
+     */
+    public static String getResumenReplicas() {
+        EnrutadorLecturas actual = enrutador;
+        return actual != null ? actual.resumen() : null;
+    }
+    
+    /**
+     * Verifica si el pool está activo
+     * @return true si el pool está abierto
      */
     public static boolean isConnected() {
-        try {
-            return connection != null && !connection.isClosed();
-        } catch (SQLException e) {
-            return false;
-        }
+        PoolConexiones actual = pool;
+        return actual != null && actual.estaAbierto();
+    }
+    
+    /**
+     * Estadísticas del pool (activas, inactivas, esperas...)
+     * @return Estadísticas actuales o null si el pool no se ha creado
+     */
+    public static PoolConexiones.Estadisticas getEstadisticasPool() {
+        PoolConexiones actual = pool;
+        return actual != null ? actual.obtenerEstadisticas() : null;
     }
     
     /**
      * Método de prueba para verificar la conexión
      */
     public static void testConnection() {
-        try {
-            Connection conn = getConnection();
+        try (Connection conn = getConnection()) {
             if (conn != null) {
                 System.out.println("✓ Test de conexión exitoso");
                 System.out.println("  Base de datos: hospital_mvp");
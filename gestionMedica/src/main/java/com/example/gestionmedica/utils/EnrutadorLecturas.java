@@ -0,0 +1,220 @@
+package com.example.gestionmedica.utils;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Reparto de las lecturas entre las réplicas de la BD
+ *
+ * DatabaseConnection.getConnectionLectura() pide aquí una conexión: se elige la
+ * siguiente réplica sana por turnos (round robin) y, si ninguna sirve, se usa el
+ * primario. Una réplica sirve si la última comprobación respondió y su retraso
+ * respecto al primario no pasa del máximo. Las comprobaciones se hacen en un hilo
+ * daemon cada pocos segundos, no en cada préstamo
+ *
+ * Lectura de lo escrito: tras cualquier escritura (executeUpdate/executeBatch en
+ * una sentencia del pool) las lecturas van al primario durante el retraso máximo
+ * más un intervalo de comprobación, así el usuario siempre ve lo que acaba de
+ * guardar. La "sesión" es la aplicación entera: cada puesto es un usuario
+ */
+final class EnrutadorLecturas {
+
+    // Retraso "desconocido" de una instancia que no es réplica
+    private static final long SIN_REPLICACION = -2;
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger turno = new AtomicInteger();
+    private final long retrasoMaximoSeg;
+    private final boolean admitirSinReplicacion;
+    private final long ventanaPrimarioNanos;
+    private final ScheduledExecutorService comprobaciones;
+
+    private final LongAdder lecturasPrimario = new LongAdder();
+    // Hasta cuándo (nanoTime) se lee del primario tras la última escritura
+    private volatile long primarioHasta = System.nanoTime();
+
+    /**
+     * @param urls URLs JDBC de las réplicas
+     * @param crearPool Crea el pool de una réplica a partir de su URL
+     * @param retrasoMaximoSeg Retraso máximo admitido en una réplica
+     * @param comprobacionSeg Segundos entre comprobaciones
+     * @param admitirSinReplicacion Acepta instancias que no son réplicas (pruebas en local)
+     */
+    EnrutadorLecturas(List<String> urls, Function<String, PoolConexiones> crearPool,
+                      long retrasoMaximoSeg, long comprobacionSeg, boolean admitirSinReplicacion) {
+        for (String url : urls) {
+            replicas.add(new Replica(url, crearPool.apply(url)));
+        }
+        this.retrasoMaximoSeg = retrasoMaximoSeg;
+        this.admitirSinReplicacion = admitirSinReplicacion;
+        this.ventanaPrimarioNanos = TimeUnit.SECONDS.toNanos(retrasoMaximoSeg + comprobacionSeg);
+
+        this.comprobaciones = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "comprobacion-replicas");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        comprobaciones.scheduleWithFixedDelay(this::comprobar, 0, comprobacionSeg, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Presta una conexión de la siguiente réplica disponible
+     * @return Conexión o null si hay que leer del primario
+     */
+    Connection prestar() {
+        if (System.nanoTime() - primarioHasta < 0) {
+            lecturasPrimario.increment();
+            return null;
+        }
+        int n = replicas.size();
+        int inicio = Math.floorMod(turno.getAndIncrement(), n);
+        for (int i = 0; i < n; i++) {
+            Replica replica = replicas.get((inicio + i) % n);
+            if (!replica.disponible) {
+                continue;
+            }
+            try {
+                Connection conn = replica.pool.prestar();
+                replica.lecturas.increment();
+                return conn;
+            } catch (SQLException e) {
+                // Pool agotado o réplica caída desde la última comprobación: se prueba la siguiente
+                replica.fallos.increment();
+            }
+        }
+        lecturasPrimario.increment();
+        return null;
+    }
+
+    /**
+     * Anota una escritura: las lecturas irán al primario durante un rato
+     */
+    void registrarEscritura() {
+        long hasta = System.nanoTime() + ventanaPrimarioNanos;
+        // Evita escribir la variable compartida en cada sentencia de un lote
+        if (hasta - primarioHasta > TimeUnit.MILLISECONDS.toNanos(100)) {
+            primarioHasta = hasta;
+        }
+    }
+
+    /**
+     * Réplicas que pasaron la última comprobación
+     */
+    int disponibles() {
+        int n = 0;
+        for (Replica replica : replicas) {
+            if (replica.disponible) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    void cerrar() {
+        comprobaciones.shutdownNow();
+        for (Replica replica : replicas) {
+            replica.pool.cerrar();
+        }
+    }
+
+    String resumen() {
+        StringBuilder texto = new StringBuilder("✓ Réplicas de lectura (retraso máximo " + retrasoMaximoSeg +
+                                                " s, lecturas en el primario: " + lecturasPrimario.sum() + "):");
+        for (Replica replica : replicas) {
+            texto.append("\n  ").append(replica);
+        }
+        return texto.toString();
+    }
+
+    // ==================== Comprobaciones ====================
+
+    private void comprobar() {
+        for (Replica replica : replicas) {
+            boolean antes = replica.disponible;
+            String motivo;
+            try (Connection conn = replica.pool.prestar()) {
+                long retraso = leerRetraso(conn);
+                replica.retrasoSeg = retraso;
+                if (retraso < 0) {
+                    motivo = retraso == SIN_REPLICACION ? "no es una réplica" : "la replicación está parada";
+                } else if (retraso > retrasoMaximoSeg) {
+                    motivo = "retraso de " + retraso + " s";
+                } else {
+                    motivo = null;
+                }
+            } catch (SQLException e) {
+                replica.retrasoSeg = -1;
+                motivo = e.getMessage();
+            }
+            replica.disponible = motivo == null;
+
+            // Solo se avisa de los cambios de estado (y de las que no están al arrancar)
+            boolean primera = !replica.comprobada;
+            replica.comprobada = true;
+            if ((antes || primera) && motivo != null) {
+                System.err.println("✗ Réplica " + replica.url + " fuera de servicio: " + motivo);
+            } else if (!antes && motivo == null) {
+                System.out.println("✓ Réplica " + replica.url + " disponible (retraso " + replica.retrasoSeg + " s)");
+            }
+        }
+    }
+
+    /**
+     * Retraso de la réplica según SHOW REPLICA STATUS
+     * @return Segundos, -1 si la replicación está parada o SIN_REPLICACION si no es una réplica
+     */
+    private long leerRetraso(Connection conn) throws SQLException {
+        try {
+            return leerRetraso(conn, "SHOW REPLICA STATUS", "Seconds_Behind_Source");
+        } catch (SQLException e) {
+            // MySQL anterior a 8.0.22
+            return leerRetraso(conn, "SHOW SLAVE STATUS", "Seconds_Behind_Master");
+        }
+    }
+
+    private long leerRetraso(Connection conn, String sql, String columna) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            if (!rs.next()) {
+                return admitirSinReplicacion ? 0 : SIN_REPLICACION;
+            }
+            long retraso = rs.getLong(columna);
+            return rs.wasNull() ? -1 : retraso;
+        }
+    }
+
+    /**
+     * Una réplica con su pool y el resultado de la última comprobación
+     */
+    private static final class Replica {
+        final String url;
+        final PoolConexiones pool;
+        final LongAdder lecturas = new LongAdder();
+        final LongAdder fallos = new LongAdder();
+        volatile boolean disponible;
+        volatile boolean comprobada;
+        volatile long retrasoSeg = -1;
+
+        Replica(String url, PoolConexiones pool) {
+            this.url = url;
+            this.pool = pool;
+        }
+
+        @Override
+        public String toString() {
+            return url + ": " + (disponible ? "disponible" : "fuera de servicio") +
+                   ", retraso=" + (retrasoSeg < 0 ? "?" : retrasoSeg + " s") +
+                   ", lecturas=" + lecturas.sum() + ", fallos=" + fallos.sum();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.gestionmedica.utils;
+
+/**
+ * Filtro de Bloom sobre claves long: responde "seguro que no está" o "puede que esté"
+ * No admite borrados (una clave quitada sigue dando "puede que esté") y no es thread-safe
+ */
+public final class FiltroBloom {
+
+    private final long[] bits;
+    private final long mascara;
+    private final int funciones;
+    private final int capacidad;
+
+    /**
+     * @param capacidad Número de claves esperado
+     * @param tasaFalsosPositivos Tasa de falsos positivos deseada con esa capacidad (p. ej. 0.01)
+     */
+    public FiltroBloom(int capacidad, double tasaFalsosPositivos) {
+        this.capacidad = Math.max(1, capacidad);
+        // m = -n ln p / (ln 2)^2, redondeado a potencia de 2 para usar máscara
+        double optimo = -this.capacidad * Math.log(tasaFalsosPositivos) / (Math.log(2) * Math.log(2));
+        long numeroBits = Long.highestOneBit(Math.max(64L, (long) optimo) - 1) << 1;
+        this.bits = new long[(int) (numeroBits >>> 6)];
+        this.mascara = numeroBits - 1;
+        this.funciones = Math.max(1, (int) Math.round(numeroBits / (double) this.capacidad * Math.log(2)));
+    }
+
+    public void agregar(long clave) {
+        long h = mezclar(clave);
+        long h1 = h;
+        long h2 = (h >>> 32) | 1;
+        for (int i = 0; i < funciones; i++) {
+            long bit = (h1 + i * h2) & mascara;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @param clave Clave a comprobar
+     * @return false si la clave seguro que no se ha añadido
+     */
+    public boolean puedeContener(long clave) {
+        long h = mezclar(clave);
+        long h1 = h;
+        long h2 = (h >>> 32) | 1;
+        for (int i = 0; i < funciones; i++) {
+            long bit = (h1 + i * h2) & mascara;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getCapacidad() {
+        return capacidad;
+    }
+
+    private static long mezclar(long clave) {
+        // Finalizador de SplitMix64
+        long h = clave;
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.gestionmedica.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Particionado mensual de la tabla citas por fecha_cita (RANGE COLUMNS)
+ *
+ * Con la tabla particionada, las consultas por rango de fechas solo leen las
+ * particiones del rango y las citas antiguas quedan en particiones que ya no se
+ * tocan. Hay una partición por mes desde una fecha, otra con todo lo anterior
+ * y pmax (MAXVALUE) al final; mantener() va partiendo pmax para que siempre haya
+ * particiones para los próximos meses
+ *
+ * Es opcional (gestionmedica.citas.particionar=true) porque MySQL no admite claves
+ * foráneas en tablas particionadas y exige que la partición esté en toda clave única:
+ * particionar() quita las claves foráneas de citas y cambia la clave primaria a
+ * (id_cita, fecha_cita). Sin ellas, CitaDAO, PacienteDAO y MedicoDAO comprueban
+ * por su cuenta que cada cita apunta a un paciente y un médico que existen y que no
+ * se borra nadie con citas (IntegridadCitas)
+ *
+ * La conversión es un único ALTER TABLE: si falla, la tabla se queda como estaba.
+ * Copia la tabla entera: hacerla en una parada. Los ALTER TABLE se lanzan con el
+ * cerrojo de MigradorEsquema (dos puestos arrancando no los repiten) y con su espera
+ * corta por el bloqueo de metadatos: con una consulta larga en curso fallan y se
+ * reintentan en el próximo arranque, en lugar de bloquear todas las consultas a citas
+ */
+public class GestorParticiones {
+
+    public static final boolean PARTICIONAR = Boolean.getBoolean("gestionmedica.citas.particionar");
+
+    // Meses con partición propia por delante del actual
+    public static final int MESES_FUTUROS = 3;
+
+    private static final String TABLA = "citas";
+    private static final String PARTICION_MAXIMA = "pmax";
+    private static final String PARTICION_ANTIGUAS = "p_antiguas";
+    private static final DateTimeFormatter NOMBRE_MES = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private static final String SQL_PARTICIONES =
+            "SELECT partition_name, partition_description FROM information_schema.partitions " +
+            "WHERE table_schema = DATABASE() AND table_name = ? AND partition_name IS NOT NULL " +
+            "ORDER BY partition_ordinal_position";
+
+    private static final String SQL_CLAVES_FORANEAS =
+            "SELECT constraint_name FROM information_schema.referential_constraints " +
+            "WHERE constraint_schema = DATABASE() AND table_name = ?";
+
+    /**
+     * Indica si citas ya está particionada
+     * @return true si tiene particiones; false si no o si hubo un error
+     */
+    public boolean estaParticionada() {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return !leerLimites(conn).isEmpty();
+        } catch (SQLException e) {
+            System.err.println("✗ Error al leer las particiones de citas: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Particiona citas por meses (si no lo está ya)
+     * @param desde Primer mes con partición propia; lo anterior va a p_antiguas
+     * @return true si la tabla quedó particionada
+     */
+    public boolean particionar(LocalDate desde) {
+        LocalDate primerMes = desde.withDayOfMonth(1);
+        LocalDate ultimoMes = LocalDate.now().withDayOfMonth(1).plusMonths(MESES_FUTUROS);
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            if (!leerLimites(conn).isEmpty()) {
+                return true;
+            }
+            if (!MigradorEsquema.adquirirCerrojo(conn)) {
+                System.err.println("✗ Otra instancia está cambiando el esquema; no se particiona citas");
+                return false;
+            }
+            try {
+                // Otra instancia pudo particionarla mientras se esperaba el cerrojo
+                if (!leerLimites(conn).isEmpty()) {
+                    return true;
+                }
+                return particionar(conn, stmt, primerMes, ultimoMes);
+            } finally {
+                MigradorEsquema.liberarCerrojo(conn);
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al particionar citas: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Convierte la tabla (con el cerrojo del esquema ya tomado)
+     */
+    private static boolean particionar(Connection conn, Statement stmt, LocalDate primerMes,
+                                       LocalDate ultimoMes) throws SQLException {
+        System.out.println("✓ Particionando citas por meses (copia la tabla, puede tardar)...");
+
+        List<String> clavesForaneas = new ArrayList<>();
+        try (PreparedStatement consulta = conn.prepareStatement(SQL_CLAVES_FORANEAS)) {
+            consulta.setString(1, TABLA);
+            try (ResultSet rs = consulta.executeQuery()) {
+                while (rs.next()) {
+                    clavesForaneas.add(rs.getString(1));
+                }
+            }
+        }
+
+        // Claves foráneas, clave primaria y particiones en la misma sentencia (DDL atómico)
+        StringBuilder sql = new StringBuilder("ALTER TABLE " + TABLA + " ");
+        for (String clave : clavesForaneas) {
+            sql.append("DROP FOREIGN KEY `").append(clave).append("`, ");
+        }
+        sql.append("DROP PRIMARY KEY, ADD PRIMARY KEY (id_cita, fecha_cita) ");
+        sql.append("PARTITION BY RANGE COLUMNS (fecha_cita) (");
+        sql.append(definicion(PARTICION_ANTIGUAS, primerMes)).append(", ");
+        for (LocalDate mes = primerMes; !mes.isAfter(ultimoMes); mes = mes.plusMonths(1)) {
+            sql.append(definicion(mes.format(NOMBRE_MES), mes.plusMonths(1))).append(", ");
+        }
+        sql.append("PARTITION ").append(PARTICION_MAXIMA).append(" VALUES LESS THAN (MAXVALUE))");
+        MigradorEsquema.ejecutarDdl(stmt, sql.toString());
+
+        System.out.println("✓ Citas particionada desde " + primerMes + " hasta " + ultimoMes +
+                           " (" + clavesForaneas.size() + " claves foráneas eliminadas)");
+        return true;
+    }
+
+    /**
+     * Añade las particiones de los próximos MESES_FUTUROS meses que falten
+     * Parte pmax, que está vacía mientras haya particiones por delante, así que es inmediato
+     * @return Particiones añadidas (0 si no está particionada) o -1 si hubo un error
+     */
+    public int mantener() {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            if (mesesQueFaltan(leerLimites(conn)) == null) {
+                return 0;
+            }
+            if (!MigradorEsquema.adquirirCerrojo(conn)) {
+                System.err.println("✗ Otra instancia está cambiando el esquema; no se añaden particiones");
+                return -1;
+            }
+            try {
+                // Vuelve a leerlas: otra instancia pudo añadirlas mientras se esperaba el cerrojo
+                LocalDate[] meses = mesesQueFaltan(leerLimites(conn));
+                if (meses == null) {
+                    return 0;
+                }
+
+                StringBuilder sql = new StringBuilder("ALTER TABLE " + TABLA + " REORGANIZE PARTITION " +
+                                                      PARTICION_MAXIMA + " INTO (");
+                int nuevas = 0;
+                for (LocalDate mes = meses[0]; mes.isBefore(meses[1]); mes = mes.plusMonths(1)) {
+                    sql.append(definicion(mes.format(NOMBRE_MES), mes.plusMonths(1))).append(", ");
+                    nuevas++;
+                }
+                sql.append("PARTITION ").append(PARTICION_MAXIMA).append(" VALUES LESS THAN (MAXVALUE))");
+                MigradorEsquema.ejecutarDdl(stmt, sql.toString());
+
+                System.out.println("✓ Particiones de citas añadidas: " + nuevas);
+                return nuevas;
+            } finally {
+                MigradorEsquema.liberarCerrojo(conn);
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al mantener las particiones de citas: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Meses sin partición propia hasta MESES_FUTUROS por delante del actual
+     * @param limites Límites actuales (leerLimites)
+     * @return {primer mes que falta, mes siguiente al último} o null si no falta ninguno
+     *         (o si la tabla no está particionada)
+     */
+    private static LocalDate[] mesesQueFaltan(List<LocalDate> limites) {
+        if (limites.isEmpty()) {
+            return null;
+        }
+        LocalDate siguiente = limites.get(limites.size() - 1);
+        LocalDate hasta = LocalDate.now().withDayOfMonth(1).plusMonths(MESES_FUTUROS + 1);
+        return siguiente.isBefore(hasta) ? new LocalDate[] {siguiente, hasta} : null;
+    }
+
+    /**
+     * Límites superiores (VALUES LESS THAN) de las particiones, sin la de MAXVALUE
+     * @return Límites en orden o lista vacía si la tabla no está particionada
+     */
+    private static List<LocalDate> leerLimites(Connection conn) throws SQLException {
+        List<LocalDate> limites = new ArrayList<>();
+        boolean particionada = false;
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_PARTICIONES)) {
+            stmt.setString(1, TABLA);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    particionada = true;
+                    // RANGE COLUMNS con fechas: '2025-01-01' (con comillas) o MAXVALUE
+                    String descripcion = rs.getString(2).replace("'", "");
+                    if (!"MAXVALUE".equalsIgnoreCase(descripcion)) {
+                        limites.add(LocalDate.parse(descripcion));
+                    }
+                }
+            }
+        }
+        if (particionada && limites.isEmpty()) {
+            throw new SQLException("citas solo tiene la partición " + PARTICION_MAXIMA);
+        }
+        return limites;
+    }
+
+    private static String definicion(String nombre, LocalDate limite) {
+        return "PARTITION " + nombre + " VALUES LESS THAN ('" + limite + "')";
+    }
+}
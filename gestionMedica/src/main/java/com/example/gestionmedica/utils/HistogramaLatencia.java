@@ -0,0 +1,115 @@
+package com.example.gestionmedica.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias con cubetas logarítmicas (potencias de 2 en microsegundos)
+ * Es libre de bloqueos: se puede registrar desde muchos hilos a la vez
+ */
+public class HistogramaLatencia {
+
+    // La cubeta i cuenta valores en [2^i, 2^(i+1)) microsegundos; la 0 incluye < 1 µs
+    private static final int NUM_CUBETAS = 32;
+
+    private final AtomicLongArray cubetas = new AtomicLongArray(NUM_CUBETAS);
+    private final LongAdder conteo = new LongAdder();
+    private final LongAdder sumaMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Registra una medición
+     * @param nanos Duración en nanosegundos
+     */
+    public void registrar(long nanos) {
+        long micros = Math.max(0, nanos / 1_000);
+        int indice = micros == 0 ? 0 : Math.min(NUM_CUBETAS - 1, 63 - Long.numberOfLeadingZeros(micros));
+        cubetas.incrementAndGet(indice);
+        conteo.increment();
+        sumaMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    /**
+     * Número de mediciones registradas
+     * @return Conteo total
+     */
+    public long getConteo() {
+        return conteo.sum();
+    }
+
+    /**
+     * Media de las mediciones
+     * @return Media en microsegundos
+     */
+    public double getMediaMicros() {
+        long n = conteo.sum();
+        return n == 0 ? 0 : (double) sumaMicros.sum() / n;
+    }
+
+    /**
+     * Valor máximo registrado
+     * @return Máximo en microsegundos
+     */
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * Percentil aproximado (límite superior de la cubeta que lo contiene)
+     * @param percentil Valor entre 0 y 100
+     * @return Percentil en microsegundos
+     */
+    public long percentilMicros(double percentil) {
+        long[] copia = new long[NUM_CUBETAS];
+        long total = 0;
+        for (int i = 0; i < NUM_CUBETAS; i++) {
+            copia[i] = cubetas.get(i);
+            total += copia[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long objetivo = (long) Math.ceil(total * percentil / 100.0);
+        long acumulado = 0;
+        for (int i = 0; i < NUM_CUBETAS; i++) {
+            acumulado += copia[i];
+            if (acumulado >= Math.max(1, objetivo)) {
+                return Math.min(1L << (i + 1), Math.max(1, getMaxMicros()));
+            }
+        }
+        return getMaxMicros();
+    }
+
+    /**
+     * Copia de los contadores por cubeta
+     * @return Array con el conteo de cada cubeta
+     */
+    public long[] getCubetas() {
+        long[] copia = new long[NUM_CUBETAS];
+        for (int i = 0; i < NUM_CUBETAS; i++) {
+            copia[i] = cubetas.get(i);
+        }
+        return copia;
+    }
+
+    /**
+     * Pone todos los contadores a cero
+     */
+    public void reiniciar() {
+        for (int i = 0; i < NUM_CUBETAS; i++) {
+            cubetas.set(i, 0);
+        }
+        conteo.reset();
+        sumaMicros.reset();
+        maxMicros.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d media=%.0fµs p50=%dµs p99=%dµs max=%dµs",
+                getConteo(), getMediaMicros(), percentilMicros(50), percentilMicros(99), getMaxMicros());
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.gestionmedica.utils;
+
+import java.util.Arrays;
+
+/**
+ * Mapa de long a long con direccionamiento abierto (sondeo lineal), sin objetos por entrada
+ * Pensado para índices en memoria con millones de claves
+ * No es thread-safe; la clave Long.MIN_VALUE está reservada
+ */
+public final class MapaLongLong {
+
+    private static final long VACIA = Long.MIN_VALUE;
+    private static final double CARGA_MAXIMA = 0.6;
+
+    private long[] claves;
+    private long[] valores;
+    private int mascara;
+    private int tamano;
+    private int umbral;
+
+    /**
+     * @param capacidadInicial Número de entradas esperado
+     */
+    public MapaLongLong(int capacidadInicial) {
+        int capacidad = Integer.highestOneBit(Math.max(16, (int) (capacidadInicial / CARGA_MAXIMA)) - 1) << 1;
+        reservar(capacidad);
+    }
+
+    /**
+     * Valor asociado a la clave
+     * @param clave Clave a buscar
+     * @param ausente Valor a devolver si la clave no está
+     * @return Valor o ausente
+     */
+    public long obtener(long clave, long ausente) {
+        comprobarClave(clave);
+        int i = posicion(clave);
+        while (true) {
+            long actual = claves[i];
+            if (actual == clave) {
+                return valores[i];
+            }
+            if (actual == VACIA) {
+                return ausente;
+            }
+            i = (i + 1) & mascara;
+        }
+    }
+
+    public boolean contiene(long clave) {
+        comprobarClave(clave);
+        int i = posicion(clave);
+        while (true) {
+            long actual = claves[i];
+            if (actual == clave) {
+                return true;
+            }
+            if (actual == VACIA) {
+                return false;
+            }
+            i = (i + 1) & mascara;
+        }
+    }
+
+    /**
+     * Asocia un valor a la clave (sustituye el anterior si existía)
+     * @param clave Clave
+     * @param valor Valor
+     */
+    public void poner(long clave, long valor) {
+        comprobarClave(clave);
+        int i = posicion(clave);
+        while (true) {
+            long actual = claves[i];
+            if (actual == clave) {
+                valores[i] = valor;
+                return;
+            }
+            if (actual == VACIA) {
+                claves[i] = clave;
+                valores[i] = valor;
+                if (++tamano > umbral) {
+                    reservar(claves.length << 1);
+                }
+                return;
+            }
+            i = (i + 1) & mascara;
+        }
+    }
+
+    /**
+     * Elimina la clave
+     * @param clave Clave a eliminar
+     * @return true si estaba en el mapa
+     */
+    public boolean quitar(long clave) {
+        comprobarClave(clave);
+        int i = posicion(clave);
+        while (true) {
+            long actual = claves[i];
+            if (actual == VACIA) {
+                return false;
+            }
+            if (actual == clave) {
+                break;
+            }
+            i = (i + 1) & mascara;
+        }
+
+        // Desplazamiento hacia atrás: recoloca las claves siguientes del mismo grupo
+        int hueco = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mascara;
+            long siguiente = claves[j];
+            if (siguiente == VACIA) {
+                break;
+            }
+            int ideal = posicion(siguiente);
+            // La clave en j puede ocupar el hueco si su posición ideal no está entre (hueco, j]
+            if (((j - ideal) & mascara) >= ((j - hueco) & mascara)) {
+                claves[hueco] = siguiente;
+                valores[hueco] = valores[j];
+                hueco = j;
+            }
+        }
+        claves[hueco] = VACIA;
+        tamano--;
+        return true;
+    }
+
+    /**
+     * Recorre todas las entradas (en orden arbitrario)
+     * @param visitante Acción a aplicar a cada par clave-valor
+     */
+    public void paraCada(Visitante visitante) {
+        for (int i = 0; i < claves.length; i++) {
+            if (claves[i] != VACIA) {
+                visitante.visitar(claves[i], valores[i]);
+            }
+        }
+    }
+
+    public int tamano() {
+        return tamano;
+    }
+
+    public void vaciar() {
+        Arrays.fill(claves, VACIA);
+        tamano = 0;
+    }
+
+    /**
+     * Acción sobre un par clave-valor sin empaquetar en objetos
+     */
+    @FunctionalInterface
+    public interface Visitante {
+        void visitar(long clave, long valor);
+    }
+
+    private int posicion(long clave) {
+        // Mezcla de bits (finalizador de SplitMix64) para repartir claves consecutivas
+        long h = clave;
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        h = h ^ (h >>> 31);
+        return (int) h & mascara;
+    }
+
+    private void reservar(int capacidad) {
+        long[] clavesViejas = claves;
+        long[] valoresViejos = valores;
+
+        claves = new long[capacidad];
+        valores = new long[capacidad];
+        Arrays.fill(claves, VACIA);
+        mascara = capacidad - 1;
+        umbral = (int) (capacidad * CARGA_MAXIMA);
+        tamano = 0;
+
+        if (clavesViejas != null) {
+            for (int i = 0; i < clavesViejas.length; i++) {
+                if (clavesViejas[i] != VACIA) {
+                    poner(clavesViejas[i], valoresViejos[i]);
+                }
+            }
+        }
+    }
+
+    private static void comprobarClave(long clave) {
+        if (clave == VACIA) {
+            throw new IllegalArgumentException("La clave Long.MIN_VALUE está reservada");
+        }
+    }
+}
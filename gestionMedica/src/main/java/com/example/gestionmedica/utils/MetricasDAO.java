@@ -0,0 +1,302 @@
+package com.example.gestionmedica.utils;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de los métodos de los DAO: llamadas, errores, filas y latencia
+ *
+ * Cada método instrumentado tiene su Operacion (una constante del DAO). Registrar
+ * una llamada solo toca contadores LongAdder y el histograma, sin bloqueos, así que
+ * el coste es despreciable frente a la ida y vuelta a MySQL
+ *
+ * Las operaciones se publican como MXBeans (com.example.gestionmedica:type=DAO)
+ * para verlas en JConsole o VisualVM, y se pueden volcar periódicamente por consola
+ */
+public final class MetricasDAO {
+
+    private static final String DOMINIO_JMX = "com.example.gestionmedica";
+
+    private static final ConcurrentMap<String, Operacion> OPERACIONES = new ConcurrentHashMap<>();
+
+    private static volatile boolean publicadas;
+    private static ScheduledExecutorService volcado;
+
+    private MetricasDAO() {
+    }
+
+    /**
+     * Obtiene (o crea) la operación de un método de un DAO
+     * @param dao Nombre del DAO (p. ej. "CitaDAO")
+     * @param metodo Nombre del método
+     * @return Operación compartida por todas las llamadas a ese método
+     */
+    public static Operacion operacion(String dao, String metodo) {
+        Operacion operacion = OPERACIONES.computeIfAbsent(dao + "." + metodo, k -> new Operacion(dao, metodo));
+        if (publicadas) {
+            registrarJmx(operacion);
+        }
+        return operacion;
+    }
+
+    /**
+     * Publica las operaciones como MXBeans en el servidor de la plataforma
+     * Las que se creen después se publican al crearse
+     */
+    public static void publicarJmx() {
+        publicadas = true;
+        for (Operacion operacion : OPERACIONES.values()) {
+            registrarJmx(operacion);
+        }
+    }
+
+    /**
+     * Vuelca por consola las métricas cada cierto tiempo (en un hilo daemon)
+     * @param intervaloSegundos Segundos entre volcados
+     */
+    public static synchronized void iniciarVolcado(long intervaloSegundos) {
+        if (volcado != null) {
+            return;
+        }
+        volcado = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "volcado-metricas-dao");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        volcado.scheduleAtFixedRate(() -> System.out.println(resumen()),
+                intervaloSegundos, intervaloSegundos, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Detiene el volcado periódico
+     */
+    public static synchronized void detenerVolcado() {
+        if (volcado != null) {
+            volcado.shutdownNow();
+            volcado = null;
+        }
+    }
+
+    /**
+     * Operaciones con alguna llamada, de más a menos tiempo total
+     * @return Copia de la lista de operaciones
+     */
+    public static List<Operacion> getOperaciones() {
+        List<Operacion> lista = new ArrayList<>();
+        for (Operacion operacion : OPERACIONES.values()) {
+            if (operacion.getLlamadas() > 0) {
+                lista.add(operacion);
+            }
+        }
+        lista.sort(Comparator.comparingDouble(Operacion::getTiempoTotalMicros).reversed());
+        return lista;
+    }
+
+    /**
+     * Instantánea en texto de todas las operaciones con llamadas
+     * @return Una línea por operación
+     */
+    public static String resumen() {
+        StringBuilder texto = new StringBuilder("✓ Métricas DAO:");
+        for (Operacion operacion : getOperaciones()) {
+            texto.append("\n  ").append(operacion);
+        }
+        return texto.toString();
+    }
+
+    /**
+     * Pone a cero todas las operaciones
+     */
+    public static void reiniciar() {
+        for (Operacion operacion : OPERACIONES.values()) {
+            operacion.reiniciar();
+        }
+    }
+
+    private static void registrarJmx(Operacion operacion) {
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            ObjectName nombre = new ObjectName(DOMINIO_JMX + ":type=DAO,dao=" + operacion.getDao() +
+                                               ",name=" + operacion.getMetodo());
+            if (!servidor.isRegistered(nombre)) {
+                servidor.registerMBean(operacion, nombre);
+            }
+        } catch (JMException e) {
+            System.err.println("✗ Error al publicar la métrica " + operacion.getNombre() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Vista JMX de una operación
+     */
+    public interface OperacionMXBean {
+        long getLlamadas();
+        long getErrores();
+        long getFilas();
+        double getMediaMicros();
+        long getP50Micros();
+        long getP99Micros();
+        long getMaxMicros();
+        void reiniciar();
+    }
+
+    /**
+     * Contadores de un método de un DAO
+     */
+    public static final class Operacion implements OperacionMXBean {
+
+        private final String dao;
+        private final String metodo;
+        private final LongAdder errores = new LongAdder();
+        private final LongAdder filas = new LongAdder();
+        private final HistogramaLatencia latencias = new HistogramaLatencia();
+
+        private Operacion(String dao, String metodo) {
+            this.dao = dao;
+            this.metodo = metodo;
+        }
+
+        /**
+         * Empieza a medir una llamada; hay que llamar a terminar() al acabar (en un finally)
+         * @return Medición en curso
+         */
+        public Medicion iniciar() {
+            return new Medicion(this, System.nanoTime());
+        }
+
+        /**
+         * Registra una llamada ya medida
+         * @param nanos Duración
+         * @param filasLlamada Filas devueltas o afectadas
+         * @param error true si la llamada falló
+         */
+        public void registrar(long nanos, long filasLlamada, boolean error) {
+            latencias.registrar(nanos);
+            if (filasLlamada > 0) {
+                filas.add(filasLlamada);
+            }
+            if (error) {
+                errores.increment();
+            }
+        }
+
+        public String getDao() {
+            return dao;
+        }
+
+        public String getMetodo() {
+            return metodo;
+        }
+
+        public String getNombre() {
+            return dao + "." + metodo;
+        }
+
+        @Override
+        public long getLlamadas() {
+            return latencias.getConteo();
+        }
+
+        @Override
+        public long getErrores() {
+            return errores.sum();
+        }
+
+        @Override
+        public long getFilas() {
+            return filas.sum();
+        }
+
+        @Override
+        public double getMediaMicros() {
+            return latencias.getMediaMicros();
+        }
+
+        @Override
+        public long getP50Micros() {
+            return latencias.percentilMicros(50);
+        }
+
+        @Override
+        public long getP99Micros() {
+            return latencias.percentilMicros(99);
+        }
+
+        @Override
+        public long getMaxMicros() {
+            return latencias.getMaxMicros();
+        }
+
+        double getTiempoTotalMicros() {
+            return latencias.getMediaMicros() * latencias.getConteo();
+        }
+
+        @Override
+        public void reiniciar() {
+            errores.reset();
+            filas.reset();
+            latencias.reiniciar();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: llamadas=%d errores=%d filas=%d p50=%dµs p99=%dµs max=%dµs",
+                    getNombre(), getLlamadas(), getErrores(), getFilas(),
+                    getP50Micros(), getP99Micros(), getMaxMicros());
+        }
+    }
+
+    /**
+     * Una llamada en curso: acumula filas y error hasta que se termina
+     * No es thread-safe (cada llamada tiene la suya)
+     */
+    public static final class Medicion {
+
+        private final Operacion operacion;
+        private final long inicio;
+        private long filas;
+        private boolean error;
+        private boolean terminada;
+
+        private Medicion(Operacion operacion, long inicio) {
+            this.operacion = operacion;
+            this.inicio = inicio;
+        }
+
+        /**
+         * Suma filas devueltas o afectadas
+         * @param n Número de filas
+         */
+        public void filas(long n) {
+            filas += n;
+        }
+
+        /**
+         * Marca la llamada como fallida
+         */
+        public void error() {
+            error = true;
+        }
+
+        /**
+         * Registra la llamada en la operación (solo la primera vez)
+         */
+        public void terminar() {
+            if (!terminada) {
+                terminada = true;
+                operacion.registrar(System.nanoTime() - inicio, filas, error);
+            }
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.example.gestionmedica.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Aplica al arrancar las migraciones del esquema que aún no tiene la BD
+ *
+ * Las migraciones son scripts SQL en db/migraciones (recursos de la aplicación),
+ * listados en orden en indice.txt con nombres V<n>__<descripcion>.sql. Cada una
+ * aplicada se apunta en la tabla esquema_historial con su checksum; si un script
+ * ya aplicado cambia, no se sigue migrando
+ *
+ * Los CREATE INDEX se lanzan con ALGORITHM=INPLACE LOCK=NONE (si el script no
+ * dice otra cosa) para no bloquear las escrituras, y se omiten si el índice ya
+ * existe, p. ej. porque se creó a mano. Un cerrojo de MySQL (GET_LOCK) evita que
+ * dos instancias migren a la vez
+ *
+ * El DDL de MySQL no es transaccional: si una sentencia falla, las anteriores de
+ * la misma migración ya están aplicadas y hay que terminarla a mano
+ */
+public class MigradorEsquema {
+
+    public static final String CARPETA = "/db/migraciones/";
+    private static final String INDICE = "indice.txt";
+
+    private static final String CERROJO = "gestionmedica_migraciones";
+    // Espera máxima por el cerrojo si otra instancia está migrando (el arranque la espera)
+    private static final int ESPERA_CERROJO_SEG = Integer.getInteger("gestionmedica.esquema.esperaCerrojoSeg", 15);
+    // Espera máxima del DDL por el bloqueo de metadatos (p. ej. tras una consulta larga)
+    private static final int ESPERA_BLOQUEO_DDL_SEG = 10;
+
+    private static final String SQL_CREAR_HISTORIAL =
+            "CREATE TABLE IF NOT EXISTS esquema_historial (" +
+            "version INT PRIMARY KEY, " +
+            "descripcion VARCHAR(200) NOT NULL, " +
+            "checksum CHAR(64) NOT NULL, " +
+            "aplicada_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3), " +
+            "duracion_ms INT NOT NULL)";
+
+    private static final String SQL_EXISTE_INDICE =
+            "SELECT 1 FROM information_schema.statistics " +
+            "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ? LIMIT 1";
+
+    private static final Pattern NOMBRE = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final Pattern CREAR_INDICE =
+            Pattern.compile("(?is)CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+`?(\\w+)`?\\s+ON\\s+`?(\\w+)`?\\s*\\(.*");
+    private static final Pattern ALGORITMO = Pattern.compile("(?i)\\bALGORITHM\\s*=");
+
+    private final String carpeta;
+
+    public MigradorEsquema() {
+        this(CARPETA);
+    }
+
+    /**
+     * @param carpeta Carpeta de recursos con indice.txt y los scripts (con / al final)
+     */
+    public MigradorEsquema(String carpeta) {
+        this.carpeta = carpeta;
+    }
+
+    /**
+     * Aplica las migraciones pendientes, en orden
+     * @return true si el esquema quedó al día
+     */
+    public boolean migrar() {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return migrar(conn);
+        } catch (SQLException e) {
+            System.err.println("✗ Error al migrar el esquema: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Aplica las migraciones pendientes con una conexión propia (p. ej. la BD de los tests)
+     * @param conn Conexión a la BD a migrar (no se cierra)
+     * @return true si el esquema quedó al día
+     */
+    public boolean migrar(Connection conn) {
+        List<Migracion> migraciones;
+        try {
+            migraciones = leerMigraciones();
+        } catch (IOException | IllegalStateException e) {
+            System.err.println("✗ Error al leer las migraciones: " + e.getMessage());
+            return false;
+        }
+
+        try {
+            if (!adquirirCerrojo(conn)) {
+                System.err.println("✗ Otra instancia está migrando el esquema; se continúa sin migrar");
+                return false;
+            }
+            try {
+                return migrar(conn, migraciones);
+            } finally {
+                liberarCerrojo(conn);
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Error al migrar el esquema: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean migrar(Connection conn, List<Migracion> migraciones) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(SQL_CREAR_HISTORIAL);
+        }
+        Map<Integer, String> aplicadas = leerAplicadas(conn);
+        int ultimaAplicada = aplicadas.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+
+        int pendientes = 0;
+        for (Migracion migracion : migraciones) {
+            String checksum = aplicadas.get(migracion.version);
+            if (checksum != null) {
+                if (!checksum.equals(migracion.checksum)) {
+                    System.err.println("✗ La migración " + migracion.nombre + " ha cambiado desde que se aplicó");
+                    System.err.println("  Los cambios del esquema van en una migración nueva");
+                    return false;
+                }
+                continue;
+            }
+            if (migracion.version < ultimaAplicada) {
+                System.err.println("✗ La migración " + migracion.nombre + " es anterior a la V" +
+                                   ultimaAplicada + ", que ya está aplicada");
+                return false;
+            }
+            if (!aplicar(conn, migracion)) {
+                return false;
+            }
+            pendientes++;
+        }
+
+        int ultima = migraciones.isEmpty() ? 0 : migraciones.get(migraciones.size() - 1).version;
+        System.out.println("✓ Esquema al día en la V" + Math.max(ultima, ultimaAplicada) +
+                           (pendientes > 0 ? " (" + pendientes + " migraciones aplicadas)" : ""));
+        return true;
+    }
+
+    private boolean aplicar(Connection conn, Migracion migracion) throws SQLException {
+        List<String> sentencias = dividir(migracion.sql);
+        long inicio = System.nanoTime();
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET SESSION lock_wait_timeout = " + ESPERA_BLOQUEO_DDL_SEG);
+            try {
+                for (int i = 0; i < sentencias.size(); i++) {
+                    String sentencia = prepararIndice(conn, sentencias.get(i));
+                    if (sentencia == null) {
+                        continue;
+                    }
+                    try {
+                        stmt.execute(sentencia);
+                    } catch (SQLException e) {
+                        System.err.println("✗ Error en la migración " + migracion.nombre + " (sentencia " +
+                                           (i + 1) + " de " + sentencias.size() + "): " + e.getMessage());
+                        if (i > 0) {
+                            System.err.println("  Las sentencias anteriores ya se aplicaron: hay que terminarla a mano");
+                        }
+                        return false;
+                    }
+                }
+            } finally {
+                stmt.execute("SET SESSION lock_wait_timeout = DEFAULT");
+            }
+        }
+
+        long duracionMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO esquema_historial (version, descripcion, checksum, duracion_ms) VALUES (?, ?, ?, ?)")) {
+            stmt.setInt(1, migracion.version);
+            stmt.setString(2, migracion.descripcion);
+            stmt.setString(3, migracion.checksum);
+            stmt.setInt(4, (int) Math.min(Integer.MAX_VALUE, duracionMs));
+            stmt.executeUpdate();
+        }
+        System.out.println("✓ Migración aplicada: " + migracion.nombre + " (" + duracionMs + " ms)");
+        return true;
+    }
+
+    /**
+     * Prepara un CREATE INDEX para crearlo en línea
+     * @return Sentencia a ejecutar o null si el índice ya existe (las demás sentencias, tal cual)
+     */
+    private static String prepararIndice(Connection conn, String sentencia) throws SQLException {
+        Matcher m = CREAR_INDICE.matcher(sentencia);
+        if (!m.matches()) {
+            return sentencia;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_EXISTE_INDICE)) {
+            stmt.setString(1, m.group(2));
+            stmt.setString(2, m.group(1));
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    System.out.println("  El índice " + m.group(1) + " ya existe en " + m.group(2) + ", se omite");
+                    return null;
+                }
+            }
+        }
+        return ALGORITMO.matcher(sentencia).find() ? sentencia : sentencia + " ALGORITHM=INPLACE LOCK=NONE";
+    }
+
+    private static Map<Integer, String> leerAplicadas(Connection conn) throws SQLException {
+        Map<Integer, String> aplicadas = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT version, checksum FROM esquema_historial");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                aplicadas.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        return aplicadas;
+    }
+
+    /**
+     * Ejecuta una sentencia DDL suelta con la espera corta por el bloqueo de metadatos
+     * Si una consulta larga tiene la tabla, el DDL falla en lugar de quedarse esperando
+     * y dejar en cola detrás de él todas las consultas a esa tabla
+     */
+    static void ejecutarDdl(Statement stmt, String sql) throws SQLException {
+        stmt.execute("SET SESSION lock_wait_timeout = " + ESPERA_BLOQUEO_DDL_SEG);
+        try {
+            stmt.execute(sql);
+        } finally {
+            stmt.execute("SET SESSION lock_wait_timeout = DEFAULT");
+        }
+    }
+
+    /**
+     * Toma el cerrojo de cambios de esquema: migraciones y particiones (GestorParticiones)
+     * @return false si otra instancia lo tiene y no lo suelta a tiempo
+     */
+    static boolean adquirirCerrojo(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, CERROJO);
+            stmt.setInt(2, ESPERA_CERROJO_SEG);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    static void liberarCerrojo(Connection conn) {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, CERROJO);
+            stmt.executeQuery().close();
+        } catch (SQLException e) {
+            System.err.println("✗ Error al liberar el cerrojo del esquema: " + e.getMessage());
+        }
+    }
+
+    // ==================== Lectura de los scripts ====================
+
+    /**
+     * Lee indice.txt y los scripts que lista
+     * @return Migraciones en orden de versión
+     * @throws IllegalStateException si el índice está mal (nombres, versiones repetidas o desordenadas)
+     */
+    List<Migracion> leerMigraciones() throws IOException {
+        List<Migracion> migraciones = new ArrayList<>();
+        for (String linea : leerRecurso(INDICE).split("\n")) {
+            String nombre = linea.strip();
+            if (nombre.isEmpty() || nombre.startsWith("#")) {
+                continue;
+            }
+            Matcher m = NOMBRE.matcher(nombre);
+            if (!m.matches()) {
+                throw new IllegalStateException("nombre de migración no válido: " + nombre);
+            }
+            int version = Integer.parseInt(m.group(1));
+            if (!migraciones.isEmpty() && version <= migraciones.get(migraciones.size() - 1).version) {
+                throw new IllegalStateException("la V" + version + " está repetida o fuera de orden en " + INDICE);
+            }
+            String sql = leerRecurso(nombre);
+            migraciones.add(new Migracion(version, m.group(2).replace('_', ' '), nombre, sql, checksum(sql)));
+        }
+        return migraciones;
+    }
+
+    private String leerRecurso(String nombre) throws IOException {
+        try (InputStream entrada = MigradorEsquema.class.getResourceAsStream(carpeta + nombre)) {
+            if (entrada == null) {
+                throw new IOException("no se encuentra " + carpeta + nombre);
+            }
+            // Mismo checksum con saltos de línea de Windows o de Unix
+            return new String(entrada.readAllBytes(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+        }
+    }
+
+    private static String checksum(String sql) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha.digest(sql.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Divide un script en sentencias por los ; que no están en textos ni comentarios
+     * No admite DELIMITER: los triggers tienen que ser de una sola sentencia
+     * @param sql Script
+     * @return Sentencias sin comentarios ni el ; final
+     */
+    static List<String> dividir(String sql) {
+        List<String> sentencias = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        int n = sql.length();
+        int i = 0;
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                int fin = i + 1;
+                while (fin < n && sql.charAt(fin) != c) {
+                    fin += sql.charAt(fin) == '\\' ? 2 : 1;
+                }
+                fin = Math.min(fin + 1, n);
+                actual.append(sql, i, fin);
+                i = fin;
+            } else if (c == '#' || (c == '-' && sql.startsWith("--", i)
+                    && (i + 2 == n || Character.isWhitespace(sql.charAt(i + 2))))) {
+                while (i < n && sql.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && sql.startsWith("/*", i)) {
+                int fin = sql.indexOf("*/", i + 2);
+                i = fin < 0 ? n : fin + 2;
+                actual.append(' ');
+            } else if (c == ';') {
+                agregar(sentencias, actual);
+                i++;
+            } else {
+                actual.append(c);
+                i++;
+            }
+        }
+        agregar(sentencias, actual);
+        return sentencias;
+    }
+
+    private static void agregar(List<String> sentencias, StringBuilder actual) {
+        String sentencia = actual.toString().strip();
+        if (!sentencia.isEmpty()) {
+            sentencias.add(sentencia);
+        }
+        actual.setLength(0);
+    }
+
+    /**
+     * Un script de migración
+     */
+    static final class Migracion {
+        final int version;
+        final String descripcion;
+        final String nombre;
+        final String sql;
+        final String checksum;
+
+        Migracion(int version, String descripcion, String nombre, String sql, String checksum) {
+            this.version = version;
+            this.descripcion = descripcion;
+            this.nombre = nombre;
+            this.sql = sql;
+            this.checksum = checksum;
+        }
+    }
+}
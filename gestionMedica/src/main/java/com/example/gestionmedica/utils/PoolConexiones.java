@@ -0,0 +1,498 @@
+package com.example.gestionmedica.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool acotado de conexiones JDBC
+ * Las conexiones prestadas son envoltorios: al llamar a close() la conexión
+ * física vuelve al pool en lugar de cerrarse, así los DAO pueden seguir
+ * usando try-with-resources sin reconectar en cada consulta
+ *
+ * Cada conexión física mantiene además su propia caché LRU de sentencias
+ * preparadas (ver {@link CacheSentencias}), de modo que un mismo SQL solo se
+ * prepara en el servidor una vez por conexión
+ */
+public class PoolConexiones {
+
+    // Si la conexión se usó hace menos de esto, no se valida al prestarla
+    private static final long VENTANA_SIN_VALIDAR_MS = 500;
+
+    private final String url;
+    private final String usuario;
+    private final String password;
+    private final int tamanoMinimo;
+    private final int tamanoMaximo;
+    private final long timeoutPrestamoMs;
+    private final long tiempoMaximoInactivaMs;
+    private final int timeoutValidacionSeg;
+    private final int tamanoCacheSentencias;
+
+    // Conexiones libres; la más reciente va delante (LIFO) para reutilizar las "calientes"
+    private final ArrayDeque<ConexionFisica> inactivas = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition disponible = lock.newCondition();
+    private int totalConexiones;
+    private int esperando;
+    private boolean cerrado;
+
+    // Estadísticas
+    private final LongAdder prestamos = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder creadas = new LongAdder();
+    private final LongAdder destruidas = new LongAdder();
+    private final HistogramaLatencia esperas = new HistogramaLatencia();
+    private final LongAdder aciertosSentencias = new LongAdder();
+    private final LongAdder fallosSentencias = new LongAdder();
+
+    private final ScheduledExecutorService mantenimiento;
+
+    /**
+     * Crea el pool. Las conexiones físicas se abren bajo demanda y
+     * la tarea de mantenimiento rellena hasta el tamaño mínimo
+     * @param url URL JDBC
+     * @param usuario Usuario de la BD
+     * @param password Contraseña de la BD
+     * @param tamanoMinimo Conexiones que se mantienen abiertas aunque estén inactivas
+     * @param tamanoMaximo Máximo de conexiones físicas abiertas a la vez
+     * @param timeoutPrestamoMs Tiempo máximo de espera por una conexión libre
+     * @param tiempoMaximoInactivaMs Tiempo tras el que se cierra una conexión inactiva sobrante
+     * @param timeoutValidacionSeg Timeout de la validación al prestar
+     * @param tamanoCacheSentencias Sentencias preparadas cacheadas por conexión (0 para desactivar)
+     */
+    public PoolConexiones(String url, String usuario, String password,
+                          int tamanoMinimo, int tamanoMaximo,
+                          long timeoutPrestamoMs, long tiempoMaximoInactivaMs,
+                          int timeoutValidacionSeg, int tamanoCacheSentencias) {
+        if (tamanoMinimo < 0 || tamanoMaximo < 1 || tamanoMinimo > tamanoMaximo) {
+            throw new IllegalArgumentException("Tamaños de pool no válidos: min=" + tamanoMinimo + ", max=" + tamanoMaximo);
+        }
+        this.url = url;
+        this.usuario = usuario;
+        this.password = password;
+        this.tamanoMinimo = tamanoMinimo;
+        this.tamanoMaximo = tamanoMaximo;
+        this.timeoutPrestamoMs = timeoutPrestamoMs;
+        this.tiempoMaximoInactivaMs = tiempoMaximoInactivaMs;
+        this.timeoutValidacionSeg = timeoutValidacionSeg;
+        this.tamanoCacheSentencias = tamanoCacheSentencias;
+
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "pool-conexiones-mantenimiento");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        long periodo = Math.max(1_000, tiempoMaximoInactivaMs / 4);
+        mantenimiento.scheduleWithFixedDelay(this::mantener, 0, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Presta una conexión del pool, esperando como mucho el timeout de préstamo
+     * @return Conexión que vuelve al pool al cerrarla
+     * @throws SQLException si no hay conexión libre a tiempo o falla al conectar
+     */
+    public Connection prestar() throws SQLException {
+        long inicio = System.nanoTime();
+        long limite = inicio + TimeUnit.MILLISECONDS.toNanos(timeoutPrestamoMs);
+
+        while (true) {
+            ConexionFisica fisica;
+            boolean crear = false;
+
+            lock.lock();
+            try {
+                while (!cerrado && inactivas.isEmpty() && totalConexiones >= tamanoMaximo) {
+                    long restante = limite - System.nanoTime();
+                    if (restante <= 0) {
+                        timeouts.increment();
+                        throw new SQLTransientConnectionException(
+                                "Tiempo de espera agotado (" + timeoutPrestamoMs + " ms) esperando una conexión libre");
+                    }
+                    esperando++;
+                    try {
+                        disponible.awaitNanos(restante);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrumpido mientras se esperaba una conexión", e);
+                    } finally {
+                        esperando--;
+                    }
+                }
+                if (cerrado) {
+                    throw new SQLException("El pool de conexiones está cerrado");
+                }
+
+                fisica = inactivas.pollFirst();
+                if (fisica == null) {
+                    // Reservamos el hueco antes de soltar el lock; la conexión se abre fuera
+                    totalConexiones++;
+                    crear = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (crear) {
+                try {
+                    fisica = abrirFisica();
+                } catch (SQLException e) {
+                    liberarHueco();
+                    throw e;
+                }
+            } else if (!esValida(fisica)) {
+                destruir(fisica);
+                continue;
+            }
+
+            esperas.registrar(System.nanoTime() - inicio);
+            prestamos.increment();
+            return envolver(fisica);
+        }
+    }
+
+    /**
+     * Cierra el pool y todas las conexiones inactivas
+     * Las conexiones prestadas se cierran cuando se devuelven
+     */
+    public void cerrar() {
+        List<ConexionFisica> aCerrar;
+        lock.lock();
+        try {
+            cerrado = true;
+            aCerrar = new ArrayList<>(inactivas);
+            inactivas.clear();
+            disponible.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        mantenimiento.shutdownNow();
+        for (ConexionFisica fisica : aCerrar) {
+            destruir(fisica);
+        }
+    }
+
+    /**
+     * Indica si el pool sigue aceptando préstamos
+     * @return true si no se ha cerrado
+     */
+    public boolean estaAbierto() {
+        lock.lock();
+        try {
+            return !cerrado;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Obtiene una instantánea de las estadísticas del pool
+     * @return Estadísticas actuales
+     */
+    public Estadisticas obtenerEstadisticas() {
+        lock.lock();
+        try {
+            return new Estadisticas(totalConexiones - inactivas.size(), inactivas.size(), esperando,
+                    prestamos.sum(), timeouts.sum(), creadas.sum(), destruidas.sum(), esperas,
+                    aciertosSentencias.sum(), fallosSentencias.sum());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Histograma de tiempos de espera al pedir una conexión
+     * @return Histograma de esperas
+     */
+    public HistogramaLatencia getHistogramaEsperas() {
+        return esperas;
+    }
+
+    // ==================== Gestión interna ====================
+
+    private ConexionFisica abrirFisica() throws SQLException {
+        Connection real = DriverManager.getConnection(url, usuario, password);
+        creadas.increment();
+        return new ConexionFisica(real,
+                new CacheSentencias(tamanoCacheSentencias, aciertosSentencias, fallosSentencias));
+    }
+
+    private boolean esValida(ConexionFisica fisica) {
+        if (System.currentTimeMillis() - fisica.ultimoUso < VENTANA_SIN_VALIDAR_MS) {
+            return true;
+        }
+        try {
+            return fisica.real.isValid(timeoutValidacionSeg);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void devolver(ConexionFisica fisica) {
+        fisica.sentencias.liberarTodas();
+        try {
+            if (fisica.real.isClosed()) {
+                destruir(fisica);
+                return;
+            }
+            // Dejar la conexión como la entregaría DriverManager
+            if (!fisica.real.getAutoCommit()) {
+                fisica.real.rollback();
+                fisica.real.setAutoCommit(true);
+            }
+            fisica.real.clearWarnings();
+        } catch (SQLException e) {
+            destruir(fisica);
+            return;
+        }
+
+        fisica.ultimoUso = System.currentTimeMillis();
+        boolean cerrarla = false;
+        lock.lock();
+        try {
+            if (cerrado) {
+                cerrarla = true;
+            } else {
+                inactivas.addFirst(fisica);
+                disponible.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (cerrarla) {
+            destruir(fisica);
+        }
+    }
+
+    private void destruir(ConexionFisica fisica) {
+        fisica.cerrarReal();
+        destruidas.increment();
+        liberarHueco();
+    }
+
+    private void liberarHueco() {
+        lock.lock();
+        try {
+            totalConexiones--;
+            disponible.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cierra las conexiones inactivas que sobran y rellena hasta el mínimo
+     */
+    private void mantener() {
+        List<ConexionFisica> caducadas = new ArrayList<>();
+        long ahora = System.currentTimeMillis();
+        lock.lock();
+        try {
+            // Las más antiguas están al final de la cola
+            Iterator<ConexionFisica> it = inactivas.descendingIterator();
+            while (it.hasNext() && totalConexiones - caducadas.size() > tamanoMinimo) {
+                ConexionFisica fisica = it.next();
+                if (ahora - fisica.ultimoUso < tiempoMaximoInactivaMs) {
+                    break;
+                }
+                it.remove();
+                caducadas.add(fisica);
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (ConexionFisica fisica : caducadas) {
+            destruir(fisica);
+        }
+
+        while (true) {
+            lock.lock();
+            try {
+                if (cerrado || totalConexiones >= tamanoMinimo) {
+                    return;
+                }
+                totalConexiones++;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                devolver(abrirFisica());
+            } catch (SQLException e) {
+                // La BD no está disponible; se reintentará en la siguiente pasada
+                liberarHueco();
+                return;
+            }
+        }
+    }
+
+    private Connection envolver(ConexionFisica fisica) {
+        return (Connection) Proxy.newProxyInstance(
+                PoolConexiones.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ManejadorConexion(fisica));
+    }
+
+    /**
+     * Conexión física abierta contra la BD
+     */
+    private static class ConexionFisica {
+        final Connection real;
+        final CacheSentencias sentencias;
+        volatile long ultimoUso;
+
+        ConexionFisica(Connection real, CacheSentencias sentencias) {
+            this.real = real;
+            this.sentencias = sentencias;
+            this.ultimoUso = System.currentTimeMillis();
+        }
+
+        void cerrarReal() {
+            try {
+                real.close();
+            } catch (SQLException e) {
+                // Ignorado: la conexión se descarta igualmente
+            }
+        }
+    }
+
+    /**
+     * Envoltorio de una conexión prestada: close() la devuelve al pool
+     */
+    private class ManejadorConexion implements InvocationHandler {
+        private final ConexionFisica fisica;
+        private boolean devuelta;
+
+        ManejadorConexion(ConexionFisica fisica) {
+            this.fisica = fisica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!devuelta) {
+                        devuelta = true;
+                        devolver(fisica);
+                    }
+                    return null;
+                case "isClosed":
+                    return devuelta || fisica.real.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConexionPool[" + fisica.real + (devuelta ? ", devuelta" : "") + "]";
+                default:
+                    break;
+            }
+            if (devuelta) {
+                throw new SQLException("La conexión ya se ha devuelto al pool");
+            }
+            if ("prepareStatement".equals(method.getName()) && args.length == 1) {
+                return fisica.sentencias.preparar(fisica.real, (Connection) proxy, (String) args[0]);
+            }
+            Object resultado;
+            try {
+                resultado = method.invoke(fisica.real, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            // Las demás variantes no se cachean, pero sí se miden
+            if (resultado instanceof PreparedStatement sentencia && args[0] instanceof String sql) {
+                return SentenciaMedida.envolver(sentencia, sql);
+            }
+            return resultado;
+        }
+    }
+
+    /**
+     * Instantánea de las estadísticas del pool
+     */
+    public static class Estadisticas {
+        private final int activas;
+        private final int inactivas;
+        private final int esperando;
+        private final long prestamos;
+        private final long timeouts;
+        private final long creadas;
+        private final long destruidas;
+        private final long[] histogramaEsperas;
+        private final long esperaP50Micros;
+        private final long esperaP99Micros;
+        private final long esperaMaxMicros;
+        private final long aciertosSentencias;
+        private final long fallosSentencias;
+
+        Estadisticas(int activas, int inactivas, int esperando, long prestamos, long timeouts,
+                     long creadas, long destruidas, HistogramaLatencia esperas,
+                     long aciertosSentencias, long fallosSentencias) {
+            this.activas = activas;
+            this.inactivas = inactivas;
+            this.esperando = esperando;
+            this.prestamos = prestamos;
+            this.timeouts = timeouts;
+            this.creadas = creadas;
+            this.destruidas = destruidas;
+            this.histogramaEsperas = esperas.getCubetas();
+            this.esperaP50Micros = esperas.percentilMicros(50);
+            this.esperaP99Micros = esperas.percentilMicros(99);
+            this.esperaMaxMicros = esperas.getMaxMicros();
+            this.aciertosSentencias = aciertosSentencias;
+            this.fallosSentencias = fallosSentencias;
+        }
+
+        public int getActivas() { return activas; }
+        public int getInactivas() { return inactivas; }
+        public int getEsperando() { return esperando; }
+        public long getPrestamos() { return prestamos; }
+        public long getTimeouts() { return timeouts; }
+        public long getCreadas() { return creadas; }
+        public long getDestruidas() { return destruidas; }
+        public long getEsperaP50Micros() { return esperaP50Micros; }
+        public long getEsperaP99Micros() { return esperaP99Micros; }
+        public long getEsperaMaxMicros() { return esperaMaxMicros; }
+        public long getAciertosSentencias() { return aciertosSentencias; }
+        public long getFallosSentencias() { return fallosSentencias; }
+
+        /**
+         * Conteo de esperas por cubeta: la cubeta i cubre [2^i, 2^(i+1)) µs
+         * @return Copia del histograma
+         */
+        public long[] getHistogramaEsperas() {
+            return histogramaEsperas.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "Pool{activas=" + activas +
+                    ", inactivas=" + inactivas +
+                    ", esperando=" + esperando +
+                    ", prestamos=" + prestamos +
+                    ", timeouts=" + timeouts +
+                    ", creadas=" + creadas +
+                    ", destruidas=" + destruidas +
+                    ", esperaP50=" + esperaP50Micros + "µs" +
+                    ", esperaP99=" + esperaP99Micros + "µs" +
+                    ", esperaMax=" + esperaMaxMicros + "µs" +
+                    ", sentenciasCacheadas=" + aciertosSentencias + "/" + (aciertosSentencias + fallosSentencias) +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.gestionmedica.utils;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Registro de las ejecuciones SQL lentas de todos los DAO
+ *
+ * Las sentencias del pool miden cada execute*; si una supera el umbral se
+ * guarda con su huella (el SQL sin literales), una muestra de los parámetros y
+ * las filas devueltas o afectadas. Se conservan las N peores y las N más
+ * recientes en arrays de tamaño fijo
+ *
+ * Por debajo del umbral el coste es solo medir el tiempo: los parámetros se
+ * guardan como referencias y la huella se calcula únicamente para las lentas.
+ * En las lecturas en streaming solo cuenta el tiempo hasta la primera fila
+ */
+public final class RegistroConsultasLentas implements RegistroConsultasLentasMXBean {
+
+    private static final long UMBRAL_DEFECTO_MS = Long.getLong("gestionmedica.consultas.umbralMs", 250);
+    private static final int CAPACIDAD = 50;
+    private static final int LONGITUD_MAXIMA_PARAMETRO = 40;
+
+    // Los parámetros de sentencias con contraseñas no se guardan
+    private static final Pattern SQL_SENSIBLE = Pattern.compile("password|contrase");
+    private static final Pattern LISTA_PARAMETROS = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+
+    private static final RegistroConsultasLentas INSTANCIA = new RegistroConsultasLentas();
+
+    private volatile long umbralNanos = TimeUnit.MILLISECONDS.toNanos(UMBRAL_DEFECTO_MS);
+    private final LongAdder totalLentas = new LongAdder();
+
+    // Peores: sin orden, se sustituye la más rápida. Recientes: buffer circular
+    private final ConsultaLenta[] peores = new ConsultaLenta[CAPACIDAD];
+    private final ConsultaLenta[] recientes = new ConsultaLenta[CAPACIDAD];
+    private int numeroPeores;
+    private long siguienteReciente;
+
+    private RegistroConsultasLentas() {
+    }
+
+    public static RegistroConsultasLentas getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Publica el registro como MXBean (com.example.gestionmedica:type=ConsultasLentas)
+     */
+    public void publicarJmx() {
+        try {
+            ObjectName nombre = new ObjectName("com.example.gestionmedica:type=ConsultasLentas");
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(nombre)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, nombre);
+            }
+        } catch (JMException e) {
+            System.err.println("✗ Error al publicar el registro de consultas lentas: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public long getUmbralMs() {
+        return TimeUnit.NANOSECONDS.toMillis(umbralNanos);
+    }
+
+    @Override
+    public void setUmbralMs(long umbralMs) {
+        umbralNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, umbralMs));
+    }
+
+    @Override
+    public long getTotalLentas() {
+        return totalLentas.sum();
+    }
+
+    /**
+     * Ejecuciones más lentas registradas, de más a menos lenta
+     * @return Copia de la lista
+     */
+    public synchronized List<ConsultaLenta> getPeores() {
+        List<ConsultaLenta> lista = new ArrayList<>(numeroPeores);
+        for (int i = 0; i < numeroPeores; i++) {
+            lista.add(peores[i]);
+        }
+        lista.sort(Comparator.comparingLong(ConsultaLenta::getDuracionMicros).reversed());
+        return lista;
+    }
+
+    /**
+     * Últimas ejecuciones lentas, de la más reciente a la más antigua
+     * @return Copia de la lista
+     */
+    public synchronized List<ConsultaLenta> getRecientes() {
+        List<ConsultaLenta> lista = new ArrayList<>(CAPACIDAD);
+        for (long i = siguienteReciente - 1; i >= 0 && i >= siguienteReciente - CAPACIDAD; i--) {
+            lista.add(recientes[(int) (i % CAPACIDAD)]);
+        }
+        return lista;
+    }
+
+    @Override
+    public String volcar() {
+        StringBuilder texto = new StringBuilder("✓ Consultas lentas (umbral " + getUmbralMs() + " ms, " +
+                                                getTotalLentas() + " en total):");
+        for (ConsultaLenta consulta : getPeores()) {
+            texto.append("\n  ").append(consulta);
+        }
+        return texto.toString();
+    }
+
+    @Override
+    public synchronized void vaciar() {
+        Arrays.fill(peores, null);
+        Arrays.fill(recientes, null);
+        numeroPeores = 0;
+        siguienteReciente = 0;
+        totalLentas.reset();
+    }
+
+    /**
+     * Normaliza un SQL para agrupar ejecuciones de la misma consulta: quita literales
+     * de texto y números, junta los espacios, pasa a minúsculas y reduce las listas
+     * IN (?, ?, ...) a IN (?+)
+     * @param sql Texto SQL
+     * @return Huella del SQL
+     */
+    public static String huella(String sql) {
+        StringBuilder huella = new StringBuilder(sql.length());
+        int n = sql.length();
+        int i = 0;
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                // Literal de texto (con comillas dobladas o escapadas dentro)
+                i++;
+                while (i < n) {
+                    char d = sql.charAt(i);
+                    if (d == '\\') {
+                        i += 2;
+                    } else if (d == c && i + 1 < n && sql.charAt(i + 1) == c) {
+                        i += 2;
+                    } else if (d == c) {
+                        i++;
+                        break;
+                    } else {
+                        i++;
+                    }
+                }
+                huella.append('?');
+            } else if (Character.isDigit(c) && !parteDeIdentificador(huella)) {
+                while (i < n && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                huella.append('?');
+            } else if (Character.isWhitespace(c)) {
+                while (i < n && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (huella.length() > 0) {
+                    huella.append(' ');
+                }
+            } else {
+                huella.append(Character.toLowerCase(c));
+                i++;
+            }
+        }
+        return LISTA_PARAMETROS.matcher(huella.toString().trim()).replaceAll("(?+)");
+    }
+
+    private static boolean parteDeIdentificador(StringBuilder huella) {
+        if (huella.length() == 0) {
+            return false;
+        }
+        char anterior = huella.charAt(huella.length() - 1);
+        return Character.isLetterOrDigit(anterior) || anterior == '_';
+    }
+
+    // ==================== Registro (desde las sentencias del pool) ====================
+
+    boolean esLenta(long nanos) {
+        return nanos >= umbralNanos;
+    }
+
+    /**
+     * Registra una ejecución lenta
+     * @param parametros Parámetros por posición (índice 0 = parámetro 1) o null
+     * @param filas Filas afectadas (en las consultas 0, se cuentan al leerlas) o -1 si no se sabe
+     */
+    ConsultaLenta registrar(String sql, long nanos, Object[] parametros, long filas) {
+        boolean sensible = SQL_SENSIBLE.matcher(sql.toLowerCase(Locale.ROOT)).find();
+        ConsultaLenta consulta = new ConsultaLenta(huella(sql), TimeUnit.NANOSECONDS.toMicros(nanos),
+                describirParametros(parametros, sensible), filas, Thread.currentThread().getName());
+        totalLentas.increment();
+        synchronized (this) {
+            recientes[(int) (siguienteReciente++ % CAPACIDAD)] = consulta;
+            if (numeroPeores < CAPACIDAD) {
+                peores[numeroPeores++] = consulta;
+            } else {
+                int masRapida = 0;
+                for (int i = 1; i < CAPACIDAD; i++) {
+                    if (peores[i].duracionMicros < peores[masRapida].duracionMicros) {
+                        masRapida = i;
+                    }
+                }
+                if (peores[masRapida].duracionMicros < consulta.duracionMicros) {
+                    peores[masRapida] = consulta;
+                }
+            }
+        }
+        return consulta;
+    }
+
+    private static String describirParametros(Object[] parametros, boolean ocultar) {
+        if (parametros == null) {
+            return "[]";
+        }
+        int ultimo = parametros.length - 1;
+        while (ultimo >= 0 && parametros[ultimo] == null) {
+            ultimo--;
+        }
+        StringBuilder texto = new StringBuilder("[");
+        for (int i = 0; i <= ultimo; i++) {
+            if (i > 0) {
+                texto.append(", ");
+            }
+            Object valor = parametros[i];
+            if (ocultar) {
+                texto.append("***");
+            } else if (valor == null || valor == SentenciaMedida.NULO) {
+                texto.append("NULL");
+            } else if (valor instanceof Number || valor instanceof Boolean) {
+                texto.append(valor);
+            } else {
+                String cadena = String.valueOf(valor);
+                if (cadena.length() > LONGITUD_MAXIMA_PARAMETRO) {
+                    cadena = cadena.substring(0, LONGITUD_MAXIMA_PARAMETRO) + "…";
+                }
+                texto.append('\'').append(cadena).append('\'');
+            }
+        }
+        return texto.append(']').toString();
+    }
+
+    /**
+     * Una ejecución lenta
+     */
+    public static final class ConsultaLenta {
+
+        private final LocalDateTime instante = LocalDateTime.now();
+        private final String huella;
+        private final long duracionMicros;
+        private final String parametros;
+        private final String hilo;
+        // En las consultas lo va actualizando el ResultSet a medida que se leen filas
+        private volatile long filas;
+
+        ConsultaLenta(String huella, long duracionMicros, String parametros, long filas, String hilo) {
+            this.huella = huella;
+            this.duracionMicros = duracionMicros;
+            this.parametros = parametros;
+            this.filas = filas;
+            this.hilo = hilo;
+        }
+
+        void setFilas(long filas) {
+            this.filas = filas;
+        }
+
+        public LocalDateTime getInstante() { return instante; }
+        public String getHuella() { return huella; }
+        public long getDuracionMicros() { return duracionMicros; }
+        public String getParametros() { return parametros; }
+        public long getFilas() { return filas; }
+        public String getHilo() { return hilo; }
+
+        @Override
+        public String toString() {
+            return String.format("%d ms, %s filas, %s [%s] %s %s",
+                    duracionMicros / 1_000, filas < 0 ? "?" : String.valueOf(filas),
+                    instante.withNano(0), hilo, huella, parametros);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.gestionmedica.utils;
+
+/**
+ * Gestión del registro de consultas lentas desde JMX (JConsole, VisualVM...)
+ */
+public interface RegistroConsultasLentasMXBean {
+
+    long getUmbralMs();
+
+    void setUmbralMs(long umbralMs);
+
+    long getTotalLentas();
+
+    /**
+     * Peores ejecuciones registradas, una por línea
+     * @return Texto del volcado
+     */
+    String volcar();
+
+    void vaciar();
+}
@@ -0,0 +1,214 @@
+package com.example.gestionmedica.utils;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * Medición de las ejecuciones de una sentencia preparada para el registro de consultas lentas
+ * Guarda los parámetros que asigna el DAO (solo la referencia) y cronometra cada execute*;
+ * si la ejecución supera el umbral la pasa a {@link RegistroConsultasLentas}
+ *
+ * La usan las sentencias cacheadas de {@link CacheSentencias} y, como proxy propio,
+ * las que el pool no cachea. No es thread-safe, igual que la sentencia
+ *
+ * También avisa a DatabaseConnection de cada escritura para que las lecturas
+ * siguientes no vayan a una réplica que aún no la tenga
+ */
+final class SentenciaMedida implements InvocationHandler {
+
+    // Marca de setNull (null significa "parámetro no asignado")
+    static final Object NULO = new Object();
+
+    // Solo se guardan los primeros parámetros (los IN largos se cortan)
+    private static final int MAXIMO_PARAMETROS = 16;
+
+    private final PreparedStatement real;
+    private final String sql;
+    private Object[] parametros;
+
+    SentenciaMedida(PreparedStatement real, String sql) {
+        this.real = real;
+        this.sql = sql;
+    }
+
+    /**
+     * Envuelve una sentencia no cacheada para medir sus ejecuciones
+     * @param real Sentencia del driver
+     * @param sql Texto SQL con el que se preparó
+     * @return Sentencia medida
+     */
+    static PreparedStatement envolver(PreparedStatement real, String sql) {
+        return (PreparedStatement) Proxy.newProxyInstance(
+                SentenciaMedida.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new SentenciaMedida(real, sql));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "SentenciaMedida[" + sql + "]";
+            default:
+                return invocar(method, args);
+        }
+    }
+
+    /**
+     * Llama al método en la sentencia real, anotando parámetros y midiendo las ejecuciones
+     */
+    Object invocar(Method method, Object[] args) throws Throwable {
+        String nombre = method.getName();
+        if (nombre.startsWith("execute")) {
+            return ejecutar(method, args);
+        }
+        if (args != null && args.length >= 2 && nombre.startsWith("set") && args[0] instanceof Integer) {
+            anotar((Integer) args[0], nombre.equals("setNull") ? NULO : args[1]);
+        } else if (nombre.equals("clearParameters") && parametros != null) {
+            parametros = null;
+        }
+        return delegar(method, args);
+    }
+
+    private void anotar(int indice, Object valor) {
+        if (indice < 1 || indice > MAXIMO_PARAMETROS) {
+            return;
+        }
+        if (parametros == null) {
+            parametros = new Object[MAXIMO_PARAMETROS];
+        }
+        if (valor instanceof byte[] || valor instanceof InputStream || valor instanceof Reader
+                || valor instanceof Blob || valor instanceof Clob) {
+            valor = "<" + valor.getClass().getSimpleName() + ">";
+        }
+        parametros[indice - 1] = valor;
+    }
+
+    private Object ejecutar(Method method, Object[] args) throws Throwable {
+        long inicio = System.nanoTime();
+        Object resultado;
+        try {
+            resultado = delegar(method, args);
+        } catch (Throwable e) {
+            // Los fallos lentos (p. ej. esperas de bloqueo) también interesan
+            long nanos = System.nanoTime() - inicio;
+            if (RegistroConsultasLentas.getInstancia().esLenta(nanos)) {
+                registrar(args, nanos, -1);
+            }
+            throw e;
+        }
+        long nanos = System.nanoTime() - inicio;
+        // executeUpdate/executeBatch o execute() sin filas: las lecturas siguientes van al primario
+        if (!(resultado instanceof ResultSet) && !Boolean.TRUE.equals(resultado)) {
+            DatabaseConnection.registrarEscritura();
+        }
+        if (!RegistroConsultasLentas.getInstancia().esLenta(nanos)) {
+            return resultado;
+        }
+
+        if (resultado instanceof ResultSet filas) {
+            return FilasContadas.envolver(filas, registrar(args, nanos, 0));
+        }
+        registrar(args, nanos, contarAfectadas(resultado));
+        return resultado;
+    }
+
+    private RegistroConsultasLentas.ConsultaLenta registrar(Object[] args, long nanos, long filas) {
+        // execute(String) de Statement lleva su propio SQL
+        String texto = args != null && args.length > 0 && args[0] instanceof String s ? s : sql;
+        return RegistroConsultasLentas.getInstancia().registrar(texto, nanos,
+                parametros != null ? parametros.clone() : null, filas);
+    }
+
+    private static long contarAfectadas(Object resultado) {
+        if (resultado instanceof Integer n) {
+            return n;
+        }
+        if (resultado instanceof Long n) {
+            return n;
+        }
+        long total = 0;
+        if (resultado instanceof int[] lote) {
+            for (int n : lote) {
+                if (n < 0) {
+                    return -1;
+                }
+                total += n;
+            }
+            return total;
+        }
+        if (resultado instanceof long[] lote) {
+            for (long n : lote) {
+                if (n < 0) {
+                    return -1;
+                }
+                total += n;
+            }
+            return total;
+        }
+        return -1;
+    }
+
+    private Object delegar(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(real, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * ResultSet de una consulta lenta: cuenta las filas leídas en la consulta registrada
+     */
+    private static final class FilasContadas implements InvocationHandler {
+        private final ResultSet real;
+        private final RegistroConsultasLentas.ConsultaLenta consulta;
+        private long filas;
+
+        private FilasContadas(ResultSet real, RegistroConsultasLentas.ConsultaLenta consulta) {
+            this.real = real;
+            this.consulta = consulta;
+        }
+
+        static ResultSet envolver(ResultSet real, RegistroConsultasLentas.ConsultaLenta consulta) {
+            return (ResultSet) Proxy.newProxyInstance(
+                    SentenciaMedida.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class},
+                    new FilasContadas(real, consulta));
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            Object resultado;
+            try {
+                resultado = method.invoke(real, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (Boolean.TRUE.equals(resultado) && method.getName().equals("next")) {
+                consulta.setFilas(++filas);
+            }
+            return resultado;
+        }
+    }
+}
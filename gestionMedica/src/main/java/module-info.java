@@ -2,6 +2,7 @@ module com.example.gestionmedica {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.sql;
+    requires java.management;
 
     opens com.example.gestionmedica to javafx.fxml;
     opens com.example.gestionmedica.controllers to javafx.fxml;
@@ -11,4 +12,5 @@ module com.example.gestionmedica {
     exports com.example.gestionmedica.models;
     exports com.example.gestionmedica.dao;
     exports com.example.gestionmedica.utils;
+    exports com.example.gestionmedica.services;
 }
\ No newline at end of file
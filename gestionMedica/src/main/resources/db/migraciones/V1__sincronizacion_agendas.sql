@@ -0,0 +1,26 @@
+-- =========================================================
+-- V1: sincronización incremental de agendas (CitaDAO.obtenerCambiosPorMedico)
+-- =========================================================
+
+-- Última modificación de cada cita: la mantiene MySQL
+ALTER TABLE citas
+    ADD COLUMN updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+    ADD KEY idx_citas_medico_actualizada (id_medico, updated_at);
+
+-- Una fila por cita borrada o pasada a otro médico; se purgan a los 30 días
+CREATE TABLE citas_eliminadas (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    id_cita INT NOT NULL,
+    id_medico INT NOT NULL,
+    eliminada_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+
+    KEY idx_eliminadas_medico_fecha (id_medico, eliminada_en)
+);
+
+CREATE TRIGGER trg_citas_baja AFTER DELETE ON citas FOR EACH ROW
+    INSERT INTO citas_eliminadas (id_cita, id_medico) VALUES (OLD.id_cita, OLD.id_medico);
+
+-- Para la agenda del médico anterior, cambiar una cita de médico es una baja
+CREATE TRIGGER trg_citas_cambio_medico AFTER UPDATE ON citas FOR EACH ROW
+    INSERT INTO citas_eliminadas (id_cita, id_medico)
+    SELECT OLD.id_cita, OLD.id_medico FROM DUAL WHERE OLD.id_medico <> NEW.id_medico;
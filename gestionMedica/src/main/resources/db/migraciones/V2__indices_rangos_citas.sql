@@ -0,0 +1,18 @@
+-- =========================================================
+-- V2: índices para las consultas por rango de fechas de CitaDAO
+-- (obtenerPorPacienteEntre, obtenerPorMedicoEntre, obtenerPorEstadoEntre)
+-- =========================================================
+-- Todas filtran por igualdad en una columna y por rango en fecha_cita, y ordenan
+-- por fecha_cita, hora_cita e id_cita: con (columna, fecha_cita, hora_cita) el
+-- orden sale del índice (InnoDB añade id_cita al final) y no hay filesort.
+-- Por médico ya sirve la clave única uq_medico_fecha_hora
+--
+-- idx_citas_paciente_fecha sustituye al índice que creó MySQL para la clave
+-- foránea de id_paciente, que se elimina solo al crearlo
+--
+-- Se crean en línea (el migrador añade ALGORITHM=INPLACE LOCK=NONE): la tabla
+-- sigue admitiendo lecturas y escrituras
+
+CREATE INDEX idx_citas_paciente_fecha ON citas (id_paciente, fecha_cita, hora_cita);
+
+CREATE INDEX idx_citas_estado_fecha ON citas (estado, fecha_cita, hora_cita);
@@ -0,0 +1,10 @@
+-- =========================================================
+-- V3: refresco de los índices de pacientes en memoria (RefrescoPacientes)
+-- =========================================================
+-- Los índices de DNI y de nombres solo ven las escrituras de su propio proceso;
+-- con updated_at cada puesto recoge cada pocos segundos los pacientes dados de
+-- alta o modificados desde otros puestos
+
+ALTER TABLE pacientes
+    ADD COLUMN updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+    ADD KEY idx_pacientes_actualizado (updated_at);
@@ -0,0 +1,14 @@
+-- =========================================================
+-- V4: índices para la paginación por clave
+-- (CitaDAO.obtenerPaginaTodas y PacienteDAO.obtenerPagina)
+-- =========================================================
+-- Con el orden de la página en un índice, MySQL empieza a leer justo después de
+-- la última fila del token y para en LIMIT: la página 5.000 cuesta lo mismo que
+-- la primera. Sin ellos cada página recorre la tabla entera y la ordena.
+-- InnoDB añade la clave primaria al final, que es el desempate de ambas
+-- (id_cita, id_paciente). Las páginas por estado y por médico ya tienen los
+-- suyos (idx_citas_estado_fecha y uq_medico_fecha_hora)
+
+CREATE INDEX idx_citas_fecha_hora ON citas (fecha_cita, hora_cita);
+
+CREATE INDEX idx_pacientes_apellidos_nombre ON pacientes (apellidos, nombre);
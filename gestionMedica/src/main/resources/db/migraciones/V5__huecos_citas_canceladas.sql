@@ -0,0 +1,18 @@
+-- =========================================================
+-- V5: una cita cancelada deja libre su hora
+-- =========================================================
+-- uq_medico_fecha_hora contaba también las citas canceladas: el índice de
+-- ocupación y CitaDAO daban la hora por libre y el INSERT fallaba en la clave.
+-- La clave pasa a una columna generada que es NULL en las canceladas (en una
+-- clave única los NULL no chocan), así la BD y el índice dicen lo mismo.
+-- Reactivar una cancelada cuya hora ya tiene otra cita falla en la clave
+--
+-- Las consultas por médico y fechas usaban la clave única para ordenar por
+-- hora_cita; pasan a idx_citas_medico_fecha, que también sirve a la clave
+-- foránea de id_medico. Todo en un ALTER TABLE: si falla, no cambia nada
+
+ALTER TABLE citas
+    ADD COLUMN hora_ocupada TIME GENERATED ALWAYS AS (IF(estado = 'cancelada', NULL, hora_cita)) VIRTUAL,
+    ADD KEY idx_citas_medico_fecha (id_medico, fecha_cita, hora_cita),
+    DROP KEY uq_medico_fecha_hora,
+    ADD UNIQUE KEY uq_medico_fecha_hora (id_medico, fecha_cita, hora_ocupada);
@@ -0,0 +1,11 @@
+-- =========================================================
+-- V6: refresco del índice de ocupación en memoria (RefrescoCitas)
+-- =========================================================
+-- Cada puesto recoge cada pocos segundos las citas cambiadas y borradas desde
+-- otros puestos. Las dos consultas filtran solo por la marca de tiempo: los
+-- índices de V1 empiezan por id_medico y no les sirven. idx_eliminadas_fecha sirve
+-- también a la purga de bajas (CitaDAO.purgarEliminadas)
+
+CREATE INDEX idx_citas_actualizada ON citas (updated_at);
+
+CREATE INDEX idx_eliminadas_fecha ON citas_eliminadas (eliminada_en);
@@ -0,0 +1,47 @@
+package com.example.gestionmedica.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tokens de la paginación por clave: ida y vuelta y rechazo de tokens manipulados
+ */
+class TokenPaginaTest {
+
+    private static final Class<?>[] TIPOS_CITA = {LocalDate.class, LocalTime.class, Integer.class};
+
+    @Test
+    void recuperaLosValoresCodificados() {
+        Object[] valores = {LocalDate.of(2025, 3, 14), LocalTime.of(9, 30), 42};
+        String token = TokenPagina.codificar("citas", valores);
+
+        assertArrayEquals(valores, TokenPagina.decodificar("citas", token, TIPOS_CITA));
+    }
+
+    @Test
+    void rechazaUnTokenDeOtroListado() {
+        String token = TokenPagina.codificar("pacientes", "García", "Ana", 7);
+
+        assertThrows(IllegalArgumentException.class,
+                     () -> TokenPagina.decodificar("citas", token, TIPOS_CITA));
+    }
+
+    @Test
+    void rechazaValoresQueNoSeConvierten() {
+        String token = TokenPagina.codificar("citas", "2025-13-40", "09:30", "1 OR 1=1");
+
+        assertThrows(IllegalArgumentException.class,
+                     () -> TokenPagina.decodificar("citas", token, TIPOS_CITA));
+    }
+
+    @Test
+    void rechazaUnTokenQueNoEsBase64() {
+        assertThrows(IllegalArgumentException.class,
+                     () -> TokenPagina.decodificar("citas", "no es un token!", TIPOS_CITA));
+    }
+}
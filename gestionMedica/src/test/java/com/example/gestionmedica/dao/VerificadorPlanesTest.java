@@ -0,0 +1,88 @@
+package com.example.gestionmedica.dao;
+
+import com.example.gestionmedica.utils.MigradorEsquema;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Planes de las consultas críticas (VerificadorPlanes), uno por test
+ *
+ * Aplica las migraciones pendientes, así que solo se ejecuta contra una BD de pruebas
+ * indicada a propósito (con el esquema de datosMedicos ya creado), nunca contra la de
+ * la aplicación:
+ *   -Dgestionmedica.test.bd.url=jdbc:mysql://localhost:3306/hospital_mvp_test
+ * con el usuario y la contraseña de -Dgestionmedica.bd.usuario y .password. Sin la
+ * propiedad se saltan
+ */
+class VerificadorPlanesTest {
+
+    private static final String URL = System.getProperty("gestionmedica.test.bd.url", "");
+    private static final String URL_APLICACION =
+            System.getProperty("gestionmedica.bd.url", "jdbc:mysql://localhost:3306/hospital_mvp");
+    private static final String USUARIO = System.getProperty("gestionmedica.bd.usuario", "root");
+    private static final String PASSWORD = System.getProperty("gestionmedica.bd.password", "");
+    private static final String PARAMETROS = "useSSL=false&allowPublicKeyRetrieval=true";
+
+    private static Connection conn;
+
+    @BeforeAll
+    static void prepararEsquema() throws SQLException {
+        if (URL.isBlank()) {
+            return;
+        }
+        assertFalse(sinParametros(URL).equalsIgnoreCase(sinParametros(URL_APLICACION)),
+                    "gestionmedica.test.bd.url apunta a la BD de la aplicación");
+        conn = DriverManager.getConnection(URL + (URL.contains("?") ? "&" : "?") + PARAMETROS, USUARIO, PASSWORD);
+        assertTrue(new MigradorEsquema().migrar(conn), "No se pudieron aplicar las migraciones");
+    }
+
+    @AfterAll
+    static void cerrar() throws SQLException {
+        if (conn != null) {
+            conn.close();
+        }
+    }
+
+    @TestFactory
+    Stream<DynamicTest> cadaConsultaUsaSuIndice() {
+        assumeTrue(conn != null, "Sin -Dgestionmedica.test.bd.url");
+        return VerificadorPlanes.planes().stream()
+                .map(plan -> DynamicTest.dynamicTest(plan.descripcion,
+                        () -> assertTrue(VerificadorPlanes.verificar(conn, plan),
+                                         plan.descripcion + " no usa " + plan.indice)));
+    }
+
+    @Test
+    void incluyeLaPaginacionPorClave() {
+        for (String indice : new String[] {"idx_citas_fecha_hora", "idx_pacientes_apellidos_nombre"}) {
+            assertTrue(VerificadorPlanes.planes().stream().anyMatch(plan -> plan.indice.equals(indice)),
+                       "Ningún plan comprueba " + indice);
+        }
+    }
+
+    @Test
+    void cadaPlanPuedeForzarSuIndice() {
+        for (VerificadorPlanes.Plan plan : VerificadorPlanes.planes()) {
+            String sql = plan.sqlConIndice();
+            assertTrue(sql != null && sql.contains("FORCE INDEX (" + plan.indice + ")"),
+                       plan.descripcion + ": no se encuentra " + plan.tabla + " en el SQL");
+        }
+    }
+
+    private static String sinParametros(String url) {
+        int parametros = url.indexOf('?');
+        return (parametros < 0 ? url : url.substring(0, parametros)).strip();
+    }
+}
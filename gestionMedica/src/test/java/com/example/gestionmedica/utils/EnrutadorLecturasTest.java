@@ -0,0 +1,148 @@
+package com.example.gestionmedica.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Reparto de lecturas entre réplicas (EnrutadorLecturas)
+ *
+ * Los tests con réplicas necesitan dos instancias de MySQL en local que no tienen por
+ * qué replicar entre sí (se admiten sin replicación), p. ej. dos contenedores:
+ *   -Dgestionmedica.test.replicas=jdbc:mysql://localhost:3307/hospital_mvp,jdbc:mysql://localhost:3308/hospital_mvp
+ * con el usuario y la contraseña de -Dgestionmedica.bd.usuario y .password. Sin la
+ * propiedad se saltan
+ */
+class EnrutadorLecturasTest {
+
+    private static final String REPLICAS = System.getProperty("gestionmedica.test.replicas", "");
+    private static final String USUARIO = System.getProperty("gestionmedica.bd.usuario", "root");
+    private static final String PASSWORD = System.getProperty("gestionmedica.bd.password", "");
+    private static final String PARAMETROS = "useSSL=false&allowPublicKeyRetrieval=true";
+
+    private static final long RETRASO_MAXIMO_SEG = 5;
+    private static final long COMPROBACION_SEG = 1;
+    private static final long ESPERA_COMPROBACION_MS = 10_000;
+
+    private EnrutadorLecturas enrutador;
+
+    @AfterEach
+    void cerrar() {
+        if (enrutador != null) {
+            enrutador.cerrar();
+        }
+    }
+
+    @Test
+    void sinReplicasDisponiblesLeeDelPrimario() {
+        // Nada escucha en el puerto 1: la réplica no pasa ninguna comprobación
+        enrutador = crear(List.of("jdbc:mysql://127.0.0.1:1/hospital_mvp?connectTimeout=500"));
+
+        assertEquals(0, enrutador.disponibles());
+        assertNull(enrutador.prestar());
+    }
+
+    @Test
+    void reparteLasLecturasPorTurnos() throws SQLException {
+        List<String> urls = replicasDePrueba();
+        enrutador = crear(urls);
+        esperarReplicas(urls.size());
+
+        Set<String> servidores = new HashSet<>();
+        List<Connection> prestadas = new ArrayList<>();
+        try {
+            for (int i = 0; i < urls.size(); i++) {
+                Connection conn = enrutador.prestar();
+                assertNotNull(conn, "Réplica no disponible");
+                prestadas.add(conn);
+                servidores.add(servidor(conn));
+            }
+        } finally {
+            for (Connection conn : prestadas) {
+                conn.close();
+            }
+        }
+        assertEquals(urls.size(), servidores.size(), "Las lecturas no pasaron por todas las réplicas");
+    }
+
+    @Test
+    void trasUnaEscrituraLeeDelPrimario() {
+        List<String> urls = replicasDePrueba();
+        enrutador = crear(urls);
+        esperarReplicas(urls.size());
+
+        enrutador.registrarEscritura();
+
+        assertNull(enrutador.prestar());
+    }
+
+    @Test
+    void cerradoLeeDelPrimarioSinFallar() {
+        List<String> urls = replicasDePrueba();
+        enrutador = crear(urls);
+        esperarReplicas(urls.size());
+
+        enrutador.cerrar();
+
+        assertNull(enrutador.prestar());
+    }
+
+    private static List<String> replicasDePrueba() {
+        assumeTrue(!REPLICAS.isBlank(), "Sin -Dgestionmedica.test.replicas");
+        List<String> urls = new ArrayList<>();
+        for (String url : REPLICAS.split(",")) {
+            if (!url.isBlank()) {
+                urls.add(url.strip());
+            }
+        }
+        return urls;
+    }
+
+    private static EnrutadorLecturas crear(List<String> urls) {
+        return new EnrutadorLecturas(urls,
+                url -> new PoolConexiones(url + (url.contains("?") ? "&" : "?") + PARAMETROS,
+                        USUARIO, PASSWORD, 0, 2, 500, 60_000, 2, 8),
+                RETRASO_MAXIMO_SEG, COMPROBACION_SEG, true);
+    }
+
+    /**
+     * Espera a la primera comprobación de las réplicas (se hace en segundo plano)
+     */
+    private void esperarReplicas(int replicas) {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ESPERA_COMPROBACION_MS);
+        while (System.nanoTime() - limite < 0) {
+            if (enrutador.disponibles() == replicas) {
+                return;
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        assumeTrue(false, "Las réplicas de prueba no responden:\n" + enrutador.resumen());
+    }
+
+    private static String servidor(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT @@server_uuid")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+}